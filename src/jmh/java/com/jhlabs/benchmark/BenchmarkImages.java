@@ -0,0 +1,105 @@
+package com.jhlabs.benchmark;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+/**
+ * Creates the benchmark source images, one for each image type recognized by
+ * AbstractBufferedImageOp.getImageType.
+ */
+public class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Create a 3:2 image of about the given number of megapixels, filled with
+     * reproducible noisy gradients.
+     *
+     * @param type       the image type name (RGB32, GRAY8, RGB_3X8, RGB_4X8
+     *                   or CMYK_4X8)
+     * @param megaPixels the image size in megapixels
+     * @return the image
+     */
+    public static BufferedImage create(String type, int megaPixels) {
+        int height = (int) Math.sqrt(megaPixels * 1000000.0 * 2 / 3);
+        int width = (megaPixels * 1000000) / height;
+
+        BufferedImage image = createImage(type, width, height);
+        WritableRaster raster = image.getRaster();
+        int bands = raster.getNumBands();
+        int[] samples = new int[width * bands];
+        Random random = new Random(width * 31L + height);
+
+        for (int y = 0; y < height; y++) {
+            for (int i = 0, x = 0; x < width; x++) {
+                int base = ((x + y) * 255) / (width + height);
+                for (int b = 0; b < bands; b++) {
+                    int v = base + random.nextInt(32) - 16 + b * 40;
+                    samples[i++] = (v < 0) ? 0 : Math.min(v, 255);
+                }
+            }
+            raster.setPixels(0, y, width, 1, samples);
+        }
+        return image;
+    }
+
+    private static BufferedImage createImage(String type, int width, int height) {
+        switch (type) {
+            case "RGB32":
+                return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            case "GRAY8":
+                return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            case "RGB_3X8":
+                return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            case "RGB_4X8":
+                return new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+            case "CMYK_4X8":
+                ColorModel cm = new ComponentColorModel(new CmykColorSpace(), false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+                return new BufferedImage(cm, cm.createCompatibleWritableRaster(width, height), false, null);
+        }
+        throw new IllegalArgumentException("Unknown image type: " + type);
+    }
+
+    /**
+     * A naive, profile-less CMYK color space. It is only used to build images
+     * which AbstractBufferedImageOp classifies as CMYK_4X8_TYPE.
+     */
+    private static class CmykColorSpace extends ColorSpace {
+
+        private static final ColorSpace SRGB = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+
+        private CmykColorSpace() {
+            super(TYPE_CMYK, 4);
+        }
+
+        @Override
+        public float[] toRGB(float[] value) {
+            float k = 1f - value[3];
+            return new float[]{(1f - value[0]) * k, (1f - value[1]) * k, (1f - value[2]) * k};
+        }
+
+        @Override
+        public float[] fromRGB(float[] rgb) {
+            float k = 1f - Math.max(rgb[0], Math.max(rgb[1], rgb[2]));
+            float d = (k < 1f) ? 1f - k : 1f;
+            return new float[]{(1f - rgb[0] - k) / d, (1f - rgb[1] - k) / d, (1f - rgb[2] - k) / d, k};
+        }
+
+        @Override
+        public float[] toCIEXYZ(float[] value) {
+            return SRGB.toCIEXYZ(toRGB(value));
+        }
+
+        @Override
+        public float[] fromCIEXYZ(float[] xyz) {
+            return fromRGB(SRGB.fromCIEXYZ(xyz));
+        }
+    }
+}
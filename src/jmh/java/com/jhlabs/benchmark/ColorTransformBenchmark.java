@@ -0,0 +1,70 @@
+package com.jhlabs.benchmark;
+
+import com.jhlabs.image.ColorTransformCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the conversion to sRGB through ColorTransformCache, against
+ * ColorConvertOp, for the image types the cache compiles into a table.
+ * <p>
+ * Run with, e.g.:
+ * <pre>
+ * java -jar target/benchmarks.jar ColorTransformBenchmark -p megaPixels=12
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx12g", "-Djava.awt.headless=true"})
+public class ColorTransformBenchmark {
+
+    @Param({"1", "12"})
+    public int megaPixels;
+
+    @Param({"GRAY8", "CMYK_4X8"})
+    public String imageType;
+
+    private final ColorSpace srgb = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+    private final ColorTransformCache cache = new ColorTransformCache(4);
+    private BufferedImage src;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        src = BenchmarkImages.create(imageType, megaPixels);
+        // Compile the table outside the measurement
+        cache.convert(src, srgb);
+    }
+
+    @Benchmark
+    public BufferedImage cache() {
+        return cache.convert(src, srgb);
+    }
+
+    @Benchmark
+    public BufferedImage colorConvertOp() {
+        ComponentColorModel dstModel = new ComponentColorModel(srgb, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        BufferedImage dst = new BufferedImage(dstModel, dstModel.createCompatibleWritableRaster(src.getWidth(), src.getHeight()), false, null);
+        return new ColorConvertOp(null).filter(src, dst);
+    }
+}
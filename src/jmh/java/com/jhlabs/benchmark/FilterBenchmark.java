@@ -0,0 +1,110 @@
+package com.jhlabs.benchmark;
+
+import com.jhlabs.image.AbstractBufferedImageOp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of every AbstractBufferedImageOp with a public no-argument
+ * constructor, for each image size and image type. Filters are created with
+ * their default settings. ChannelLookupFilter, CompoundFilter, FilterChain,
+ * IteratedFilter, TransitionFilter and SeamCarvingFilter need constructor
+ * arguments and are not listed.
+ * <p>
+ * Run a subset with, e.g.:
+ * <pre>
+ * java -jar target/benchmarks.jar -p filter=GaussianFilter,MedianFilter -p megaPixels=24 -p imageType=RGB32
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx12g", "-Djava.awt.headless=true"})
+public class FilterBenchmark {
+
+    @Param({
+        // com.jhlabs.image
+        "ApplyMaskFilter", "AverageFilter", "BicubicScaleFilter", "BlockFilter", "BlurFilter",
+        "BorderFilter", "BoxBlurFilter", "BrushedMetalFilter", "BumpFilter", "CausticsFilter",
+        "CellularFilter", "ChannelMixFilter", "CheckFilter", "ChromaKeyFilter", "ChromeFilter",
+        "CircleFilter", "CompositeFilter", "ContourFilter", "ContrastFilter", "ConvolveFilter",
+        "CropFilter", "CrystallizeFilter", "CurlFilter", "CurvesFilter", "DespeckleFilter",
+        "DiffuseFilter", "DiffusionFilter", "DilateFilter", "DisplaceFilter", "DissolveFilter",
+        "DitherFilter", "EdgeFilter", "EmbossFilter", "EqualizeFilter", "ErodeAlphaFilter",
+        "ErodeFilter", "ExposureFilter", "FBMFilter", "FadeFilter", "FeedbackFilter",
+        "FieldWarpFilter", "FillFilter", "FlareFilter", "FlipFilter", "Flush3DFilter",
+        "FourColorFilter", "GainFilter", "GammaFilter", "GaussianFilter", "GlintFilter",
+        "GlowFilter", "GradientFilter", "GradientWipeFilter", "GrayFilter", "GrayscaleFilter",
+        "HSBAdjustFilter", "HalftoneFilter", "InterpolateFilter", "InvertAlphaFilter", "InvertFilter",
+        "JavaLnFFilter", "KaleidoscopeFilter", "KeyFilter", "LensBlurFilter", "LevelsFilter",
+        "LifeFilter", "LightFilter", "LookupFilter", "MapColorsFilter", "MapFilter",
+        "MarbleFilter", "MarbleTexFilter", "MaskFilter", "MaximumFilter", "MedianFilter",
+        "MinimumFilter", "MirrorFilter", "MotionBlurFilter", "MotionBlurOp", "NoiseFilter",
+        "OffsetFilter", "OilFilter", "OpacityFilter", "OutlineFilter", "PerspectiveFilter",
+        "PinchFilter", "PlasmaFilter", "PointillizeFilter", "PolarFilter", "PosterizeFilter",
+        "PremultiplyFilter", "QuantizeFilter", "QuiltFilter", "RGBAdjustFilter", "RankFilter", "RaysFilter",
+        "ReduceNoiseFilter", "RenderTextFilter", "RescaleFilter", "RippleFilter", "RotateFilter",
+        "SaturationFilter", "ScaleFilter", "ScratchFilter", "ShadeFilter", "ShadowFilter",
+        "ShapeFilter", "SharpenFilter", "ShatterFilter", "ShearFilter", "ShineFilter",
+        "SkeletonFilter", "SkyFilter", "SmartBlurFilter", "SmearFilter", "SolarizeFilter",
+        "SparkleFilter", "SphereFilter", "StampFilter", "SwimFilter", "TextureFilter",
+        "ThresholdFilter", "TileImageFilter", "TwirlFilter", "UnpremultiplyFilter", "UnsharpFilter",
+        "VariableBlurFilter", "WarpFilter", "WaterFilter", "WeaveFilter", "WoodFilter",
+        // com.jhlabs.filter
+        "CropFilterFast", "FlipFilterFast", "GammaContrastFilter", "IdentityFilter", "PerlinContrastFilter",
+        "RedEyeFilter", "ResizeFilter", "SepiaFilter", "StraightenFilter"
+    })
+    public String filter;
+
+    @Param({"1", "12", "24", "50"})
+    public int megaPixels;
+
+    @Param({"RGB32", "GRAY8", "RGB_3X8", "RGB_4X8", "CMYK_4X8"})
+    public String imageType;
+
+    private AbstractBufferedImageOp op;
+    private BufferedImage src;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        op = createFilter(filter);
+        src = BenchmarkImages.create(imageType, megaPixels);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        op = null;
+        src = null;
+    }
+
+    @Benchmark
+    public BufferedImage filter() {
+        return op.filter(src, null);
+    }
+
+    static AbstractBufferedImageOp createFilter(String name) throws ReflectiveOperationException {
+        Class<?> clazz;
+        try {
+            clazz = Class.forName("com.jhlabs.image." + name);
+        } catch (ClassNotFoundException ex) {
+            clazz = Class.forName("com.jhlabs.filter." + name);
+        }
+        return (AbstractBufferedImageOp) clazz.getConstructor().newInstance();
+    }
+}
@@ -1,6 +1,8 @@
 package com.adlitteram.panel;
 
+import com.adlitteram.util.Message;
 import com.jhlabs.image.AbstractBufferedImageOp;
+import com.jhlabs.image.TransformFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,6 +12,11 @@ import java.util.ArrayList;
 
 public abstract class AbstractPanelFilter implements PanelFilter {
 
+    // The interpolations offered by the transform filter panels, and their
+    // labels, in the order of the combo
+    protected static final int[] INTERPOLATIONS = {TransformFilter.NEAREST_NEIGHBOUR, TransformFilter.BILINEAR, TransformFilter.BICUBIC, TransformFilter.LANCZOS3};
+    protected static final String[] INTERPOLATION_ARRAY = {Message.get("Nearest"), Message.get("Bilinear"), Message.get("Bicubic"), Message.get("Lanczos")};
+
     private final ArrayList<FilterListener> listeners = new ArrayList<>();
 
     @Override
@@ -1,8 +1,10 @@
 package com.adlitteram.panel;
 
+import com.adlitteram.jasmin.gui.widget.JSpinSlider;
 import com.adlitteram.util.Message;
 import com.jhlabs.image.AbstractBufferedImageOp;
 import com.jhlabs.image.MedianFilter;
+import com.jhlabs.image.RankFilter;
 import cz.autel.dmi.HIGConstraints;
 import cz.autel.dmi.HIGLayout;
 
@@ -15,6 +17,7 @@ import java.awt.*;
 public class MedianPanelFilter extends AbstractPanelFilter implements ChangeListener {
 
     private JPanel panel;
+    private JSpinSlider radiusSlider;
 
     @Override
     public String getName() {
@@ -26,25 +29,43 @@ public class MedianPanelFilter extends AbstractPanelFilter implements ChangeList
         fireFilterListeners();
     }
 
+    @Override
+    public void reset() {
+        radiusSlider.setValue(1);
+    }
+
+    @Override
+    public boolean isParametrable() {
+        return true;
+    }
+
     @Override
     public JPanel getPanel() {
         if (panel == null) {
 
+            radiusSlider = new JSpinSlider(1, 1, 25, 1, 5, 10);
+            radiusSlider.addChangeListener(this);
+
             int[] w = {10, 0, 10};
-            int[] h = {10, 0, 15};
+            int[] h = {10, 0, 0, 10};
             HIGLayout l = new HIGLayout(w, h);
             HIGConstraints c = new HIGConstraints();
             l.setColumnWeight(2, 1);
 
             panel = new JPanel(l);
             panel.setBorder(new TitledBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY), getName()));
-            panel.add(new JLabel(Message.get("NoParameters")), c.xy(2, 2, ""));
+            panel.add(new JLabel(Message.get("Radius") + " :"), c.xy(2, 2, "l"));
+            panel.add(radiusSlider, c.xy(2, 3));
         }
         return panel;
     }
 
     @Override
     public AbstractBufferedImageOp getFilter(float scale) {
-        return new MedianFilter();
+        int radius = Math.round(radiusSlider.getValue() * scale);
+        if (radius <= 1) {
+            return new MedianFilter();
+        }
+        return new RankFilter(radius, RankFilter.MEDIAN);
     }
 }
@@ -0,0 +1,16 @@
+package com.adlitteram.panel;
+
+import java.awt.image.BufferedImage;
+
+public interface PreviewListener {
+
+    /**
+     * Called on the event dispatch thread when a preview has been rendered.
+     *
+     * @param image the filtered preview
+     * @param scale the size of the image relative to the preview: 1 for the
+     *              final render, less for a coarse one which is to be drawn
+     *              enlarged by 1 / scale
+     */
+    void previewRendered(BufferedImage image, float scale);
+}
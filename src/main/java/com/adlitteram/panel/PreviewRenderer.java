@@ -0,0 +1,215 @@
+package com.adlitteram.panel;
+
+import com.jhlabs.image.AbstractBufferedImageOp;
+import com.jhlabs.image.ImageUtils;
+import com.jhlabs.image.MipMap;
+import com.jhlabs.utils.ExecutionContext;
+import com.jhlabs.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the preview of a PanelFilter in the background. The changes fired
+ * while a slider is dragged are coalesced: a render starts once no change has
+ * come for the delay, and a render still running when a new change comes is
+ * cancelled at the next pass of its filter. Each render is progressive: the
+ * filter is first applied to a copy of the preview reduced 4 times, then to
+ * the preview itself. The results are handed to a PreviewListener, unless
+ * they have been superseded.
+ * <p>
+ * The renderer listens to its PanelFilter until it is disposed. Its methods
+ * must be called on the event dispatch thread.
+ */
+public class PreviewRenderer implements FilterListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewRenderer.class);
+
+    private static final int DEFAULT_DELAY = 50;
+    // The coarse render uses this level of the mipmap of the preview
+    private static final int COARSE_LEVEL = 2;
+    // The least size of a preview worth a coarse render
+    private static final int COARSE_PIXELS = 512 * 512;
+
+    private final PanelFilter panelFilter;
+    private final BufferedImage source;
+    private final float filterScale;
+    private final PreviewListener listener;
+    private final boolean coarse;
+    private final ScheduledExecutorService executor;
+    private int delay = DEFAULT_DELAY;
+    private Render current;
+    // Only used by the render thread
+    private BufferedImage coarseSource;
+
+    /**
+     * Construct a PreviewRenderer.
+     *
+     * @param panelFilter the filter to preview
+     * @param source      the image to preview the filter on
+     * @param filterScale the size of the preview relative to the image the
+     *                    filter is meant for
+     * @param listener    the listener to the rendered previews
+     */
+    public PreviewRenderer(PanelFilter panelFilter, BufferedImage source, float filterScale, PreviewListener listener) {
+        this.panelFilter = panelFilter;
+        this.source = source;
+        this.filterScale = filterScale;
+        this.listener = listener;
+
+        int imageType = AbstractBufferedImageOp.getImageType(source);
+        coarse = source.getWidth() * source.getHeight() >= COARSE_PIXELS
+                && (imageType == AbstractBufferedImageOp.RGB32_TYPE || imageType == AbstractBufferedImageOp.GRAY8_TYPE);
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "PreviewRenderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        panelFilter.addFilterListener(this);
+    }
+
+    /**
+     * Set the time without changes after which a render starts.
+     *
+     * @param delay the delay in milliseconds
+     * @see #getDelay
+     */
+    public void setDelay(int delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * Get the time without changes after which a render starts.
+     *
+     * @return the delay in milliseconds
+     * @see #setDelay
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+    @Override
+    public float getFilterScale() {
+        return filterScale;
+    }
+
+    @Override
+    public void setFilter(AbstractBufferedImageOp filter) {
+        AbstractBufferedImageOp coarseFilter = null;
+        if (coarse) {
+            coarseFilter = panelFilter.getFilter(filterScale / (1 << COARSE_LEVEL));
+        }
+        if (current != null) {
+            current.cancel();
+        }
+        current = new Render(coarseFilter, filter);
+        current.future = executor.schedule(current, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Render the preview with the current settings of the filter, for example
+     * when it is first shown.
+     */
+    public void render() {
+        setFilter(panelFilter.getFilter(filterScale));
+    }
+
+    /**
+     * Stop listening to the filter and cancel any render.
+     */
+    public void dispose() {
+        panelFilter.removeFilterListener(this);
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
+        executor.shutdownNow();
+    }
+
+    private BufferedImage getCoarseSource() {
+        if (coarseSource == null) {
+            int width = source.getWidth();
+            int height = source.getHeight();
+            int levels = Math.min(COARSE_LEVEL + 1, MipMap.getMaxLevels(width, height));
+            int level = levels - 1;
+            MipMap mipmap;
+            if (AbstractBufferedImageOp.getImageType(source) == AbstractBufferedImageOp.GRAY8_TYPE) {
+                byte[] pixels = (byte[]) source.getRaster().getDataElements(0, 0, width, height, null);
+                mipmap = MipMap.createGray(pixels, width, height, levels);
+            } else {
+                int[] pixels = ImageUtils.getRGB(source, 0, 0, width, height, null);
+                mipmap = MipMap.createRGB(pixels, width, height, levels);
+            }
+
+            int coarseWidth = mipmap.getWidth(level);
+            int coarseHeight = mipmap.getHeight(level);
+            ColorModel colorModel = source.getColorModel();
+            BufferedImage image = new BufferedImage(colorModel, colorModel.createCompatibleWritableRaster(coarseWidth, coarseHeight), colorModel.isAlphaPremultiplied(), null);
+            if (mipmap.isGray()) {
+                image.getRaster().setDataElements(0, 0, coarseWidth, coarseHeight, mipmap.getGray(level));
+            } else {
+                ImageUtils.setRGB(image, 0, 0, coarseWidth, coarseHeight, mipmap.getRGB(level));
+            }
+            coarseSource = image;
+        }
+        return coarseSource;
+    }
+
+    private class Render implements Runnable {
+
+        private final AbstractBufferedImageOp coarseFilter;
+        private final AbstractBufferedImageOp filter;
+        // A context of its own, on the pool of the default one, which is
+        // cancelled with the render
+        private final ExecutionContext context;
+        private Future<?> future;
+
+        private Render(AbstractBufferedImageOp coarseFilter, AbstractBufferedImageOp filter) {
+            this.coarseFilter = coarseFilter;
+            this.filter = filter;
+            ExecutionContext context = ThreadUtils.getDefaultExecutionContext();
+            this.context = new ExecutionContext(context.getPool(), context.getParallelism(), context.getThreshold());
+        }
+
+        private void cancel() {
+            context.cancel();
+            future.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            ExecutionContext previous = ThreadUtils.setExecutionContext(context);
+            try {
+                if (coarseFilter != null) {
+                    publish(coarseFilter.filter(getCoarseSource(), null), 1f / (1 << COARSE_LEVEL));
+                }
+                if (!context.isCancelled()) {
+                    publish(filter.filter(source, null), 1f);
+                }
+            } catch (CancellationException e) {
+                // Superseded by a newer render
+            } catch (RuntimeException e) {
+                logger.warn("Preview render failed", e);
+            } finally {
+                ThreadUtils.setExecutionContext(previous);
+            }
+        }
+
+        private void publish(BufferedImage image, float scale) {
+            SwingUtilities.invokeLater(() -> {
+                if (current == this) {
+                    listener.previewRendered(image, scale);
+                }
+            });
+        }
+    }
+}
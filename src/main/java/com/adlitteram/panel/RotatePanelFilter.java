@@ -6,7 +6,6 @@ import com.adlitteram.util.Message;
 import com.jhlabs.filter.StraightenFilter;
 import com.jhlabs.image.AbstractBufferedImageOp;
 import com.jhlabs.image.RotateFilter;
-import com.jhlabs.image.TransformFilter;
 import cz.autel.dmi.HIGConstraints;
 import cz.autel.dmi.HIGLayout;
 import org.slf4j.Logger;
@@ -23,7 +22,6 @@ import java.awt.event.ActionListener;
 public class RotatePanelFilter extends AbstractPanelFilter implements ChangeListener, ActionListener {
 
     private static final double DEGREE_TO_RADIAN = Math.PI / 180d;
-    private static final String[] INTERPOLATION_ARRAY = {Message.get("Nearest"), Message.get("Bilinear")};
     private static final int DEFAULT_ANGLE = 0;
     private JPanel panel;
     private FloatJSpinSlider angleSlider;
@@ -91,7 +89,7 @@ public class RotatePanelFilter extends AbstractPanelFilter implements ChangeList
     @Override
     public AbstractBufferedImageOp getFilter(float scale) {
         float angle = (float) (angleSlider.getFloatValue() * DEGREE_TO_RADIAN);
-        int interpolation = (interpolationCombo.getSelectedIndex() == 0) ? TransformFilter.NEAREST_NEIGHBOUR : TransformFilter.BILINEAR;
+        int interpolation = INTERPOLATIONS[interpolationCombo.getSelectedIndex()];
         boolean resize = resizeCheck.isSelected();
 
         RotateFilter filter = new RotateFilter(angle, resize);
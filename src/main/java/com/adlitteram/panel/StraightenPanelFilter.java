@@ -6,7 +6,6 @@ import com.adlitteram.util.Message;
 import com.adlitteram.util.NumUtils;
 import com.jhlabs.filter.StraightenFilter;
 import com.jhlabs.image.AbstractBufferedImageOp;
-import com.jhlabs.image.TransformFilter;
 import cz.autel.dmi.HIGConstraints;
 import cz.autel.dmi.HIGLayout;
 import org.slf4j.Logger;
@@ -22,7 +21,6 @@ import java.awt.event.ActionListener;
 
 public class StraightenPanelFilter extends AbstractPanelFilter implements ChangeListener, ActionListener {
 
-    private static final String[] INTERPOLATION_ARRAY = {Message.get("Nearest"), Message.get("Bilinear")};
     private static final int DEFAULT_ANGLE = 0;
 
     private JPanel panel;
@@ -89,7 +87,7 @@ public class StraightenPanelFilter extends AbstractPanelFilter implements Change
     @Override
     public AbstractBufferedImageOp getFilter(float scale) {
         float angle = NumUtils.toRadian(angleSlider.getFloatValue());
-        int interpolation = (interpolationCombo.getSelectedIndex() == 0) ? TransformFilter.NEAREST_NEIGHBOUR : TransformFilter.BILINEAR;
+        int interpolation = INTERPOLATIONS[interpolationCombo.getSelectedIndex()];
         boolean keepSize = keepSizeCheck.isSelected();
 
         StraightenFilter filter = new StraightenFilter(angle, keepSize);
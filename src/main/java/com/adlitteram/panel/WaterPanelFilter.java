@@ -6,7 +6,6 @@ import com.adlitteram.util.Message;
 import com.adlitteram.util.NumUtils;
 import com.jhlabs.filter.StraightenFilter;
 import com.jhlabs.image.AbstractBufferedImageOp;
-import com.jhlabs.image.TransformFilter;
 import com.jhlabs.image.WaterFilter;
 import cz.autel.dmi.HIGConstraints;
 import cz.autel.dmi.HIGLayout;
@@ -22,7 +21,6 @@ import java.awt.event.ActionListener;
 public class WaterPanelFilter extends AbstractPanelFilter implements ChangeListener, ActionListener {
 
 
-    private static final String[] INTERPOLATION_ARRAY = {Message.get("Nearest"), Message.get("Bilinear")};
     private static final float DEFAULT_WAVELENGTH = 50f;
     private static final float DEFAULT_AMPLITUDE = 1f;
     private static final float DEFAULT_PHASE = 0f;
@@ -130,7 +128,7 @@ public class WaterPanelFilter extends AbstractPanelFilter implements ChangeListe
         float centreX = centreXSlider.getFloatValue();
         float centreY = centreYSlider.getFloatValue();
         float radius = radiusSlider.getFloatValue() * scale;
-        int interpolation = (interpolationCombo.getSelectedIndex() == 0) ? TransformFilter.NEAREST_NEIGHBOUR : TransformFilter.BILINEAR;
+        int interpolation = INTERPOLATIONS[interpolationCombo.getSelectedIndex()];
 
         WaterFilter filter = new WaterFilter();
         filter.setWavelength(wavelength);
@@ -15,6 +15,8 @@ limitations under the License.
  */
 package com.jhlabs.composite;
 
+import com.jhlabs.image.PixelUtils;
+
 import java.awt.*;
 import java.awt.image.ColorModel;
 
@@ -30,9 +32,6 @@ public final class HueComposite extends RGBComposite {
 
     static class Context extends RGBCompositeContext {
 
-        private final float[] sHSB = new float[3];
-        private final float[] dHSB = new float[3];
-
         public Context(float alpha, ColorModel srcColorModel, ColorModel dstColorModel) {
             super(alpha, srcColorModel, dstColorModel);
         }
@@ -51,12 +50,11 @@ public final class HueComposite extends RGBComposite {
                 int dia = dst[i + 3];
                 int dor, dog, dob;
 
-                Color.RGBtoHSB(sr, sg, sb, sHSB);
-                Color.RGBtoHSB(dir, dig, dib, dHSB);
-
-                dHSB[0] = sHSB[0];
+                float hue = PixelUtils.hsbHue(sr, sg, sb);
+                float saturation = PixelUtils.hsbSaturation(dir, dig, dib);
+                float brightness = PixelUtils.hsbBrightness(dir, dig, dib);
 
-                int doRGB = Color.HSBtoRGB(dHSB[0], dHSB[1], dHSB[2]);
+                int doRGB = Color.HSBtoRGB(hue, saturation, brightness);
                 dor = (doRGB & 0xff0000) >> 16;
                 dog = (doRGB & 0xff00) >> 8;
                 dob = (doRGB & 0xff);
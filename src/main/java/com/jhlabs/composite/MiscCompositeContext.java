@@ -15,6 +15,8 @@ limitations under the License.
  */
 package com.jhlabs.composite;
 
+import com.jhlabs.image.PixelUtils;
+
 import java.awt.*;
 import java.awt.color.ColorSpace;
 import java.awt.image.ColorModel;
@@ -65,18 +67,6 @@ public class MiscCompositeContext implements CompositeContext {
         float alpha = this.alpha;
         int t;
 
-        float[] sHsv = null, diHsv = null, doHsv = null;
-        switch (rule) {
-            case MiscComposite.HUE:
-            case MiscComposite.SATURATION:
-            case MiscComposite.VALUE:
-            case MiscComposite.COLOR:
-                sHsv = new float[3];
-                diHsv = new float[3];
-                doHsv = new float[3];
-                break;
-        }
-
         int[] srcPix = null;
         int[] dstPix = null;
 
@@ -214,33 +204,13 @@ public class MiscCompositeContext implements CompositeContext {
                     case MiscComposite.SATURATION:
                     case MiscComposite.VALUE:
                     case MiscComposite.COLOR:
-                        Color.RGBtoHSB(sr, sg, sb, sHsv);
-                        Color.RGBtoHSB(dir, dig, dib, diHsv);
-
-                        switch (rule) {
-                            case MiscComposite.HUE:
-                                doHsv[0] = sHsv[0];
-                                doHsv[1] = diHsv[1];
-                                doHsv[2] = diHsv[2];
-                                break;
-                            case MiscComposite.SATURATION:
-                                doHsv[0] = diHsv[0];
-                                doHsv[1] = sHsv[1];
-                                doHsv[2] = diHsv[2];
-                                break;
-                            case MiscComposite.VALUE:
-                                doHsv[0] = diHsv[0];
-                                doHsv[1] = diHsv[1];
-                                doHsv[2] = sHsv[2];
-                                break;
-                            case MiscComposite.COLOR:
-                                doHsv[0] = sHsv[0];
-                                doHsv[1] = sHsv[1];
-                                doHsv[2] = diHsv[2];
-                                break;
-                        }
+                        boolean srcHue = (rule == MiscComposite.HUE || rule == MiscComposite.COLOR);
+                        boolean srcSaturation = (rule == MiscComposite.SATURATION || rule == MiscComposite.COLOR);
+                        float h = srcHue ? PixelUtils.hsbHue(sr, sg, sb) : PixelUtils.hsbHue(dir, dig, dib);
+                        float sat = srcSaturation ? PixelUtils.hsbSaturation(sr, sg, sb) : PixelUtils.hsbSaturation(dir, dig, dib);
+                        float v = (rule == MiscComposite.VALUE) ? PixelUtils.hsbBrightness(sr, sg, sb) : PixelUtils.hsbBrightness(dir, dig, dib);
 
-                        int doRGB = Color.HSBtoRGB(doHsv[0], doHsv[1], doHsv[2]);
+                        int doRGB = Color.HSBtoRGB(h, sat, v);
                         dor = (doRGB & 0xff0000) >> 16;
                         dog = (doRGB & 0xff00) >> 8;
                         dob = (doRGB & 0xff);
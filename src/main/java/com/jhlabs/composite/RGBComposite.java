@@ -15,10 +15,19 @@ limitations under the License.
  */
 package com.jhlabs.composite;
 
+import com.jhlabs.utils.ThreadUtils;
+
 import java.awt.*;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.concurrent.RecursiveAction;
 
 public abstract class RGBComposite implements Composite {
 
@@ -79,23 +88,172 @@ public abstract class RGBComposite implements Composite {
         public abstract void composeRGB(int[] src, int[] dst, float alpha);
 
         public void compose(Raster src, Raster dstIn, WritableRaster dstOut) {
-            float alpha = this.alpha;
-
-            int[] srcPix = null;
-            int[] dstPix = null;
-
             int x = dstOut.getMinX();
             int w = dstOut.getWidth();
             int y0 = dstOut.getMinY();
             int y1 = y0 + dstOut.getHeight();
 
+            int threshold = ThreadUtils.getThreshold(w, y1 - y0);
+            ThreadUtils.forkJoin(new ComposeAction(y0, y1, x, w, src, dstIn, dstOut, threshold));
+        }
+
+        private void compose(int y0, int y1, int x, int w, Raster src, Raster dstIn, WritableRaster dstOut) {
+            float alpha = this.alpha;
+
+            int[] srcPix = null;
+            int[] dstPix = null;
+
             for (int y = y0; y < y1; y++) {
-                srcPix = src.getPixels(x, y, w, 1, srcPix);
-                dstPix = dstIn.getPixels(x, y, w, 1, dstPix);
+                srcPix = getPixels(src, x, y, w, srcPix);
+                dstPix = getPixels(dstIn, x, y, w, dstPix);
                 composeRGB(srcPix, dstPix, alpha);
-                dstOut.setPixels(x, y, w, 1, dstPix);
+                setPixels(dstOut, x, y, w, dstPix);
             }
         }
 
+        private class ComposeAction extends RecursiveAction {
+
+            private final int start;
+            private final int end;
+            private final int x;
+            private final int w;
+            private final Raster src;
+            private final Raster dstIn;
+            private final WritableRaster dstOut;
+            private final int threshold;
+
+            private ComposeAction(int start, int end, int x, int w, Raster src, Raster dstIn, WritableRaster dstOut, int threshold) {
+                this.start = start;
+                this.end = end;
+                this.x = x;
+                this.w = w;
+                this.src = src;
+                this.dstIn = dstIn;
+                this.dstOut = dstOut;
+                this.threshold = threshold;
+            }
+
+            @Override
+            public void compute() {
+                int t = (end - start) * w;
+                if (t < threshold || end - start <= 1) {
+                    compose(start, end, x, w, src, dstIn, dstOut);
+                } else {
+                    int split = (end - start) / 2;
+                    invokeAll(new ComposeAction(start, start + split, x, w, src, dstIn, dstOut, threshold),
+                            new ComposeAction(start + split, end, x, w, src, dstIn, dstOut, threshold));
+                }
+            }
+        }
+
+        // Return the bit masks of a packed RGB or ARGB int raster, or null
+        private static int[] getPackedMasks(Raster raster) {
+            SampleModel sm = raster.getSampleModel();
+            if (raster.getDataBuffer() instanceof DataBufferInt && raster.getDataBuffer().getNumBanks() == 1
+                    && sm instanceof SinglePixelPackedSampleModel) {
+                int[] masks = ((SinglePixelPackedSampleModel) sm).getBitMasks();
+                if (masks[0] == 0xff0000 && masks[1] == 0xff00 && masks[2] == 0xff
+                        && (masks.length == 3 || (masks.length == 4 && masks[3] == 0xff000000))) {
+                    return masks;
+                }
+            }
+            return null;
+        }
+
+        // Return true if the raster is made of 4 interleaved bytes per pixel
+        private static boolean isInterleaved4x8(Raster raster) {
+            SampleModel sm = raster.getSampleModel();
+            return raster.getDataBuffer() instanceof DataBufferByte && raster.getDataBuffer().getNumBanks() == 1
+                    && sm instanceof ComponentSampleModel && sm.getNumBands() == 4
+                    && ((ComponentSampleModel) sm).getPixelStride() == 4;
+        }
+
+        /**
+         * Read a row of RGBA samples, directly from the data buffer when the
+         * raster is a packed int or a 4 byte interleaved raster.
+         */
+        static int[] getPixels(Raster raster, int x, int y, int w, int[] pixels) {
+            int[] masks = getPackedMasks(raster);
+            if (masks != null) {
+                if (pixels == null || pixels.length < 4 * w) {
+                    pixels = new int[4 * w];
+                }
+                DataBuffer db = raster.getDataBuffer();
+                int[] data = ((DataBufferInt) db).getData();
+                int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                int index = db.getOffset() + (y - raster.getSampleModelTranslateY()) * stride + (x - raster.getSampleModelTranslateX());
+                boolean hasAlpha = masks.length == 4;
+                for (int i = 0, end = 4 * w; i < end; i += 4) {
+                    int argb = data[index++];
+                    pixels[i] = (argb >> 16) & 0xff;
+                    pixels[i + 1] = (argb >> 8) & 0xff;
+                    pixels[i + 2] = argb & 0xff;
+                    pixels[i + 3] = hasAlpha ? argb >>> 24 : 0xff;
+                }
+                return pixels;
+            }
+
+            if (isInterleaved4x8(raster)) {
+                if (pixels == null || pixels.length < 4 * w) {
+                    pixels = new int[4 * w];
+                }
+                ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+                DataBuffer db = raster.getDataBuffer();
+                byte[] data = ((DataBufferByte) db).getData();
+                int[] offsets = sm.getBandOffsets();
+                int o0 = offsets[0], o1 = offsets[1], o2 = offsets[2], o3 = offsets[3];
+                int index = db.getOffset() + (y - raster.getSampleModelTranslateY()) * sm.getScanlineStride() + (x - raster.getSampleModelTranslateX()) * 4;
+                for (int i = 0, end = 4 * w; i < end; i += 4) {
+                    pixels[i] = data[index + o0] & 0xff;
+                    pixels[i + 1] = data[index + o1] & 0xff;
+                    pixels[i + 2] = data[index + o2] & 0xff;
+                    pixels[i + 3] = data[index + o3] & 0xff;
+                    index += 4;
+                }
+                return pixels;
+            }
+
+            return raster.getPixels(x, y, w, 1, pixels);
+        }
+
+        /**
+         * Write a row of RGBA samples, directly to the data buffer when the
+         * raster is a packed int or a 4 byte interleaved raster.
+         */
+        static void setPixels(WritableRaster raster, int x, int y, int w, int[] pixels) {
+            int[] masks = getPackedMasks(raster);
+            if (masks != null) {
+                DataBuffer db = raster.getDataBuffer();
+                int[] data = ((DataBufferInt) db).getData();
+                int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                int index = db.getOffset() + (y - raster.getSampleModelTranslateY()) * stride + (x - raster.getSampleModelTranslateX());
+                boolean hasAlpha = masks.length == 4;
+                for (int i = 0, end = 4 * w; i < end; i += 4) {
+                    int rgb = ((pixels[i] << 16) & 0xff0000) | ((pixels[i + 1] << 8) & 0xff00) | (pixels[i + 2] & 0xff);
+                    data[index++] = hasAlpha ? (pixels[i + 3] << 24) | rgb : rgb;
+                }
+                return;
+            }
+
+            if (isInterleaved4x8(raster)) {
+                ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+                DataBuffer db = raster.getDataBuffer();
+                byte[] data = ((DataBufferByte) db).getData();
+                int[] offsets = sm.getBandOffsets();
+                int o0 = offsets[0], o1 = offsets[1], o2 = offsets[2], o3 = offsets[3];
+                int index = db.getOffset() + (y - raster.getSampleModelTranslateY()) * sm.getScanlineStride() + (x - raster.getSampleModelTranslateX()) * 4;
+                for (int i = 0, end = 4 * w; i < end; i += 4) {
+                    data[index + o0] = (byte) pixels[i];
+                    data[index + o1] = (byte) pixels[i + 1];
+                    data[index + o2] = (byte) pixels[i + 2];
+                    data[index + o3] = (byte) pixels[i + 3];
+                    index += 4;
+                }
+                return;
+            }
+
+            raster.setPixels(x, y, w, 1, pixels);
+        }
+
     }
 }
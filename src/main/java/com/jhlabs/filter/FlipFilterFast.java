@@ -86,7 +86,7 @@ public class FlipFilterFast extends AbstractBufferedImageOp {
                 if (dst == null) {
                     dst = createCompatibleDestImage(src, src.getHeight(), src.getWidth());
                 }
-                int threshold = Math.max(ThreadUtils.THRESHOLD, (src.getWidth() * src.getHeight()) / (ThreadUtils.getAvailableProcessors() * 10));
+                int threshold = ThreadUtils.getThreshold(src.getWidth(), src.getHeight());
                 int end = (operation == FLIP_90CW) ? src.getHeight() : src.getWidth();
                 ThreadUtils.forkJoin(new FlipAction_GRAY8(0, end, src, dst, threshold));
                 return dst;
@@ -132,7 +132,7 @@ public class FlipFilterFast extends AbstractBufferedImageOp {
                 if (dst == null) {
                     dst = createCompatibleDestImage(src, src.getHeight(), src.getWidth());
                 }
-                int threshold = Math.max(ThreadUtils.THRESHOLD, (src.getWidth() * src.getHeight()) / (ThreadUtils.getAvailableProcessors() * 10));
+                int threshold = ThreadUtils.getThreshold(src.getWidth(), src.getHeight());
                 int end = (operation == FLIP_90CW) ? src.getHeight() : src.getWidth();
                 ThreadUtils.forkJoin(new FlipAction_RGB32(0, end, src, dst, threshold));
                 return dst;
@@ -262,7 +262,7 @@ public class FlipFilterFast extends AbstractBufferedImageOp {
         @Override
         public void compute() {
             int t = (end - start) * ((operation == FLIP_90CW) ? src.getWidth() : src.getHeight());
-            if (t < threshold) {
+            if (t < threshold || end - start <= 1) {
                 if (operation == FLIP_90CW) {
                     getFlip90CW_GRAY8(start, end, src, dst);
                 } else if (operation == FLIP_90CCW) {
@@ -388,7 +388,7 @@ public class FlipFilterFast extends AbstractBufferedImageOp {
         @Override
         public void compute() {
             int t = (end - start) * ((operation == FLIP_90CW) ? src.getWidth() : src.getHeight());
-            if (t < threshold) {
+            if (t < threshold || end - start <= 1) {
                 if (operation == FLIP_90CW) {
                     getFlip90CW_RGB32(start, end, src, dst);
                 } else if (operation == FLIP_90CCW) {
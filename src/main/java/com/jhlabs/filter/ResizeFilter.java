@@ -6,6 +6,9 @@ package com.jhlabs.filter;
 
 import com.adlitteram.jasmin.image.icc.IccUtils;
 import com.jhlabs.image.AbstractBufferedImageOp;
+import com.jhlabs.image.ColorTransformCache;
+import com.jhlabs.image.ImageMath;
+import com.jhlabs.image.Resampler;
 
 import java.awt.*;
 import java.awt.color.ColorSpace;
@@ -18,6 +21,12 @@ public class ResizeFilter extends AbstractBufferedImageOp {
     public static final int BILINEAR = 1;
     public static final int BICUBIC = 2;
     public static final int MULTISTEP = 3;
+    // The following types use the separable Resampler instead of Graphics2D
+    public static final int LANCZOS3 = 4;
+    public static final int MITCHELL = 5;
+    public static final int CATMULL_ROM = 6;
+    public static final int TRIANGLE = 7;
+    public static final int BOX = 8;
 
     private static final Object[] RENDERING_HINTS = {
             RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR,
@@ -28,6 +37,7 @@ public class ResizeFilter extends AbstractBufferedImageOp {
     private final int type;
     private final int dstWidth;
     private final int dstHeight;
+    private boolean resampleInSourceSpace;
 
     /**
      * Construct a ResizeFilter.
@@ -49,85 +59,169 @@ public class ResizeFilter extends AbstractBufferedImageOp {
         this.type = type;
     }
 
+    /**
+     * Set whether images are resampled in their own color space, rather than
+     * being converted to sRGB (or sGray) and back.
+     *
+     * @param resampleInSourceSpace true to resample in the source color space
+     * @see #getResampleInSourceSpace
+     */
+    public void setResampleInSourceSpace(boolean resampleInSourceSpace) {
+        this.resampleInSourceSpace = resampleInSourceSpace;
+    }
+
+    /**
+     * Get whether images are resampled in their own color space.
+     *
+     * @return true to resample in the source color space
+     * @see #setResampleInSourceSpace
+     */
+    public boolean getResampleInSourceSpace() {
+        return resampleInSourceSpace;
+    }
+
     @Override
     public boolean isGraySupported() {
         return true;
     }
 
+    // CMYK is only resampled natively by the Resampler types
     @Override
-    public BufferedImage filterGRAY8(BufferedImage src, BufferedImage dst) {
-        if (IccUtils.isCS_sGRAY(src)) {
-            if (dst == null || IccUtils.isCS_sGRAY(dst)) {
-                dst = scaleImage(src, dst);
-            } else {
-                ColorSpace cs = dst.getColorModel().getColorSpace();
-                dst = IccUtils.applyColorSpace(dst, IccUtils.CS_GRAY_COLORSPACE);
-                dst = scaleImage(src, dst);
-                dst = IccUtils.applyColorSpace(dst, cs);
-            }
-        } else {
-            ColorSpace cs1 = src.getColorModel().getColorSpace();
-            src = IccUtils.applyColorSpace(src, IccUtils.CS_GRAY_COLORSPACE);
-
-            if (dst == null) {
-                dst = scaleImage(src, dst);
-                dst = IccUtils.applyColorSpace(dst, cs1);
-            } else if (IccUtils.isCS_sGRAY(dst)) {
-                dst = scaleImage(src, dst);
-            } else {
-                ColorSpace cs2 = dst.getColorModel().getColorSpace();
-                dst = IccUtils.applyColorSpace(dst, IccUtils.CS_GRAY_COLORSPACE);
-                dst = scaleImage(src, dst);
-                dst = IccUtils.applyColorSpace(dst, cs2);
-            }
+    public boolean isCmykSupported() {
+        return true;
+    }
 
-            src = IccUtils.applyColorSpace(src, cs1);
+    @Override
+    public BufferedImage filterCMYK32(BufferedImage src, BufferedImage dst) {
+        if (type > MULTISTEP) {
+            return scaleImage(src, dst);
         }
+        return filterRGB32(src, dst);
+    }
 
-        return dst;
+    @Override
+    public BufferedImage filterGRAY8(BufferedImage src, BufferedImage dst) {
+        return filter(src, dst, IccUtils.CS_GRAY_COLORSPACE, IccUtils.isCS_sGRAY(src), dst == null || IccUtils.isCS_sGRAY(dst));
     }
 
     @Override
     public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
+        return filter(src, dst, IccUtils.CS_sRGB_COLORSPACE, IccUtils.isCS_sRGB(src), dst == null || IccUtils.isCS_sRGB(dst));
+    }
 
-        if (IccUtils.isCS_sRGB(src)) {
-            if (dst == null || IccUtils.isCS_sRGB(dst)) {
-                dst = scaleImage(src, dst);
-            } else {
-                ColorSpace cs = dst.getColorModel().getColorSpace();
-                dst = IccUtils.applyColorSpace(dst, IccUtils.CS_sRGB_COLORSPACE);
-                dst = scaleImage(src, dst);
-                dst = IccUtils.applyColorSpace(dst, cs);
-            }
-        } else {
-            ColorSpace cs1 = src.getColorModel().getColorSpace();
-            src = IccUtils.applyColorSpace(src, IccUtils.CS_sRGB_COLORSPACE);
-
-            if (dst == null) {
-                dst = scaleImage(src, dst);
-                dst = IccUtils.applyColorSpace(dst, cs1);
-            } else if (IccUtils.isCS_sRGB(dst)) {
-                dst = scaleImage(src, dst);
-            } else {
-                ColorSpace cs2 = dst.getColorModel().getColorSpace();
-                dst = IccUtils.applyColorSpace(dst, IccUtils.CS_sRGB_COLORSPACE);
-                dst = scaleImage(src, dst);
-                dst = IccUtils.applyColorSpace(dst, cs2);
-            }
+    // Scale in the working color space, converting the source to it and the result back if needed
+    private BufferedImage filter(BufferedImage src, BufferedImage dst, ColorSpace workingSpace, boolean srcWorking, boolean dstWorking) {
+        ColorSpace srcSpace = src.getColorModel().getColorSpace();
+        if (resampleInSourceSpace) {
+            workingSpace = srcSpace;
+            srcWorking = true;
+            dstWorking = dst == null || dst.getColorModel().getColorSpace() == srcSpace;
+        }
 
-            src = IccUtils.applyColorSpace(src, cs1);
+        if (srcWorking && dstWorking) {
+            return scaleImage(src, dst);
         }
 
-        return dst;
+        ColorTransformCache cache = ColorTransformCache.getDefault();
+        if (!srcWorking) {
+            src = cache.convert(src, workingSpace);
+        }
+        if (dst == null) {
+            return cache.convert(scaleImage(src, null), srcSpace);
+        }
+        if (dstWorking) {
+            return scaleImage(src, dst);
+        }
+        return cache.convert(scaleImage(src, null), dst.getColorModel().getColorSpace());
     }
 
     private BufferedImage scaleImage(BufferedImage src, BufferedImage dst) {
         if (dst == null) {
             dst = createCompatibleDestImage(src, dstWidth, dstHeight);
         }
+        if (type > MULTISTEP) {
+            return getResampledImage(src, dst);
+        }
         return (type == MULTISTEP) ? getProgressiveScaledImage(src, dst) : getScaledImage(src, dst);
     }
 
+    private int getKernel() {
+        switch (type) {
+            case LANCZOS3:
+                return Resampler.LANCZOS3;
+            case MITCHELL:
+                return Resampler.MITCHELL;
+            case CATMULL_ROM:
+                return Resampler.CATMULL_ROM;
+            case TRIANGLE:
+                return Resampler.TRIANGLE;
+            default:
+                return Resampler.BOX;
+        }
+    }
+
+    private BufferedImage getResampledImage(BufferedImage src, BufferedImage dst) {
+        Resampler resampler = new Resampler(getKernel());
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int width = dst.getWidth();
+        int height = dst.getHeight();
+
+        // Interleaved byte samples (gray, CMYK...) are resampled as they are stored
+        int imageType = getImageType(src);
+        if (imageType != RGB32_TYPE && imageType != UNKNOWN_TYPE && getImageType(dst) == imageType && src.getRaster().getNumBands() == dst.getRaster().getNumBands()) {
+            int bands = src.getRaster().getNumBands();
+            byte[] inPixels = (byte[]) src.getRaster().getDataElements(0, 0, srcWidth, srcHeight, null);
+            ColorModel cm = src.getColorModel();
+            boolean premultiply = cm.hasAlpha() && !cm.isAlphaPremultiplied();
+            if (premultiply) {
+                premultiply(inPixels, bands);
+            }
+            byte[] outPixels = resampler.resample(inPixels, bands, srcWidth, srcHeight, width, height);
+            if (premultiply) {
+                unpremultiply(outPixels, bands);
+            }
+            dst.getRaster().setDataElements(0, 0, width, height, outPixels);
+            return dst;
+        }
+
+        int[] inPixels = getRGB(src, 0, 0, srcWidth, srcHeight, null);
+        ColorModel cm = src.getColorModel();
+        boolean premultiply = cm.hasAlpha() && !cm.isAlphaPremultiplied();
+        if (premultiply) {
+            ImageMath.premultiply(inPixels, 0, inPixels.length);
+        }
+        int[] outPixels = resampler.resample(inPixels, srcWidth, srcHeight, width, height);
+        if (premultiply) {
+            ImageMath.unpremultiply(outPixels, 0, outPixels.length);
+        }
+        setRGB(dst, 0, 0, width, height, outPixels);
+        return dst;
+    }
+
+    // Premultiply interleaved samples whose last band is the alpha
+    private static void premultiply(byte[] pixels, int bands) {
+        for (int i = 0; i < pixels.length; i += bands) {
+            float f = (pixels[i + bands - 1] & 0xff) * (1.0f / 255.0f);
+            for (int b = 0; b < bands - 1; b++) {
+                pixels[i + b] = (byte) ((pixels[i + b] & 0xff) * f + 0.5f);
+            }
+        }
+    }
+
+    private static void unpremultiply(byte[] pixels, int bands) {
+        for (int i = 0; i < pixels.length; i += bands) {
+            int a = pixels[i + bands - 1] & 0xff;
+            if (a == 0 || a == 255) {
+                continue;
+            }
+            float f = 255.0f / a;
+            for (int b = 0; b < bands - 1; b++) {
+                pixels[i + b] = (byte) Math.min(255, (int) ((pixels[i + b] & 0xff) * f + 0.5f));
+            }
+        }
+    }
+
     private BufferedImage getScaledImage(BufferedImage src, BufferedImage dst) {
         Graphics2D g2 = dst.createGraphics();
         g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RENDERING_HINTS[type]);
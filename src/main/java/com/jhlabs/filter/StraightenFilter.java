@@ -166,6 +166,11 @@ public class StraightenFilter extends TransformFilter {
         out[1] = (y * cos + x * sin) * scale;
     }
 
+    @Override
+    protected float[] getInverseMatrix() {
+        return new float[]{cos * scale, -sin * scale, 0, sin * scale, cos * scale, 0, 0, 0, 1};
+    }
+
     @Override
     public String toString() {
         return "Straighten " + (int) (angle * 180 / Math.PI);
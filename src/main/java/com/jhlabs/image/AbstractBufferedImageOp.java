@@ -15,6 +15,8 @@
  */
 package com.jhlabs.image;
 
+import com.jhlabs.utils.ExecutionContext;
+import com.jhlabs.utils.ThreadUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,8 +42,39 @@ public abstract class AbstractBufferedImageOp implements BufferedImageOp, Clonea
     public static final int CMYK_4X8_TYPE = 6; // CMYK (4x8 bits)
     public static final int UNKNOWN_TYPE = 10; // Unknown
 
+    private ExecutionContext executionContext;
+
+    /**
+     * Set the context used to run this filter. By default the filter runs in
+     * the context of the calling thread.
+     *
+     * @param executionContext the context, or null to use the one of the
+     *                         calling thread
+     * @see ThreadUtils#getExecutionContext
+     */
+    public void setExecutionContext(ExecutionContext executionContext) {
+        this.executionContext = executionContext;
+    }
+
+    public ExecutionContext getExecutionContext() {
+        return executionContext;
+    }
+
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dst) {
+        if (executionContext == null) {
+            return filter0(src, dst);
+        }
+
+        ExecutionContext previous = ThreadUtils.setExecutionContext(executionContext);
+        try {
+            return filter0(src, dst);
+        } finally {
+            ThreadUtils.setExecutionContext(previous);
+        }
+    }
+
+    private BufferedImage filter0(BufferedImage src, BufferedImage dst) {
         int imageType = getImageType(src);
 
         if (dst != null && getImageType(dst) != imageType) {
@@ -203,9 +236,14 @@ public abstract class AbstractBufferedImageOp implements BufferedImageOp, Clonea
         return UNKNOWN_TYPE;
     }
 
-    // BufferedImage is Gray (8 bits) - Return internal array
+    // BufferedImage is Gray (8 bits) - Return internal array, or a copy if the image
+    // does not own its whole buffer
     public static byte[] getGRAY(BufferedImage image) {
-        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        byte[] data = getInterleavedData(image);
+        if (data != null) {
+            return data;
+        }
+        return getGRAY(image, 0, 0, image.getWidth(), image.getHeight(), null);
     }
 
     // BufferedImage is Gray (8 bits) - Return internal array
@@ -225,11 +263,47 @@ public abstract class AbstractBufferedImageOp implements BufferedImageOp, Clonea
         image.getRaster().setDataElements(sx, sy, width, height, pixels);
     }
 
-    // RGB (32 bits)
+    // BufferedImage is interleaved bytes - Return internal array if it holds exactly the
+    // samples of the image, one pixel after the other and the bands in order, otherwise null
+    public static byte[] getInterleavedData(BufferedImage image) {
+        RasterView view = RasterView.of(image);
+        if (view == null || view.isInt() || !view.isExact()) {
+            return null;
+        }
+        // The array may be longer than the buffer
+        byte[] data = view.getByteData();
+        return data.length == image.getWidth() * image.getHeight() * view.getPixelStride() ? data : null;
+    }
+
+    // BufferedImage is packed ints - Return internal array if it holds exactly the
+    // pixels of the image, one row after the other, otherwise null
+    public static int[] getPackedData(BufferedImage image) {
+        RasterView view = RasterView.of(image);
+        if (view == null || !view.isInt() || !view.isExact()) {
+            return null;
+        }
+        // The array may be longer than the buffer
+        int[] data = view.getIntData();
+        return data.length == image.getWidth() * image.getHeight() ? data : null;
+    }
+
+    // RGB (32 bits) - Return the internal array of a destination of the given size, to
+    // write the result of a filter in place, otherwise null
+    public static int[] getDestRGB(BufferedImage image, int width, int height) {
+        if (image.getWidth() != width || image.getHeight() != height || getImageType(image) != RGB32_TYPE) {
+            return null;
+        }
+        return getPackedData(image);
+    }
+
+    // RGB (32 bits) - Return internal array, or a copy if the image does not own its
+    // whole buffer
     public static int[] getRGB(BufferedImage image) {
-        int imageType = getImageType(image);
-        if (imageType == RGB32_TYPE) {
-            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        if (getImageType(image) == RGB32_TYPE) {
+            int[] data = getPackedData(image);
+            if (data != null) {
+                return data;
+            }
         }
         return getRGB(image, 0, 0, image.getWidth(), image.getHeight(), null);
     }
@@ -85,4 +85,23 @@ public abstract class BinaryFilter extends WholeImageFilter {
         return blackFunction;
     }
 
+    /**
+     * Set the pixels within a distance of the set pixels of a plane, other
+     * than the set pixels themselves, to the new color, or to the color of the
+     * colormap for their distance.
+     *
+     * @param pixels the pixels of the image
+     * @param sites the set pixels
+     * @param radius the distance
+     */
+    protected void fillRadius(int[] pixels, BitPlane sites, float radius) {
+        float[] distances = DistanceTransform.getDistances(sites, false);
+        for (int i = 0; i < distances.length; i++) {
+            float d = distances[i];
+            if (d > 0 && d <= radius) {
+                pixels[i] = colormap != null ? colormap.getColor((d - 1) / radius) : newColor;
+            }
+        }
+    }
+
 }
@@ -0,0 +1,579 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.math.BinaryFunction;
+import com.jhlabs.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A binary image packed 64 pixels to a long, for the binary filters. Bit b of
+ * word k of a row is the pixel at x = 64 * k + b, and the bits past the end of
+ * a row are always clear. Morphological operations work on a whole word of
+ * pixels at a time: a Kernel is given the 3x3 neighbourhoods of 64 pixels as
+ * nine words, in which bit b of each word is the neighbour of pixel b.
+ */
+public class BitPlane {
+
+    /**
+     * The indices of the neighbours in the words given to a Kernel.
+     */
+    public final static int NW = 0, N = 1, NE = 2, W = 3, C = 4, E = 5, SW = 6, S = 7, SE = 8;
+
+    /**
+     * An operation on the 3x3 neighbourhoods of 64 pixels at a time.
+     */
+    public interface Kernel {
+
+        /**
+         * Compute 64 pixels of the result.
+         *
+         * @param n the neighbourhoods of the pixels, indexed by NW to SE
+         * @return the pixels of the result
+         */
+        long apply(long[] n);
+    }
+
+    private final int width;
+    private final int height;
+    private final int words;
+    private final long[] bits;
+    // The valid bits of the last word of a row
+    private final long lastMask;
+
+    public BitPlane(int width, int height) {
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        bits = new long[words * height];
+        lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+    }
+
+    /**
+     * Create the plane of the pixels of an image which a function says are
+     * black.
+     *
+     * @param pixels the pixels of the image
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param function the function which says which pixels are set
+     * @return the plane
+     */
+    public static BitPlane create(int[] pixels, int width, int height, BinaryFunction function) {
+        BitPlane plane = new BitPlane(width, height);
+        ThreadUtils.forkJoin(plane.new PackAction(0, height, pixels, function, ThreadUtils.getThreshold(width, height)));
+        return plane;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean get(int x, int y) {
+        return (bits[y * words + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y, boolean value) {
+        if (value) {
+            bits[y * words + (x >>> 6)] |= 1L << x;
+        } else {
+            bits[y * words + (x >>> 6)] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Get whether no pixel is set.
+     *
+     * @return true if the plane is empty
+     */
+    public boolean isEmpty() {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public BitPlane not() {
+        BitPlane result = new BitPlane(width, height);
+        for (int i = 0; i < bits.length; i++) {
+            result.bits[i] = ~bits[i];
+        }
+        result.clearPadding();
+        return result;
+    }
+
+    public BitPlane and(BitPlane plane) {
+        BitPlane result = new BitPlane(width, height);
+        for (int i = 0; i < bits.length; i++) {
+            result.bits[i] = bits[i] & plane.bits[i];
+        }
+        return result;
+    }
+
+    public BitPlane or(BitPlane plane) {
+        BitPlane result = new BitPlane(width, height);
+        for (int i = 0; i < bits.length; i++) {
+            result.bits[i] = bits[i] | plane.bits[i];
+        }
+        return result;
+    }
+
+    public BitPlane andNot(BitPlane plane) {
+        BitPlane result = new BitPlane(width, height);
+        for (int i = 0; i < bits.length; i++) {
+            result.bits[i] = bits[i] & ~plane.bits[i];
+        }
+        return result;
+    }
+
+    /**
+     * Clear the pixels on the edges of the plane.
+     */
+    public void clearBorder() {
+        if (width == 0 || height == 0) {
+            return;
+        }
+        for (int k = 0; k < words; k++) {
+            bits[k] = 0;
+            bits[(height - 1) * words + k] = 0;
+        }
+        long right = 1L << ((width - 1) & 63);
+        for (int y = 0; y < height; y++) {
+            bits[y * words] &= ~1L;
+            bits[y * words + words - 1] &= ~right;
+        }
+    }
+
+    private void clearPadding() {
+        for (int y = 0; y < height; y++) {
+            bits[y * words + words - 1] &= lastMask;
+        }
+    }
+
+    /**
+     * Apply a kernel to every pixel of the plane.
+     *
+     * @param kernel the kernel
+     * @param fillX the value of the pixels left and right of the plane
+     * @param fillY the value of the pixels above and below the plane
+     * @return the result
+     */
+    public BitPlane apply(Kernel kernel, boolean fillX, boolean fillY) {
+        BitPlane result = new BitPlane(width, height);
+        ThreadUtils.forkJoin(new KernelAction(0, height, kernel, fillX, fillY, result, ThreadUtils.getThreshold(width, height)));
+        return result;
+    }
+
+    /**
+     * Set the pixels of an image which are set in the plane to a color.
+     *
+     * @param pixels the pixels of the image
+     * @param color the color
+     */
+    public void fill(int[] pixels, int color) {
+        ThreadUtils.forkJoin(new FillAction(0, height, pixels, color, ThreadUtils.getThreshold(width, height)));
+    }
+
+    /**
+     * Count the set neighbours of 64 pixels, and compare the counts with a
+     * value.
+     *
+     * @param n the neighbourhoods of the pixels
+     * @param value the value
+     * @return the pixels which have exactly that many of their eight
+     * neighbours set
+     */
+    public static long countEqual(long[] n, int value) {
+        return compareCount(n, value, false);
+    }
+
+    /**
+     * Count the set neighbours of 64 pixels, and compare the counts with a
+     * value.
+     *
+     * @param n the neighbourhoods of the pixels
+     * @param value the value
+     * @return the pixels which have at least that many of their eight
+     * neighbours set
+     */
+    public static long countAtLeast(long[] n, int value) {
+        return compareCount(n, value, true);
+    }
+
+    private static long compareCount(long[] n, int value, boolean orGreater) {
+        if (value <= 0 && orGreater) {
+            return -1;
+        }
+        if (value < 0 || value > 8) {
+            return 0;
+        }
+        // The counts, from 0 to 8, are added as four words holding one bit of
+        // each count, by a tree of full adders which add three words at once
+        long a = n[NW] ^ n[N];
+        long s1 = a ^ n[NE];
+        long c1 = (n[NW] & n[N]) | (a & n[NE]);
+        long b = n[W] ^ n[E];
+        long s2 = b ^ n[SW];
+        long c2 = (n[W] & n[E]) | (b & n[SW]);
+        long s3 = n[S] ^ n[SE];
+        long c3 = n[S] & n[SE];
+        long d = s1 ^ s2;
+        long c4 = (s1 & s2) | (d & s3);
+        long e = c1 ^ c2;
+        long t = e ^ c3;
+        long c5 = (c1 & c2) | (e & c3);
+        long c6 = t & c4;
+        long b0 = d ^ s3;
+        long b1 = t ^ c4;
+        long b2 = c5 ^ c6;
+        long b3 = c5 & c6;
+
+        // Compare from the top bit down
+        long greater = 0;
+        long equal = -1;
+        if ((value & 8) != 0) {
+            equal &= b3;
+        } else {
+            greater |= equal & b3;
+            equal &= ~b3;
+        }
+        if ((value & 4) != 0) {
+            equal &= b2;
+        } else {
+            greater |= equal & b2;
+            equal &= ~b2;
+        }
+        if ((value & 2) != 0) {
+            equal &= b1;
+        } else {
+            greater |= equal & b1;
+            equal &= ~b1;
+        }
+        if ((value & 1) != 0) {
+            equal &= b0;
+        } else {
+            greater |= equal & b0;
+            equal &= ~b0;
+        }
+        return orGreater ? greater | equal : equal;
+    }
+
+    /**
+     * Create a kernel from a table of the set pixels whose neighbourhood
+     * matches. The table has an entry for each of the 256 patterns of eight
+     * neighbours, in which the neighbours NW, N, NE, E, SE, S, SW and W are
+     * bits 0 to 7 of the index. The true entries are merged into hit-or-miss
+     * templates, each of which needs some neighbours set and some clear and
+     * ignores the others, and a pixel matches if any template matches.
+     *
+     * @param table the table
+     * @return the kernel, whose result is the set pixels with a true entry
+     */
+    public static Kernel createKernel(boolean[] table) {
+        return new TableKernel(table);
+    }
+
+    private static class TableKernel implements Kernel {
+
+        private final static int[] NEIGHBOURS = {NW, N, NE, E, SE, S, SW, W};
+
+        // The neighbours tested by template t are index[start[t]] up to
+        // index[start[t + 1]], each of them xored with invert to test for
+        // a clear one
+        private final int[] start;
+        private final int[] index;
+        private final long[] invert;
+
+        TableKernel(boolean[] table) {
+            // A template is a pattern and a mask of the neighbours it
+            // ignores. The prime templates are found by merging pairs which
+            // differ in one neighbour until no more can be merged.
+            Set<Long> templates = new HashSet<>();
+            for (int i = 0; i < 256; i++) {
+                if (table[i]) {
+                    templates.add((long) i);
+                }
+            }
+            List<Long> primes = new ArrayList<>();
+            while (!templates.isEmpty()) {
+                Set<Long> merged = new HashSet<>();
+                Set<Long> used = new HashSet<>();
+                for (long template : templates) {
+                    int pattern = (int) template;
+                    int ignored = (int) (template >> 32);
+                    for (int b = 0; b < 8; b++) {
+                        long other = ((long) ignored << 32) | (pattern ^ (1 << b));
+                        if ((ignored & (1 << b)) == 0 && templates.contains(other)) {
+                            merged.add(((long) (ignored | (1 << b)) << 32) | (pattern & ~(1 << b)));
+                            used.add(template);
+                            used.add(other);
+                        }
+                    }
+                }
+                for (long template : templates) {
+                    if (!used.contains(template)) {
+                        primes.add(template);
+                    }
+                }
+                templates = merged;
+            }
+            Collections.sort(primes);
+
+            // Then the templates which match most of the remaining entries
+            // are chosen until all of the entries are matched
+            List<Long> cover = new ArrayList<>();
+            boolean[] remaining = table.clone();
+            while (true) {
+                long best = 0;
+                int bestCount = 0;
+                for (long template : primes) {
+                    int count = 0;
+                    for (int i = 0; i < 256; i++) {
+                        if (remaining[i] && matches(template, i)) {
+                            count++;
+                        }
+                    }
+                    if (count > bestCount) {
+                        best = template;
+                        bestCount = count;
+                    }
+                }
+                if (bestCount == 0) {
+                    break;
+                }
+                cover.add(best);
+                for (int i = 0; i < 256; i++) {
+                    if (matches(best, i)) {
+                        remaining[i] = false;
+                    }
+                }
+            }
+
+            start = new int[cover.size() + 1];
+            int literals = 0;
+            for (long template : cover) {
+                literals += 8 - Integer.bitCount((int) (template >> 32));
+            }
+            index = new int[literals];
+            invert = new long[literals];
+            int l = 0;
+            for (int t = 0; t < cover.size(); t++) {
+                int pattern = (int) (long) cover.get(t);
+                int ignored = (int) (cover.get(t) >> 32);
+                start[t] = l;
+                for (int b = 0; b < 8; b++) {
+                    if ((ignored & (1 << b)) == 0) {
+                        index[l] = NEIGHBOURS[b];
+                        invert[l] = (pattern & (1 << b)) != 0 ? 0 : -1;
+                        l++;
+                    }
+                }
+            }
+            start[cover.size()] = l;
+        }
+
+        private static boolean matches(long template, int i) {
+            return (i & ~(int) (template >> 32)) == (int) template;
+        }
+
+        @Override
+        public long apply(long[] n) {
+            long c = n[C];
+            if (c == 0) {
+                return 0;
+            }
+            long result = 0;
+            for (int t = 0, l = 0; t < start.length - 1; t++) {
+                long match = c;
+                for (int end = start[t + 1]; l < end; l++) {
+                    match &= n[index[l]] ^ invert[l];
+                }
+                result |= match;
+            }
+            return result;
+        }
+    }
+
+    private long getWord(int y, int k, boolean fillX, boolean fillY) {
+        if (y < 0 || y >= height) {
+            return fillY ? -1 : 0;
+        }
+        if (k < 0 || k >= words) {
+            return fillX ? -1 : 0;
+        }
+        long word = bits[y * words + k];
+        return (fillX && k == words - 1) ? word | ~lastMask : word;
+    }
+
+    private void applyKernel(int start, int end, Kernel kernel, boolean fillX, boolean fillY, BitPlane result) {
+        long[] n = new long[9];
+        long[] prev = new long[3];
+        long[] cur = new long[3];
+        long[] next = new long[3];
+
+        for (int y = start; y < end; y++) {
+            int index = y * words;
+            for (int r = 0; r < 3; r++) {
+                prev[r] = getWord(y + r - 1, -1, fillX, fillY);
+                cur[r] = getWord(y + r - 1, 0, fillX, fillY);
+            }
+            for (int k = 0; k < words; k++) {
+                for (int r = 0; r < 3; r++) {
+                    next[r] = getWord(y + r - 1, k + 1, fillX, fillY);
+                    // The west neighbour of pixel b is pixel b - 1, so the
+                    // row moves up one bit, and the east one moves down
+                    n[3 * r] = (cur[r] << 1) | (prev[r] >>> 63);
+                    n[3 * r + 1] = cur[r];
+                    n[3 * r + 2] = (cur[r] >>> 1) | (next[r] << 63);
+                    prev[r] = cur[r];
+                    cur[r] = next[r];
+                }
+                long word = kernel.apply(n);
+                result.bits[index + k] = k == words - 1 ? word & lastMask : word;
+            }
+        }
+    }
+
+    private void pack(int start, int end, int[] pixels, BinaryFunction function) {
+        for (int y = start; y < end; y++) {
+            int offset = y * width;
+            for (int k = 0; k < words; k++) {
+                long word = 0;
+                int x0 = k << 6;
+                int x1 = Math.min(x0 + 64, width);
+                for (int x = x0; x < x1; x++) {
+                    if (function.isBlack(pixels[offset + x])) {
+                        word |= 1L << x;
+                    }
+                }
+                bits[y * words + k] = word;
+            }
+        }
+    }
+
+    private void fill(int start, int end, int[] pixels, int color) {
+        for (int y = start; y < end; y++) {
+            int offset = y * width;
+            for (int k = 0; k < words; k++) {
+                long word = bits[y * words + k];
+                while (word != 0) {
+                    pixels[offset + (k << 6) + Long.numberOfTrailingZeros(word)] = color;
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    private class PackAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int[] pixels;
+        private final BinaryFunction function;
+        private final int threshold;
+
+        private PackAction(int start, int end, int[] pixels, BinaryFunction function, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.pixels = pixels;
+            this.function = function;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) * width < threshold || end - start <= 1) {
+                pack(start, end, pixels, function);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new PackAction(start, start + split, pixels, function, threshold),
+                        new PackAction(start + split, end, pixels, function, threshold));
+            }
+        }
+    }
+
+    private class KernelAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final Kernel kernel;
+        private final boolean fillX;
+        private final boolean fillY;
+        private final BitPlane result;
+        private final int threshold;
+
+        private KernelAction(int start, int end, Kernel kernel, boolean fillX, boolean fillY, BitPlane result, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.kernel = kernel;
+            this.fillX = fillX;
+            this.fillY = fillY;
+            this.result = result;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) * width < threshold || end - start <= 1) {
+                applyKernel(start, end, kernel, fillX, fillY, result);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new KernelAction(start, start + split, kernel, fillX, fillY, result, threshold),
+                        new KernelAction(start + split, end, kernel, fillX, fillY, result, threshold));
+            }
+        }
+    }
+
+    private class FillAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int[] pixels;
+        private final int color;
+        private final int threshold;
+
+        private FillAction(int start, int end, int[] pixels, int color, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.pixels = pixels;
+            this.color = color;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) * width < threshold || end - start <= 1) {
+                fill(start, end, pixels, color);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new FillAction(start, start + split, pixels, color, threshold),
+                        new FillAction(start + split, end, pixels, color, threshold));
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.jhlabs.image;
 import com.jhlabs.utils.ThreadUtils;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A filter which performs a box blur on an image. The horizontal and vertical
@@ -107,36 +108,16 @@ public class BoxBlurFilter extends AbstractBufferedImageOp {
     }
 
     public static void blur(int[] inPixels, int[] outPixels, int width, int height, float radius) {
-
-        int tn = ThreadUtils.getThreadNumber(width, height, 250);
-
-        Thread[] threads = new Thread[tn];
-        for (int start = 0, i = 0; i < tn; i++) {
-            int end = Math.min(height, (int) (height * ((float) (i + 1) / (float) tn)) + 1);
-            threads[i] = new FilterThread(start, end, inPixels, outPixels, width, height, radius, false);
-            threads[i].start();
-            start = end;
-        }
-
-        ThreadUtils.joinThreads(threads);
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new BoxBlurAction(0, height, inPixels, outPixels, width, height, radius, false, threshold));
     }
 
     public static void blurFractional(int[] inPixels, int[] outPixels, int width, int height, float radius) {
-
-        int tn = ThreadUtils.getThreadNumber(width, height, 250);
-
-        Thread[] threads = new Thread[tn];
-        for (int start = 0, i = 0; i < tn; i++) {
-            int end = Math.min(height, (int) (height * ((float) (i + 1) / (float) tn)) + 1);
-            threads[i] = new FilterThread(start, end, inPixels, outPixels, width, height, radius, true);
-            threads[i].start();
-            start = end;
-        }
-
-        ThreadUtils.joinThreads(threads);
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new BoxBlurAction(0, height, inPixels, outPixels, width, height, radius, true, threshold));
     }
 
-    private static class FilterThread extends Thread {
+    private static class BoxBlurAction extends RecursiveAction {
 
         private final int start;
         private final int end;
@@ -146,9 +127,10 @@ public class BoxBlurFilter extends AbstractBufferedImageOp {
         private final int height;
         private final float radius;
         private final boolean fractionnal;
+        private final int threshold;
 
-        public FilterThread(int start, int end, int[] inPixels, int[] outPixels, int width, int height, float radius, boolean fractionnal) {
-
+        private BoxBlurAction(int start, int end, int[] inPixels, int[] outPixels, int width, int height, float radius,
+                              boolean fractionnal, int threshold) {
             this.start = start;
             this.end = end;
             this.inPixels = inPixels;
@@ -157,14 +139,22 @@ public class BoxBlurFilter extends AbstractBufferedImageOp {
             this.height = height;
             this.radius = radius;
             this.fractionnal = fractionnal;
+            this.threshold = threshold;
         }
 
         @Override
-        public void run() {
-            if (fractionnal) {
-                BoxBlurFilter.blurFractional(start, end, inPixels, outPixels, width, height, radius);
+        public void compute() {
+            int t = (end - start) * width;
+            if (t < threshold || end - start <= 1) {
+                if (fractionnal) {
+                    BoxBlurFilter.blurFractional(start, end, inPixels, outPixels, width, height, radius);
+                } else {
+                    BoxBlurFilter.blur(start, end, inPixels, outPixels, width, height, radius);
+                }
             } else {
-                BoxBlurFilter.blur(start, end, inPixels, outPixels, width, height, radius);
+                int split = (end - start) / 2;
+                invokeAll(new BoxBlurAction(start, start + split, inPixels, outPixels, width, height, radius, fractionnal, threshold),
+                        new BoxBlurAction(start + split, end, inPixels, outPixels, width, height, radius, fractionnal, threshold));
             }
         }
     }
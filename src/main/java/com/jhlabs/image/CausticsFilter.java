@@ -15,10 +15,13 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
+import com.jhlabs.math.HashRandom;
 import com.jhlabs.math.Noise;
+import com.jhlabs.utils.ThreadUtils;
 
 import java.awt.*;
-import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * A filter which simulates underwater caustics. This can be animated to get a
@@ -213,106 +216,113 @@ public class CausticsFilter extends WholeImageFilter {
     }
 
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        Random random = new Random(0);
-
         s = (float) Math.sin(0.1);
         c = (float) Math.cos(0.1);
 
-        int srcWidth = originalSpace.width;
-        int srcHeight = originalSpace.height;
         int outWidth = transformedSpace.width;
         int outHeight = transformedSpace.height;
-        int index = 0;
-        int[] pixels = new int[outWidth * outHeight];
-
-        for (int y = 0; y < outHeight; y++) {
-            for (int x = 0; x < outWidth; x++) {
-                pixels[index++] = bgColor;
-            }
-        }
 
         int v = brightness / samples;
         if (v == 0) {
             v = 1;
         }
 
-        float rs = 1.0f / scale;
-        float d = 0.95f;
-        index = 0;
-        for (int y = 0; y < outHeight; y++) {
-            for (int x = 0; x < outWidth; x++) {
-                for (int s = 0; s < samples; s++) {
-                    float sx = x + random.nextFloat();
-                    float sy = y + random.nextFloat();
-                    float nx = sx * rs;
-                    float ny = sy * rs;
-                    float xDisplacement, yDisplacement;
-                    float focus = 0.1f + amount;
-                    xDisplacement = evaluate(nx - d, ny) - evaluate(nx + d, ny);
-                    yDisplacement = evaluate(nx, ny + d) - evaluate(nx, ny - d);
-
-                    if (dispersion > 0) {
-                        for (int c = 0; c < 3; c++) {
-                            float ca = (1 + c * dispersion);
-                            float srcX = sx + scale * focus * xDisplacement * ca;
-                            float srcY = sy + scale * focus * yDisplacement * ca;
-
-                            if (srcX < 0 || srcX >= outWidth - 1 || srcY < 0 || srcY >= outHeight - 1) {
-                            } else {
-                                int i = ((int) srcY) * outWidth + (int) srcX;
-                                int rgb = pixels[i];
-                                int r = (rgb >> 16) & 0xff;
-                                int g = (rgb >> 8) & 0xff;
-                                int b = rgb & 0xff;
-                                if (c == 2) {
-                                    r += v;
-                                } else if (c == 1) {
-                                    g += v;
-                                } else {
-                                    b += v;
-                                }
-                                if (r > 255) {
-                                    r = 255;
-                                }
-                                if (g > 255) {
-                                    g = 255;
-                                }
-                                if (b > 255) {
-                                    b = 255;
+        // The number of photons landing on each pixel, in blue, green and red
+        AtomicIntegerArray hits = new AtomicIntegerArray(3 * outWidth * outHeight);
+        int threshold = ThreadUtils.getThreshold(outWidth, outHeight);
+        ThreadUtils.forkJoin(new CausticsAction(0, outHeight, hits, outWidth, outHeight, threshold));
+
+        // Each photon adds to the background with saturation, in whatever order they land
+        int bgR = (bgColor >> 16) & 0xff;
+        int bgG = (bgColor >> 8) & 0xff;
+        int bgB = bgColor & 0xff;
+        int[] pixels = new int[outWidth * outHeight];
+        for (int i = 0; i < pixels.length; i++) {
+            int hb = hits.get(3 * i);
+            int hg = hits.get(3 * i + 1);
+            int hr = hits.get(3 * i + 2);
+            if (hb == 0 && hg == 0 && hr == 0) {
+                pixels[i] = bgColor;
+            } else {
+                int r = (int) Math.min(255, bgR + (long) hr * v);
+                int g = (int) Math.min(255, bgG + (long) hg * v);
+                int b = (int) Math.min(255, bgB + (long) hb * v);
+                pixels[i] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    private class CausticsAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final AtomicIntegerArray hits;
+        private final int outWidth;
+        private final int outHeight;
+        private final int threshold;
+
+        private CausticsAction(int start, int end, AtomicIntegerArray hits, int outWidth, int outHeight, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.hits = hits;
+            this.outWidth = outWidth;
+            this.outHeight = outHeight;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * outWidth;
+            if (t < threshold || end - start <= 1) {
+                trace();
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new CausticsAction(start, start + split, hits, outWidth, outHeight, threshold),
+                        new CausticsAction(start + split, end, hits, outWidth, outHeight, threshold));
+            }
+        }
+
+        // Send the photons of the rows through the water surface
+        private void trace() {
+            float rs = 1.0f / scale;
+            float d = 0.95f;
+            float focus = 0.1f + amount;
+            for (int y = start; y < end; y++) {
+                for (int x = 0; x < outWidth; x++) {
+                    for (int s = 0; s < samples; s++) {
+                        // The sample positions depend on the pixel only, not on the order of the pixels
+                        float sx = x + HashRandom.random(x, y, 2 * s, 0);
+                        float sy = y + HashRandom.random(x, y, 2 * s + 1, 0);
+                        float nx = sx * rs;
+                        float ny = sy * rs;
+                        float xDisplacement = evaluate(nx - d, ny) - evaluate(nx + d, ny);
+                        float yDisplacement = evaluate(nx, ny + d) - evaluate(nx, ny - d);
+
+                        if (dispersion > 0) {
+                            for (int c = 0; c < 3; c++) {
+                                float ca = (1 + c * dispersion);
+                                float srcX = sx + scale * focus * xDisplacement * ca;
+                                float srcY = sy + scale * focus * yDisplacement * ca;
+                                if (srcX >= 0 && srcX < outWidth - 1 && srcY >= 0 && srcY < outHeight - 1) {
+                                    int i = ((int) srcY) * outWidth + (int) srcX;
+                                    hits.incrementAndGet(3 * i + c);
                                 }
-                                pixels[i] = 0xff000000 | (r << 16) | (g << 8) | b;
                             }
-                        }
-                    } else {
-                        float srcX = sx + scale * focus * xDisplacement;
-                        float srcY = sy + scale * focus * yDisplacement;
-
-                        if (srcX < 0 || srcX >= outWidth - 1 || srcY < 0 || srcY >= outHeight - 1) {
                         } else {
-                            int i = ((int) srcY) * outWidth + (int) srcX;
-                            int rgb = pixels[i];
-                            int r = (rgb >> 16) & 0xff;
-                            int g = (rgb >> 8) & 0xff;
-                            int b = rgb & 0xff;
-                            r += v;
-                            g += v;
-                            b += v;
-                            if (r > 255) {
-                                r = 255;
-                            }
-                            if (g > 255) {
-                                g = 255;
-                            }
-                            if (b > 255) {
-                                b = 255;
+                            float srcX = sx + scale * focus * xDisplacement;
+                            float srcY = sy + scale * focus * yDisplacement;
+                            if (srcX >= 0 && srcX < outWidth - 1 && srcY >= 0 && srcY < outHeight - 1) {
+                                int i = ((int) srcY) * outWidth + (int) srcX;
+                                hits.incrementAndGet(3 * i);
+                                hits.incrementAndGet(3 * i + 1);
+                                hits.incrementAndGet(3 * i + 2);
                             }
-                            pixels[i] = 0xff000000 | (r << 16) | (g << 8) | b;
                         }
                     }
                 }
             }
         }
-        return pixels;
     }
 
     private static int add(int rgb, float brightness) {
@@ -16,10 +16,12 @@ limitations under the License.
 package com.jhlabs.image;
 
 import com.jhlabs.math.Function2D;
+import com.jhlabs.math.HashRandom;
 import com.jhlabs.math.Noise;
+import com.jhlabs.utils.ThreadUtils;
 
 import java.awt.*;
-import java.util.Random;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A filter which produces an image with a cellular texture.
@@ -38,12 +40,12 @@ public class CellularFilter extends WholeImageFilter implements Function2D, Clon
     protected Colormap colormap = new Gradient();
     protected float[] coefficients = {1, 0, 0, 0};
     protected float angleCoefficient;
-    protected Random random = new Random();
     protected float m00 = 1.0f;
     protected float m01 = 0.0f;
     protected float m10 = 0.0f;
     protected float m11 = 1.0f;
-    protected Point[] results = null;
+    // The nearest points found by evaluate, for each thread
+    private ThreadLocal<Point[]> results = ThreadLocal.withInitial(this::createResults);
     protected float randomness = 0;
     protected int gridType = HEXAGONAL;
     private float min;
@@ -57,10 +59,6 @@ public class CellularFilter extends WholeImageFilter implements Function2D, Clon
     public final static int TRIANGULAR = 4;
 
     public CellularFilter() {
-        results = new Point[3];
-        for (int j = 0; j < results.length; j++) {
-            results[j] = new Point();
-        }
         if (probabilities == null) {
             probabilities = new byte[8192];
             float factorial = 1;
@@ -305,13 +303,29 @@ public class CellularFilter extends WholeImageFilter implements Function2D, Clon
         public float distance;
     }
 
+    private Point[] createResults() {
+        return new Point[]{new Point(), new Point(), new Point()};
+    }
+
+    /**
+     * Get the three nearest points found by the last call to evaluate on the
+     * current thread, nearest first.
+     *
+     * @return the points
+     */
+    protected Point[] getResults() {
+        return results.get();
+    }
+
     private float checkCube(float x, float y, int cubeX, int cubeY, Point[] results) {
         int numPoints;
-        random.setSeed(571L * cubeX + 23L * cubeY);
+        // The same numbers as java.util.Random seeded with the cube coordinates
+        long random = HashRandom.seed(571L * cubeX + 23L * cubeY);
         switch (gridType) {
             case RANDOM:
             default:
-                numPoints = probabilities[random.nextInt() & 0x1fff];
+                random = HashRandom.next(random);
+                numPoints = probabilities[HashRandom.intValue(random) & 0x1fff];
                 break;
             case SQUARE:
                 numPoints = 1;
@@ -331,14 +345,18 @@ public class CellularFilter extends WholeImageFilter implements Function2D, Clon
             float weight = 1.0f;
             switch (gridType) {
                 case RANDOM:
-                    px = random.nextFloat();
-                    py = random.nextFloat();
+                    random = HashRandom.next(random);
+                    px = HashRandom.floatValue(random);
+                    random = HashRandom.next(random);
+                    py = HashRandom.floatValue(random);
                     break;
                 case SQUARE:
                     px = py = 0.5f;
                     if (randomness != 0) {
-                        px += randomness * (random.nextFloat() - 0.5);
-                        py += randomness * (random.nextFloat() - 0.5);
+                        random = HashRandom.next(random);
+                        px += randomness * (HashRandom.floatValue(random) - 0.5);
+                        random = HashRandom.next(random);
+                        py += randomness * (HashRandom.floatValue(random) - 0.5);
                     }
                     break;
                 case HEXAGONAL:
@@ -442,6 +460,7 @@ public class CellularFilter extends WholeImageFilter implements Function2D, Clon
 
     @Override
     public float evaluate(float x, float y) {
+        Point[] results = this.results.get();
         for (int j = 0; j < results.length; j++) {
             results[j].distance = Float.POSITIVE_INFINITY;
         }
@@ -513,6 +532,7 @@ public class CellularFilter extends WholeImageFilter implements Function2D, Clon
         nx += 1000;
         ny += 1000;    // Reduce artifacts around 0,0
         float f = turbulence == 1.0f ? evaluate(nx, ny) : turbulence2(nx, ny, turbulence);
+        Point[] results = getResults();
         // Normalize to 0..1
 //		f = (f-min)/(max-min);
         f *= 2;
@@ -545,23 +565,55 @@ public class CellularFilter extends WholeImageFilter implements Function2D, Clon
 //		min = minmax[0];
 //		max = minmax[1];
 
-        int index = 0;
         int[] outPixels = new int[width * height];
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new CellularAction(0, height, inPixels, outPixels, width, height, threshold));
+        return outPixels;
+    }
+
+    private class CellularAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int[] inPixels;
+        private final int[] outPixels;
+        private final int width;
+        private final int height;
+        private final int threshold;
+
+        private CellularAction(int start, int end, int[] inPixels, int[] outPixels, int width, int height, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.width = width;
+            this.height = height;
+            this.threshold = threshold;
+        }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                outPixels[index++] = getPixel(x, y, inPixels, width, height);
+        @Override
+        public void compute() {
+            int t = (end - start) * width;
+            if (t < threshold || end - start <= 1) {
+                int index = start * width;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0; x < width; x++) {
+                        outPixels[index++] = getPixel(x, y, inPixels, width, height);
+                    }
+                }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new CellularAction(start, start + split, inPixels, outPixels, width, height, threshold),
+                        new CellularAction(start + split, end, inPixels, outPixels, width, height, threshold));
             }
         }
-        return outPixels;
     }
 
     @Override
     public Object clone() throws CloneNotSupportedException {
         CellularFilter f = (CellularFilter) super.clone();
         f.coefficients = coefficients.clone();
-        f.results = results.clone();
-        f.random = new Random();
+        f.results = ThreadLocal.withInitial(f::createResults);
         return f;
     }
 
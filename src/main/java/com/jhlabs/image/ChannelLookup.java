@@ -0,0 +1,34 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+/**
+ * An interface for filters which map each of the red, green and blue channels
+ * independently through a lookup table, and leave the alpha unchanged. Such
+ * filters can be composed into a single ChannelLookupFilter.
+ *
+ * @see ChannelLookupFilter#compose
+ */
+public interface ChannelLookup {
+
+    /**
+     * Return the red, green and blue lookup tables of the filter with its
+     * current settings.
+     *
+     * @return three tables of 256 values in the range 0..255
+     */
+    int[][] getChannelTables();
+}
@@ -0,0 +1,114 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A filter which maps the red, green and blue channels through lookup tables.
+ * It is mostly used to compose a sequence of ChannelLookup filters, such as
+ * levels, curves, gamma and contrast adjustments, into a single pass over the
+ * image.
+ */
+public class ChannelLookupFilter extends PointFilter implements ChannelLookup {
+
+    private final int[] rTable;
+    private final int[] gTable;
+    private final int[] bTable;
+
+    /**
+     * Construct a ChannelLookupFilter.
+     *
+     * @param rTable the red table
+     * @param gTable the green table
+     * @param bTable the blue table
+     */
+    public ChannelLookupFilter(int[] rTable, int[] gTable, int[] bTable) {
+        this.rTable = rTable;
+        this.gTable = gTable;
+        this.bTable = bTable;
+        canFilterIndexColorModel = true;
+    }
+
+    /**
+     * Compose lookup filters into a single filter.
+     *
+     * @param lookups the filters, in the order they are applied
+     * @return the composed filter
+     */
+    public static ChannelLookupFilter compose(ChannelLookup... lookups) {
+        return compose(Arrays.asList(lookups));
+    }
+
+    /**
+     * Compose lookup filters into a single filter.
+     *
+     * @param lookups the filters, in the order they are applied
+     * @return the composed filter
+     */
+    public static ChannelLookupFilter compose(List<? extends ChannelLookup> lookups) {
+        int[][] tables = new int[3][256];
+        for (int i = 0; i < 256; i++) {
+            tables[0][i] = tables[1][i] = tables[2][i] = i;
+        }
+
+        for (ChannelLookup lookup : lookups) {
+            int[][] t = lookup.getChannelTables();
+            for (int c = 0; c < 3; c++) {
+                int[] table = tables[c];
+                int[] next = t[c];
+                for (int i = 0; i < 256; i++) {
+                    table[i] = next[table[i]];
+                }
+            }
+        }
+        return new ChannelLookupFilter(tables[0], tables[1], tables[2]);
+    }
+
+    /**
+     * Sample the tables of a point filter which transforms each channel
+     * independently of the others and of the pixel position.
+     *
+     * @param filter the filter
+     * @return the red, green and blue tables
+     */
+    public static int[][] sampleTables(PointFilter filter) {
+        int[][] tables = new int[3][256];
+        for (int i = 0; i < 256; i++) {
+            int rgb = filter.filterRGB(0, 0, 0xff000000 | (i << 16) | (i << 8) | i);
+            tables[0][i] = (rgb >> 16) & 0xff;
+            tables[1][i] = (rgb >> 8) & 0xff;
+            tables[2][i] = rgb & 0xff;
+        }
+        return tables;
+    }
+
+    @Override
+    public int[][] getChannelTables() {
+        return new int[][]{rTable, gTable, bTable};
+    }
+
+    @Override
+    public int filterRGB(int x, int y, int rgb) {
+        return (rgb & 0xff000000) | (rTable[(rgb >> 16) & 0xff] << 16) | (gTable[(rgb >> 8) & 0xff] << 8) | bTable[rgb & 0xff];
+    }
+
+    @Override
+    public String toString() {
+        return "Colors/Lookup";
+    }
+}
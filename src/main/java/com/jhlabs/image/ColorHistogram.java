@@ -0,0 +1,194 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.utils.ThreadUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A histogram of the colors of some pixels, for the quantizers. The colors are
+ * counted in buckets of the top BITS bits of their red, green and blue, and
+ * each bucket also holds the sums of the red, green and blue of its pixels.
+ * The buckets are listed in the order of their first pixel. Large numbers of
+ * pixels are counted in parallel, in parts whose histograms are then merged
+ * in order, so that the result is the same as counting them one by one.
+ */
+public class ColorHistogram {
+
+    public final static int BITS = 6;
+    public final static int BUCKETS = 1 << (3 * BITS);
+
+    // The least number of pixels worth a histogram of their own
+    private final static int PART_SIZE = 4 * BUCKETS;
+
+    private final int[] counts = new int[BUCKETS];
+    private final long[] reds = new long[BUCKETS];
+    private final long[] greens = new long[BUCKETS];
+    private final long[] blues = new long[BUCKETS];
+    private int[] order = new int[1024];
+    private int size;
+
+    /**
+     * Get the bucket of a color.
+     *
+     * @param rgb the color
+     * @return the bucket
+     */
+    public static int getBucket(int rgb) {
+        int mask = (1 << BITS) - 1;
+        return (((rgb >> (24 - BITS)) & mask) << (2 * BITS))
+                | (((rgb >> (16 - BITS)) & mask) << BITS)
+                | ((rgb >> (8 - BITS)) & mask);
+    }
+
+    /**
+     * Get the darkest color of a bucket.
+     *
+     * @param bucket the bucket
+     * @return the color
+     */
+    public static int getColor(int bucket) {
+        int mask = (1 << BITS) - 1;
+        return 0xff000000
+                | (((bucket >> (2 * BITS)) & mask) << (24 - BITS))
+                | (((bucket >> BITS) & mask) << (16 - BITS))
+                | ((bucket & mask) << (8 - BITS));
+    }
+
+    /**
+     * Add pixels to the histogram.
+     *
+     * @param pixels the array of ARGB pixels
+     * @param offset the offset into the array
+     * @param count the count of pixels
+     */
+    public void addPixels(int[] pixels, int offset, int count) {
+        int parts = Math.max(1, Math.min(ThreadUtils.getAvailableProcessors(), count / PART_SIZE));
+        if (parts == 1) {
+            add(pixels, offset, count);
+            return;
+        }
+        ColorHistogram[] histograms = new ColorHistogram[parts];
+        ThreadUtils.forkJoin(new PartAction(0, parts, pixels, offset, count, histograms));
+        for (ColorHistogram histogram : histograms) {
+            merge(histogram);
+        }
+    }
+
+    /**
+     * Get the number of buckets holding pixels.
+     *
+     * @return the number of buckets
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a bucket holding pixels, in the order of their first pixel.
+     *
+     * @param i the number of the bucket, less than size()
+     * @return the bucket
+     */
+    public int getBucketAt(int i) {
+        return order[i];
+    }
+
+    public int getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    public long getRed(int bucket) {
+        return reds[bucket];
+    }
+
+    public long getGreen(int bucket) {
+        return greens[bucket];
+    }
+
+    public long getBlue(int bucket) {
+        return blues[bucket];
+    }
+
+    private void append(int bucket) {
+        if (size == order.length) {
+            order = Arrays.copyOf(order, Math.min(2 * size, BUCKETS));
+        }
+        order[size++] = bucket;
+    }
+
+    private void add(int[] pixels, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            int rgb = pixels[i];
+            int bucket = getBucket(rgb);
+            if (counts[bucket]++ == 0) {
+                append(bucket);
+            }
+            reds[bucket] += (rgb >> 16) & 0xff;
+            greens[bucket] += (rgb >> 8) & 0xff;
+            blues[bucket] += rgb & 0xff;
+        }
+    }
+
+    private void merge(ColorHistogram histogram) {
+        for (int i = 0; i < histogram.size; i++) {
+            int bucket = histogram.order[i];
+            if (counts[bucket] == 0) {
+                append(bucket);
+            }
+            counts[bucket] += histogram.counts[bucket];
+            reds[bucket] += histogram.reds[bucket];
+            greens[bucket] += histogram.greens[bucket];
+            blues[bucket] += histogram.blues[bucket];
+        }
+    }
+
+    private static class PartAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int[] pixels;
+        private final int offset;
+        private final int count;
+        private final ColorHistogram[] histograms;
+
+        private PartAction(int start, int end, int[] pixels, int offset, int count, ColorHistogram[] histograms) {
+            this.start = start;
+            this.end = end;
+            this.pixels = pixels;
+            this.offset = offset;
+            this.count = count;
+            this.histograms = histograms;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                int parts = histograms.length;
+                int from = (int) ((long) count * start / parts);
+                int to = (int) ((long) count * end / parts);
+                histograms[start] = new ColorHistogram();
+                histograms[start].add(pixels, offset + from, to - from);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new PartAction(start, start + split, pixels, offset, count, histograms),
+                        new PartAction(start + split, end, pixels, offset, count, histograms));
+            }
+        }
+    }
+}
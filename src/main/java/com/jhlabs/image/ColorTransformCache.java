@@ -0,0 +1,328 @@
+/*
+Copyright 2006 Jerry Huxtable
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.utils.ThreadUtils;
+
+import java.awt.Transparency;
+import java.awt.color.CMMException;
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_ColorSpace;
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A cache of color space conversions, keyed by the source and destination ICC
+ * profiles, with the least recently used conversions evicted first. Gray and
+ * CMYK conversions are compiled once into a lookup table sampled on a regular
+ * grid of the source color space, which is then interpolated for every pixel:
+ * gray sources get an exact table of 256 entries and CMYK sources a 4D table.
+ * Other conversions, and premultiplied sources, are done by ColorConvertOp,
+ * which converts RGB faster and more accurately than a 3D table.
+ */
+public class ColorTransformCache {
+
+    private static final ColorTransformCache defaultCache = new ColorTransformCache(16);
+
+    private final int maxSize;
+    private final Map<List<Object>, Transform> transforms;
+
+    /**
+     * Construct a ColorTransformCache.
+     *
+     * @param maxSize the maximum number of conversions kept
+     */
+    public ColorTransformCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.transforms = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get the cache shared by the filters.
+     *
+     * @return the default cache
+     */
+    public static ColorTransformCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Get the conversion between two color spaces, compiling it if it is not
+     * in the cache.
+     *
+     * @param srcColorSpace the source color space
+     * @param dstColorSpace the destination color space
+     * @return the conversion
+     */
+    public Transform getTransform(ColorSpace srcColorSpace, ColorSpace dstColorSpace) {
+        List<Object> key = Arrays.asList(getKey(srcColorSpace), getKey(dstColorSpace));
+        synchronized (transforms) {
+            Transform transform = transforms.get(key);
+            if (transform != null) {
+                return transform;
+            }
+        }
+
+        // Compile outside the lock, another thread may compile the same transform
+        Transform transform = new Transform(srcColorSpace, dstColorSpace);
+        synchronized (transforms) {
+            transforms.put(key, transform);
+            while (transforms.size() > maxSize) {
+                transforms.remove(transforms.keySet().iterator().next());
+            }
+        }
+        return transform;
+    }
+
+    /**
+     * Convert an image to another color space.
+     *
+     * @param src the source image
+     * @param dstColorSpace the destination color space
+     * @return a new image in the destination color space, with 8 bit samples
+     * and the alpha of the source
+     */
+    public BufferedImage convert(BufferedImage src, ColorSpace dstColorSpace) {
+        return getTransform(src.getColorModel().getColorSpace(), dstColorSpace).filter(src);
+    }
+
+    /**
+     * Remove all the conversions from the cache.
+     */
+    public void clear() {
+        synchronized (transforms) {
+            transforms.clear();
+        }
+    }
+
+    // ICC color spaces are equal when their profiles are
+    private static Object getKey(ColorSpace colorSpace) {
+        if (colorSpace instanceof ICC_ColorSpace) {
+            try {
+                return ByteBuffer.wrap(((ICC_ColorSpace) colorSpace).getProfile().getData());
+            } catch (CMMException ex) {
+                // Some built-in profiles can't be read back
+            }
+        }
+        return colorSpace;
+    }
+
+    /**
+     * A compiled conversion between two color spaces.
+     */
+    public static class Transform {
+
+        private final ColorSpace dstColorSpace;
+        private final int inBands;
+        private final int outBands;
+        // The distance between grid points, in 8 bit sample values
+        private final int step;
+        private final int size;
+        // The converted grid points, as 16 bit samples
+        private final int[] table;
+
+        private Transform(ColorSpace srcColorSpace, ColorSpace dstColorSpace) {
+            this.dstColorSpace = dstColorSpace;
+            inBands = srcColorSpace.getNumComponents();
+            outBands = dstColorSpace.getNumComponents();
+            step = (inBands == 1) ? 1 : 15;
+            size = 255 / step + 1;
+            if (inBands != 1 && inBands != 4) {
+                // The conversion is done by ColorConvertOp
+                table = null;
+                return;
+            }
+
+            int points = 1;
+            for (int i = 0; i < inBands; i++) {
+                points *= size;
+            }
+
+            // Convert the grid points as an image, one point per pixel
+            ComponentColorModel srcModel = new ComponentColorModel(srcColorSpace, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+            ComponentColorModel dstModel = new ComponentColorModel(dstColorSpace, false, false, Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+            WritableRaster srcRaster = srcModel.createCompatibleWritableRaster(points, 1);
+            WritableRaster dstRaster = dstModel.createCompatibleWritableRaster(points, 1);
+            byte[] grid = ((DataBufferByte) srcRaster.getDataBuffer()).getData();
+            for (int p = 0; p < points; p++) {
+                // The first band varies slowest
+                int index = p;
+                for (int b = inBands - 1; b >= 0; b--) {
+                    grid[p * inBands + b] = (byte) ((index % size) * step);
+                    index /= size;
+                }
+            }
+            new ColorConvertOp(null).filter(new BufferedImage(srcModel, srcRaster, false, null), new BufferedImage(dstModel, dstRaster, false, null));
+
+            short[] converted = ((DataBufferUShort) dstRaster.getDataBuffer()).getData();
+            table = new int[converted.length];
+            for (int i = 0; i < converted.length; i++) {
+                table[i] = converted[i] & 0xffff;
+            }
+        }
+
+        /**
+         * Get the destination color space.
+         *
+         * @return the color space
+         */
+        public ColorSpace getDstColorSpace() {
+            return dstColorSpace;
+        }
+
+        /**
+         * Convert an image.
+         *
+         * @param src the source image, in the source color space
+         * @return a new image in the destination color space, with 8 bit
+         * samples and the alpha of the source
+         */
+        public BufferedImage filter(BufferedImage src) {
+            int width = src.getWidth();
+            int height = src.getHeight();
+            ColorModel srcModel = src.getColorModel();
+            boolean hasAlpha = srcModel.hasAlpha();
+
+            ComponentColorModel dstModel = new ComponentColorModel(dstColorSpace, hasAlpha, false,
+                    hasAlpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+            BufferedImage dst = new BufferedImage(dstModel, dstModel.createCompatibleWritableRaster(width, height), false, null);
+
+            boolean interleaved = srcModel instanceof ComponentColorModel && srcModel.getTransferType() == DataBuffer.TYPE_BYTE;
+            if (table == null || srcModel.isAlphaPremultiplied() || !interleaved) {
+                return new ColorConvertOp(null).filter(src, dst);
+            }
+
+            int threshold = ThreadUtils.getThreshold(width, height);
+            ThreadUtils.forkJoin(new TransformAction(0, height, this, src, dst, hasAlpha, threshold));
+            return dst;
+        }
+
+        // Interpolate the table in the simplex of the grid cell containing
+        // each pixel, which needs inBands+1 grid points instead of 2^inBands
+        private void filter(byte[] in, byte[] out, int width, int inStride, int outStride) {
+            int[] fraction = new int[inBands];
+            int[] order = new int[inBands];
+            // The table offset of the next grid point along each band
+            int[] strides = new int[inBands];
+            for (int b = inBands - 1, stride = outBands; b >= 0; b--) {
+                strides[b] = stride;
+                stride *= size;
+            }
+            int scale = 65535 * step;
+
+            for (int x = 0; x < width; x++) {
+                int inIndex = x * inStride;
+                int outIndex = x * outStride;
+                int index = 0;
+                for (int b = 0; b < inBands; b++) {
+                    int v = in[inIndex + b] & 0xff;
+                    int i = (step == 1) ? v : Math.min(v / step, size - 2);
+                    fraction[b] = v - i * step;
+                    index += i * strides[b];
+                }
+
+                if (step == 1) {
+                    // An exact table
+                    for (int o = 0; o < outBands; o++) {
+                        out[outIndex + o] = (byte) ((table[index + o] * 255 + 32767) / 65535);
+                    }
+                    continue;
+                }
+
+                // Sort the bands by decreasing fraction
+                for (int b = 0; b < inBands; b++) {
+                    int j = b;
+                    while (j > 0 && fraction[order[j - 1]] < fraction[b]) {
+                        order[j] = order[j - 1];
+                        j--;
+                    }
+                    order[j] = b;
+                }
+
+                for (int o = 0; o < outBands; o++) {
+                    int t = index + o;
+                    int previous = step;
+                    int sum = 0;
+                    for (int k = 0; k < inBands; k++) {
+                        int f = fraction[order[k]];
+                        sum += table[t] * (previous - f);
+                        t += strides[order[k]];
+                        previous = f;
+                    }
+                    sum += table[t] * previous;
+                    out[outIndex + o] = (byte) ((sum * 255 + scale / 2) / scale);
+                }
+            }
+        }
+    }
+
+    private static class TransformAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final Transform transform;
+        private final BufferedImage src;
+        private final BufferedImage dst;
+        private final boolean hasAlpha;
+        private final int threshold;
+
+        private TransformAction(int start, int end, Transform transform, BufferedImage src, BufferedImage dst, boolean hasAlpha, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.transform = transform;
+            this.src = src;
+            this.dst = dst;
+            this.hasAlpha = hasAlpha;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int width = src.getWidth();
+            int t = (end - start) * width;
+            if (t < threshold || end - start <= 1) {
+                int inBands = transform.inBands;
+                int outBands = transform.outBands;
+                int inStride = inBands + (hasAlpha ? 1 : 0);
+                int outStride = outBands + (hasAlpha ? 1 : 0);
+                byte[] in = new byte[width * inStride];
+                byte[] out = new byte[width * outStride];
+                Raster srcRaster = src.getRaster();
+                WritableRaster dstRaster = dst.getRaster();
+
+                for (int y = start; y < end; y++) {
+                    srcRaster.getDataElements(0, y, width, 1, in);
+                    transform.filter(in, out, width, inStride, outStride);
+                    if (hasAlpha) {
+                        for (int x = 0; x < width; x++) {
+                            out[x * outStride + outBands] = in[x * inStride + inBands];
+                        }
+                    }
+                    dstRaster.setDataElements(0, y, width, 1, out);
+                }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new TransformAction(start, start + split, transform, src, dst, hasAlpha, threshold),
+                        new TransformAction(start + split, end, transform, src, dst, hasAlpha, threshold));
+            }
+        }
+    }
+}
@@ -21,6 +21,8 @@ import java.awt.image.BufferedImageOp;
 /**
  * A BufferedImageOp which combines two other BufferedImageOps, one after the
  * other.
+ *
+ * @see FilterChain
  */
 public class CompoundFilter extends AbstractBufferedImageOp {
 
@@ -39,8 +41,6 @@ public class CompoundFilter extends AbstractBufferedImageOp {
     }
 
     public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
-        BufferedImage image = filter1.filter(src, dst);
-        image = filter2.filter(image, dst);
-        return image;
+        return new FilterChain(filter1, filter2).filter(src, dst);
     }
 }
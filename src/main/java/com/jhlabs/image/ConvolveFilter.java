@@ -19,6 +19,7 @@ import com.jhlabs.utils.ThreadUtils;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.Kernel;
+import java.util.Arrays;
 import java.util.concurrent.RecursiveAction;
 
 /**
@@ -189,6 +190,83 @@ public class ConvolveFilter extends AbstractBufferedImageOp {
         return premultiplyAlpha;
     }
 
+    @Override
+    public boolean isGraySupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isCmykSupported() {
+        return true;
+    }
+
+    @Override
+    public BufferedImage filterGRAY8(BufferedImage src, BufferedImage dst) {
+        if (getImageType(src) != GRAY8_TYPE) {
+            // Gray with alpha is premultiplied in ARGB
+            return filterRGB32(src, dst);
+        }
+        return filterBands(src, dst, 1);
+    }
+
+    @Override
+    public BufferedImage filterCMYK32(BufferedImage src, BufferedImage dst) {
+        return filterBands(src, dst, 4);
+    }
+
+    /**
+     * Filter an image of interleaved bytes without converting it to ARGB,
+     * reading and writing the data buffers directly when their layout allows.
+     */
+    private BufferedImage filterBands(BufferedImage src, BufferedImage dst, int bands) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        if (dst == null) {
+            dst = createCompatibleDestImage(src);
+        }
+
+        byte[] inPixels = getInterleavedData(src);
+        if (inPixels == null) {
+            inPixels = new byte[width * height * bands];
+            src.getRaster().getDataElements(0, 0, width, height, inPixels);
+        }
+        byte[] dstPixels = getInterleavedData(dst);
+        byte[] outPixels = (dstPixels != null && dstPixels != inPixels) ? dstPixels : new byte[inPixels.length];
+
+        filterBands(inPixels, outPixels, width, height, bands);
+
+        if (outPixels != dstPixels) {
+            dst.getRaster().setDataElements(0, 0, width, height, outPixels);
+        }
+        return dst;
+    }
+
+    /**
+     * Filter interleaved bytes, such as gray or CMYK samples, each band being
+     * convolved separately.
+     *
+     * @param inPixels the input samples
+     * @param outPixels the output samples
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param bands the number of bands of each pixel
+     */
+    protected void filterBands(byte[] inPixels, byte[] outPixels, int width, int height, int bands) {
+        if (iteration < 1) {
+            System.arraycopy(inPixels, 0, outPixels, 0, inPixels.length);
+            return;
+        }
+
+        byte[] tmpPixels = (iteration > 1) ? new byte[inPixels.length] : null;
+        for (int i = 0; i < iteration; i++) {
+            // Alternate between the buffers so that the last iteration writes the output
+            byte[] pixels = ((iteration - i) % 2 == 1) ? outPixels : tmpPixels;
+            convolveBands(kernel, inPixels, pixels, width, height, bands, edgeAction);
+            inPixels = pixels;
+        }
+    }
+
     @Override
     public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
         int width = src.getWidth();
@@ -222,7 +300,7 @@ public class ConvolveFilter extends AbstractBufferedImageOp {
     }
 
     public void convolve(Kernel kernel, int[] inPixels, int[] outPixels, int width, int height, boolean alpha, int edgeAction) {
-        int threshold = Math.max(ThreadUtils.THRESHOLD, (width * height) / (ThreadUtils.getAvailableProcessors() * 10));
+        int threshold = ThreadUtils.getThreshold(width, height);
         ThreadUtils.forkJoin(new ConvolveAction(0, height, kernel, inPixels, outPixels, width, height, alpha, edgeAction, threshold));
     }
 
@@ -255,7 +333,7 @@ public class ConvolveFilter extends AbstractBufferedImageOp {
         @Override
         public void compute() {
             int t = (end - start) * width;
-            if (t < threshold) {
+            if (t < threshold || end - start <= 1) {
                 ConvolveFilter.convolve(start, end, kernel, inPixels, outPixels, width, height, alpha, edgeAction);
             } else {
                 int split = (end - start) / 2;
@@ -309,40 +387,26 @@ public class ConvolveFilter extends AbstractBufferedImageOp {
         int cols = kernel.getWidth();
         int rows2 = rows / 2;
         int cols2 = cols / 2;
+        int[] xOffsets = edgeOffsets(width, cols2, cols - 1 - cols2, edgeAction, 1);
+        int[] yOffsets = edgeOffsets(height, rows2, rows - 1 - rows2, edgeAction, width);
 
         for (int y = start; y < end; y++) {
             for (int x = 0; x < width; x++) {
                 float r = 0, g = 0, b = 0, a = 0;
 
-                for (int row = -rows2; row <= rows2; row++) {
-                    int iy = y + row;
-                    int ioffset;
-                    if (0 <= iy && iy < height) {
-                        ioffset = iy * width;
-                    } else if (edgeAction == CLAMP_EDGES) {
-                        ioffset = y * width;
-                    } else if (edgeAction == WRAP_EDGES) {
-                        ioffset = ((iy + height) % height) * width;
-                    } else {
+                for (int row = 0; row < rows; row++) {
+                    int ioffset = yOffsets[y + row];
+                    if (ioffset < 0) {
                         continue;
                     }
 
-                    int moffset = cols * (row + rows2) + cols2;
-                    for (int col = -cols2; col <= cols2; col++) {
+                    int moffset = row * cols;
+                    for (int col = 0; col < cols; col++) {
                         float f = matrix[moffset + col];
+                        int xoffset = xOffsets[x + col];
 
-                        if (f != 0) {
-                            int ix = x + col;
-                            if (!(0 <= ix && ix < width)) {
-                                if (edgeAction == CLAMP_EDGES) {
-                                    ix = x;
-                                } else if (edgeAction == WRAP_EDGES) {
-                                    ix = (x + width) % width;
-                                } else {
-                                    continue;
-                                }
-                            }
-                            int rgb = inPixels[ioffset + ix];
+                        if (f != 0 && xoffset >= 0) {
+                            int rgb = inPixels[ioffset + xoffset];
                             a += f * ((rgb >> 24) & 0xff);
                             r += f * ((rgb >> 16) & 0xff);
                             g += f * ((rgb >> 8) & 0xff);
@@ -377,31 +441,18 @@ public class ConvolveFilter extends AbstractBufferedImageOp {
         float[] matrix = kernel.getKernelData(null);
         int cols = kernel.getWidth();
         int cols2 = cols / 2;
+        int[] xOffsets = edgeOffsets(width, cols2, cols - 1 - cols2, edgeAction, 1);
 
         for (int y = start; y < end; y++) {
             int ioffset = y * width;
             for (int x = 0; x < width; x++) {
                 float r = 0, g = 0, b = 0, a = 0;
-                int moffset = cols2;
-                for (int col = -cols2; col <= cols2; col++) {
-                    float f = matrix[moffset + col];
-
-                    if (f != 0) {
-                        int ix = x + col;
-                        if (ix < 0) {
-                            if (edgeAction == CLAMP_EDGES) {
-                                ix = 0;
-                            } else if (edgeAction == WRAP_EDGES) {
-                                ix = (x + width) % width;
-                            }
-                        } else if (ix >= width) {
-                            if (edgeAction == CLAMP_EDGES) {
-                                ix = width - 1;
-                            } else if (edgeAction == WRAP_EDGES) {
-                                ix = (x + width) % width;
-                            }
-                        }
-                        int rgb = inPixels[ioffset + ix];
+                for (int col = 0; col < cols; col++) {
+                    float f = matrix[col];
+                    int xoffset = xOffsets[x + col];
+
+                    if (f != 0 && xoffset >= 0) {
+                        int rgb = inPixels[ioffset + xoffset];
                         a += f * ((rgb >> 24) & 0xff);
                         r += f * ((rgb >> 16) & 0xff);
                         g += f * ((rgb >> 8) & 0xff);
@@ -435,37 +486,17 @@ public class ConvolveFilter extends AbstractBufferedImageOp {
         float[] matrix = kernel.getKernelData(null);
         int rows = kernel.getHeight();
         int rows2 = rows / 2;
+        int[] yOffsets = edgeOffsets(height, rows2, rows - 1 - rows2, edgeAction, width);
 
         for (int y = start; y < end; y++) {
             for (int x = 0; x < width; x++) {
                 float r = 0, g = 0, b = 0, a = 0;
 
-                for (int row = -rows2; row <= rows2; row++) {
-                    int iy = y + row;
-                    int ioffset;
-                    if (iy < 0) {
-                        if (edgeAction == CLAMP_EDGES) {
-                            ioffset = 0;
-                        } else if (edgeAction == WRAP_EDGES) {
-                            ioffset = ((y + height) % height) * width;
-                        } else {
-                            ioffset = iy * width;
-                        }
-                    } else if (iy >= height) {
-                        if (edgeAction == CLAMP_EDGES) {
-                            ioffset = (height - 1) * width;
-                        } else if (edgeAction == WRAP_EDGES) {
-                            ioffset = ((y + height) % height) * width;
-                        } else {
-                            ioffset = iy * width;
-                        }
-                    } else {
-                        ioffset = iy * width;
-                    }
-
-                    float f = matrix[row + rows2];
+                for (int row = 0; row < rows; row++) {
+                    int ioffset = yOffsets[y + row];
+                    float f = matrix[row];
 
-                    if (f != 0) {
+                    if (f != 0 && ioffset >= 0) {
                         int rgb = inPixels[ioffset + x];
                         a += f * ((rgb >> 24) & 0xff);
                         r += f * ((rgb >> 16) & 0xff);
@@ -482,6 +513,143 @@ public class ConvolveFilter extends AbstractBufferedImageOp {
         }
     }
 
+    /**
+     * Convolve interleaved bytes, each band separately.
+     *
+     * @param kernel     the kernel
+     * @param inPixels   the input samples
+     * @param outPixels  the output samples
+     * @param width      the width
+     * @param height     the height
+     * @param bands      the number of bands of each pixel
+     * @param edgeAction what to do at the edges
+     */
+    public static void convolveBands(Kernel kernel, byte[] inPixels, byte[] outPixels, int width, int height, int bands, int edgeAction) {
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new BandsAction(0, height, kernel, inPixels, outPixels, width, height, bands, edgeAction, threshold));
+    }
+
+    private static class BandsAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final Kernel kernel;
+        private final byte[] inPixels;
+        private final byte[] outPixels;
+        private final int width;
+        private final int height;
+        private final int bands;
+        private final int edgeAction;
+        private final int threshold;
+
+        private BandsAction(int start, int end, Kernel kernel, byte[] inPixels, byte[] outPixels, int width, int height, int bands, int edgeAction, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.kernel = kernel;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.width = width;
+            this.height = height;
+            this.bands = bands;
+            this.edgeAction = edgeAction;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * width;
+            if (t < threshold || end - start <= 1) {
+                ConvolveFilter.convolveBands(start, end, kernel, inPixels, outPixels, width, height, bands, edgeAction);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new BandsAction(start, start + split, kernel, inPixels, outPixels, width, height, bands, edgeAction, threshold),
+                        new BandsAction(start + split, end, kernel, inPixels, outPixels, width, height, bands, edgeAction, threshold));
+            }
+        }
+    }
+
+    /**
+     * Convolve a block of rows of interleaved bytes.
+     *
+     * @param start
+     * @param end
+     * @param kernel     the kernel
+     * @param inPixels   the input samples
+     * @param outPixels  the output samples
+     * @param width      the width
+     * @param height     the height
+     * @param bands      the number of bands of each pixel
+     * @param edgeAction what to do at the edges
+     */
+    public static void convolveBands(int start, int end, Kernel kernel, byte[] inPixels, byte[] outPixels, int width, int height, int bands, int edgeAction) {
+        float[] matrix = kernel.getKernelData(null);
+        int rows = kernel.getHeight();
+        int cols = kernel.getWidth();
+        int rows2 = rows / 2;
+        int cols2 = cols / 2;
+        int[] xOffsets = edgeOffsets(width, cols2, cols - 1 - cols2, edgeAction, bands);
+        int[] yOffsets = edgeOffsets(height, rows2, rows - 1 - rows2, edgeAction, width * bands);
+        float[] sums = new float[bands];
+
+        int index = start * width * bands;
+        for (int y = start; y < end; y++) {
+            for (int x = 0; x < width; x++) {
+                Arrays.fill(sums, 0);
+                for (int row = 0; row < rows; row++) {
+                    int ioffset = yOffsets[y + row];
+                    if (ioffset < 0) {
+                        continue;
+                    }
+                    int moffset = row * cols;
+                    for (int col = 0; col < cols; col++) {
+                        float f = matrix[moffset + col];
+                        int xoffset = xOffsets[x + col];
+                        if (f != 0 && xoffset >= 0) {
+                            int i = ioffset + xoffset;
+                            for (int b = 0; b < bands; b++) {
+                                sums[b] += f * (inPixels[i + b] & 0xff);
+                            }
+                        }
+                    }
+                }
+                for (int b = 0; b < bands; b++) {
+                    outPixels[index++] = (byte) PixelUtils.clamp((int) (sums[b] + 0.5f));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the offsets of the samples from before to after positions off each
+     * end of a row or column, the position i-before being at index i. Positions
+     * off the edge give -1 with ZERO_EDGES.
+     *
+     * @param size       the number of positions
+     * @param before     the number of positions before the start
+     * @param after      the number of positions after the end
+     * @param edgeAction what to do at the edges
+     * @param scale      the offset between consecutive positions
+     * @return the offsets
+     */
+    static int[] edgeOffsets(int size, int before, int after, int edgeAction, int scale) {
+        int[] offsets = new int[before + size + after];
+        for (int i = 0; i < offsets.length; i++) {
+            int p = i - before;
+            if (p < 0 || p >= size) {
+                if (edgeAction == CLAMP_EDGES) {
+                    p = ImageMath.clamp(p, 0, size - 1);
+                } else if (edgeAction == WRAP_EDGES) {
+                    p = ImageMath.mod(p, size);
+                } else {
+                    offsets[i] = -1;
+                    continue;
+                }
+            }
+            offsets[i] = p * scale;
+        }
+        return offsets;
+    }
+
     @Override
     public String toString() {
         return "Blur/Convolve...";
@@ -63,6 +63,7 @@ public class CrystallizeFilter extends CellularFilter {
         nx += 1000;
         ny += 1000;    // Reduce artifacts around 0,0
         float f = evaluate(nx, ny);
+        Point[] results = getResults();
 
         float f1 = results[0].distance;
         float f2 = results[1].distance;
@@ -15,13 +15,11 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
-import java.awt.*;
-
 /**
  * A filter which removes noise from an image using a "pepper and salt"
  * algorithm.
  */
-public class DespeckleFilter extends WholeImageFilter {
+public class DespeckleFilter extends NeighbourhoodFilter {
 
     public DespeckleFilter() {
     }
@@ -42,79 +40,74 @@ public class DespeckleFilter extends WholeImageFilter {
         return c;
     }
 
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int index = 0;
-        short[][] r = new short[3][width];
-        short[][] g = new short[3][width];
-        short[][] b = new short[3][width];
-        int[] outPixels = new int[width * height];
-
-        for (int x = 0; x < width; x++) {
-            int rgb = inPixels[x];
-            r[1][x] = (short) ((rgb >> 16) & 0xff);
-            g[1][x] = (short) ((rgb >> 8) & 0xff);
-            b[1][x] = (short) (rgb & 0xff);
-        }
-        for (int y = 0; y < height; y++) {
-            boolean yIn = y > 0 && y < height - 1;
-            int nextRowIndex = index + width;
-            if (y < height - 1) {
-                for (int x = 0; x < width; x++) {
-                    int rgb = inPixels[nextRowIndex++];
-                    r[2][x] = (short) ((rgb >> 16) & 0xff);
-                    g[2][x] = (short) ((rgb >> 8) & 0xff);
-                    b[2][x] = (short) (rgb & 0xff);
-                }
-            }
-            for (int x = 0; x < width; x++) {
-                boolean xIn = x > 0 && x < width - 1;
-                short or = r[1][x];
-                short og = g[1][x];
-                short ob = b[1][x];
-                int w = x - 1;
-                int e = x + 1;
+    // The same as pepperAndSalt, without branches
+    private static int pepperAndSalt(int c, int v1, int v2) {
+        c += (c - v1) >>> 31;
+        c += (c - v2) >>> 31;
+        c -= (v1 - c) >>> 31;
+        c -= (v2 - c) >>> 31;
+        return c;
+    }
 
-                if (yIn) {
-                    or = pepperAndSalt(or, r[0][x], r[2][x]);
-                    og = pepperAndSalt(og, g[0][x], g[2][x]);
-                    ob = pepperAndSalt(ob, b[0][x], b[2][x]);
-                }
+    private static int pepperAndSalt(int rgb, int n, int s, int w, int e, int nw, int se, int sw, int ne, int shift) {
+        int c = (rgb >> shift) & 0xff;
+        c = pepperAndSalt(c, (n >> shift) & 0xff, (s >> shift) & 0xff);
+        c = pepperAndSalt(c, (w >> shift) & 0xff, (e >> shift) & 0xff);
+        c = pepperAndSalt(c, (nw >> shift) & 0xff, (se >> shift) & 0xff);
+        c = pepperAndSalt(c, (sw >> shift) & 0xff, (ne >> shift) & 0xff);
+        return c;
+    }
 
-                if (xIn) {
-                    or = pepperAndSalt(or, r[1][w], r[1][e]);
-                    og = pepperAndSalt(og, g[1][w], g[1][e]);
-                    ob = pepperAndSalt(ob, b[1][w], b[1][e]);
-                }
+    @Override
+    protected int filterEdgePixel(int[] inPixels, int width, int height, int x, int y) {
+        boolean yIn = y > 0 && y < height - 1;
+        boolean xIn = x > 0 && x < width - 1;
+        int index = y * width + x;
+        int rgb = inPixels[index];
+        short or = (short) ((rgb >> 16) & 0xff);
+        short og = (short) ((rgb >> 8) & 0xff);
+        short ob = (short) (rgb & 0xff);
+
+        if (yIn) {
+            int n = inPixels[index - width];
+            int s = inPixels[index + width];
+            or = pepperAndSalt(or, (short) ((n >> 16) & 0xff), (short) ((s >> 16) & 0xff));
+            og = pepperAndSalt(og, (short) ((n >> 8) & 0xff), (short) ((s >> 8) & 0xff));
+            ob = pepperAndSalt(ob, (short) (n & 0xff), (short) (s & 0xff));
+        }
 
-                if (yIn && xIn) {
-                    or = pepperAndSalt(or, r[0][w], r[2][e]);
-                    og = pepperAndSalt(og, g[0][w], g[2][e]);
-                    ob = pepperAndSalt(ob, b[0][w], b[2][e]);
+        if (xIn) {
+            int w = inPixels[index - 1];
+            int e = inPixels[index + 1];
+            or = pepperAndSalt(or, (short) ((w >> 16) & 0xff), (short) ((e >> 16) & 0xff));
+            og = pepperAndSalt(og, (short) ((w >> 8) & 0xff), (short) ((e >> 8) & 0xff));
+            ob = pepperAndSalt(ob, (short) (w & 0xff), (short) (e & 0xff));
+        }
 
-                    or = pepperAndSalt(or, r[2][w], r[0][e]);
-                    og = pepperAndSalt(og, g[2][w], g[0][e]);
-                    ob = pepperAndSalt(ob, b[2][w], b[0][e]);
-                }
+        return (rgb & 0xff000000) | (or << 16) | (og << 8) | ob;
+    }
 
-                outPixels[index] = (inPixels[index] & 0xff000000) | (or << 16) | (og << 8) | ob;
+    @Override
+    protected void filterInterior(int[] inPixels, int[] outPixels, int width, int height) {
+        for (int y = 1; y < height - 1; y++) {
+            int index = y * width + 1;
+            for (int x = 1; x < width - 1; x++) {
+                int rgb = inPixels[index];
+                int n = inPixels[index - width];
+                int s = inPixels[index + width];
+                int w = inPixels[index - 1];
+                int e = inPixels[index + 1];
+                int nw = inPixels[index - width - 1];
+                int ne = inPixels[index - width + 1];
+                int sw = inPixels[index + width - 1];
+                int se = inPixels[index + width + 1];
+                outPixels[index] = (rgb & 0xff000000)
+                        | (pepperAndSalt(rgb, n, s, w, e, nw, se, sw, ne, 16) << 16)
+                        | (pepperAndSalt(rgb, n, s, w, e, nw, se, sw, ne, 8) << 8)
+                        | pepperAndSalt(rgb, n, s, w, e, nw, se, sw, ne, 0);
                 index++;
             }
-            short[] t;
-            t = r[0];
-            r[0] = r[1];
-            r[1] = r[2];
-            r[2] = t;
-            t = g[0];
-            g[0] = g[1];
-            g[1] = g[2];
-            g[2] = t;
-            t = b[0];
-            b[0] = b[1];
-            b[1] = b[2];
-            b[2] = t;
         }
-
-        return outPixels;
     }
 
     @Override
@@ -128,7 +128,6 @@ public class DiffusionFilter extends WholeImageFilter {
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
         int[] outPixels = new int[width * height];
 
-        int index = 0;
         int[] map = new int[levels];
         for (int i = 0; i < levels; i++) {
             int v = 255 * i / (levels - 1);
@@ -139,67 +138,25 @@ public class DiffusionFilter extends WholeImageFilter {
             div[i] = levels * i / 256;
         }
 
-        for (int y = 0; y < height; y++) {
-            boolean reverse = serpentine && (y & 1) == 1;
-            int direction;
-            if (reverse) {
-                index = y * width + width - 1;
-                direction = -1;
-            } else {
-                index = y * width;
-                direction = 1;
-            }
-            for (int x = 0; x < width; x++) {
-                int rgb1 = inPixels[index];
-
-                int r1 = (rgb1 >> 16) & 0xff;
-                int g1 = (rgb1 >> 8) & 0xff;
-                int b1 = rgb1 & 0xff;
-
-                if (!colorDither) {
-                    r1 = g1 = b1 = (r1 + g1 + b1) / 3;
+        ErrorDiffusion diffusion = new ErrorDiffusion(matrix, sum) {
+            @Override
+            protected int getColor(int rgb) {
+                if (colorDither) {
+                    return rgb;
                 }
+                int v = (((rgb >> 16) & 0xff) + ((rgb >> 8) & 0xff) + (rgb & 0xff)) / 3;
+                return (v << 16) | (v << 8) | v;
+            }
 
-                int r2 = map[div[r1]];
-                int g2 = map[div[g1]];
-                int b2 = map[div[b1]];
-
-                outPixels[index] = 0xff000000 | (r2 << 16) | (g2 << 8) | b2;
-
-                int er = r1 - r2;
-                int eg = g1 - g2;
-                int eb = b1 - b2;
-
-                for (int i = -1; i <= 1; i++) {
-                    int iy = i + y;
-                    if (0 <= iy && iy < height) {
-                        for (int j = -1; j <= 1; j++) {
-                            int jx = j + x;
-                            if (jx >= 0 && jx < width) {
-                                int w;
-                                if (reverse) {
-                                    w = matrix[(i + 1) * 3 - j + 1];
-                                } else {
-                                    w = matrix[(i + 1) * 3 + j + 1];
-                                }
-                                if (w != 0) {
-                                    int k = reverse ? index - j : index + j;
-                                    rgb1 = inPixels[k];
-                                    r1 = (rgb1 >> 16) & 0xff;
-                                    g1 = (rgb1 >> 8) & 0xff;
-                                    b1 = rgb1 & 0xff;
-                                    r1 += er * w / sum;
-                                    g1 += eg * w / sum;
-                                    b1 += eb * w / sum;
-                                    inPixels[k] = (PixelUtils.clamp(r1) << 16) | (PixelUtils.clamp(g1) << 8) | PixelUtils.clamp(b1);
-                                }
-                            }
-                        }
-                    }
-                }
-                index += direction;
+            @Override
+            protected int quantize(int rgb) {
+                int r = map[div[(rgb >> 16) & 0xff]];
+                int g = map[div[(rgb >> 8) & 0xff]];
+                int b = map[div[rgb & 0xff]];
+                return 0xff000000 | (r << 16) | (g << 8) | b;
             }
-        }
+        };
+        diffusion.diffuse(inPixels, outPixels, width, height, serpentine);
 
         return outPixels;
     }
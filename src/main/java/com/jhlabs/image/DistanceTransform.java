@@ -0,0 +1,196 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.utils.ThreadUtils;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The exact Euclidean distance transform of a binary image, which gives the
+ * distance from each pixel to the nearest set pixel. The transform is
+ * separable: the distances along each column are found first, and then each
+ * row takes the lower envelope of the parabolas rooted at its pixels, as in
+ * Felzenszwalb and Huttenlocher, "Distance Transforms of Sampled Functions".
+ * The time is linear in the number of pixels whatever the distances.
+ */
+public class DistanceTransform {
+
+    // The column distance of a pixel with no set pixel in its column
+    private final static int INFINITY = Integer.MAX_VALUE;
+
+    private final BitPlane sites;
+    private final boolean edgeSites;
+    private final int width;
+    private final int height;
+    private final int[] columns;
+    private final float[] distances;
+
+    private DistanceTransform(BitPlane sites, boolean edgeSites) {
+        this.sites = sites;
+        this.edgeSites = edgeSites;
+        width = sites.getWidth();
+        height = sites.getHeight();
+        columns = new int[width * height];
+        distances = new float[width * height];
+    }
+
+    /**
+     * Get the distance of each pixel to the nearest set pixel.
+     *
+     * @param sites the set pixels
+     * @param edgeSites true if the pixels just outside the image count as set
+     * @return the distances, row by row, which are 0 for the set pixels and
+     * infinite if no pixel is set
+     */
+    public static float[] getDistances(BitPlane sites, boolean edgeSites) {
+        DistanceTransform transform = new DistanceTransform(sites, edgeSites);
+        int width = transform.width;
+        int height = transform.height;
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(transform.new ColumnAction(0, width, threshold));
+        ThreadUtils.forkJoin(transform.new RowAction(0, height, threshold));
+        return transform.distances;
+    }
+
+    private void transformColumns(int start, int end) {
+        // Down then up each column, a band of columns at a time so that the
+        // rows are read in order
+        int n = end - start;
+        int[] last = new int[n];
+        for (int x = 0; x < n; x++) {
+            last[x] = edgeSites ? 0 : INFINITY;
+        }
+        for (int y = 0; y < height; y++) {
+            int index = y * width + start;
+            for (int x = 0; x < n; x++) {
+                int d = sites.get(start + x, y) ? 0 : last[x] == INFINITY ? INFINITY : last[x] + 1;
+                columns[index + x] = last[x] = d;
+            }
+        }
+        for (int x = 0; x < n; x++) {
+            last[x] = edgeSites ? 0 : INFINITY;
+        }
+        for (int y = height - 1; y >= 0; y--) {
+            int index = y * width + start;
+            for (int x = 0; x < n; x++) {
+                int d = last[x] == INFINITY ? INFINITY : last[x] + 1;
+                if (columns[index + x] < d) {
+                    d = columns[index + x];
+                }
+                columns[index + x] = last[x] = d;
+            }
+        }
+    }
+
+    private void transformRows(int start, int end) {
+        // The pixels whose parabolas make up the lower envelope, the heights
+        // of their parabolas and the boundaries between them
+        int[] v = new int[width];
+        long[] f = new long[width];
+        double[] z = new double[width + 1];
+
+        for (int y = start; y < end; y++) {
+            int index = y * width;
+            int k = -1;
+            for (int q = 0; q < width; q++) {
+                int g = columns[index + q];
+                if (g == INFINITY) {
+                    continue;
+                }
+                long fq = (long) g * g;
+                double s = 0;
+                while (k >= 0) {
+                    int p = v[k];
+                    s = ((fq + (long) q * q) - (f[k] + (long) p * p)) / (2.0 * (q - p));
+                    if (s > z[k]) {
+                        break;
+                    }
+                    k--;
+                }
+                k++;
+                v[k] = q;
+                f[k] = fq;
+                z[k] = k == 0 ? Double.NEGATIVE_INFINITY : s;
+            }
+            z[k + 1] = Double.POSITIVE_INFINITY;
+
+            int j = 0;
+            for (int q = 0; q < width; q++) {
+                double d = Double.POSITIVE_INFINITY;
+                if (k >= 0) {
+                    while (z[j + 1] < q) {
+                        j++;
+                    }
+                    long dx = q - v[j];
+                    d = dx * dx + f[j];
+                }
+                if (edgeSites) {
+                    d = Math.min(d, Math.min((q + 1) * (double) (q + 1), (width - q) * (double) (width - q)));
+                }
+                distances[index + q] = (float) Math.sqrt(d);
+            }
+        }
+    }
+
+    private class ColumnAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        private ColumnAction(int start, int end, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) * height < threshold || end - start <= 1) {
+                transformColumns(start, end);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new ColumnAction(start, start + split, threshold),
+                        new ColumnAction(start + split, end, threshold));
+            }
+        }
+    }
+
+    private class RowAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        private RowAction(int start, int end, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) * width < threshold || end - start <= 1) {
+                transformRows(start, end);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new RowAction(start, start + split, threshold),
+                        new RowAction(start + split, end, threshold));
+            }
+        }
+    }
+}
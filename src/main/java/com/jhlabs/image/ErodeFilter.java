@@ -24,6 +24,7 @@ import java.awt.*;
 public class ErodeFilter extends BinaryFilter {
 
     private int threshold = 2;
+    private float radius = 0;
 
     public ErodeFilter() {
         newColor = 0xffffffff;
@@ -51,54 +52,52 @@ public class ErodeFilter extends BinaryFilter {
         return threshold;
     }
 
+    /**
+     * Set the radius of a round erosion. When the radius is positive, every
+     * black pixel within the radius of a white pixel is set to the new color,
+     * in a time which does not depend on the radius, and the threshold and the
+     * iterations are not used.
+     *
+     * @param radius the radius, or 0 to use the iterations
+     * @see #getRadius
+     */
+    public void setRadius(float radius) {
+        this.radius = radius;
+    }
+
+    /**
+     * Get the radius of a round erosion.
+     *
+     * @return the radius
+     * @see #setRadius
+     */
+    public float getRadius() {
+        return radius;
+    }
+
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int[] outPixels = new int[width * height];
+        if (radius > 0) {
+            fillRadius(inPixels, BitPlane.create(inPixels, width, height, blackFunction).not(), radius);
+            return inPixels;
+        }
 
-        for (int i = 0; i < iterations; i++) {
-            int index = 0;
+        // The white pixels are tracked in a bit plane, so that erosion is the
+        // dilation of the white pixels, and only the pixels which change are
+        // written to the image
+        BitPlane white = BitPlane.create(inPixels, width, height, blackFunction).not();
+        int threshold = this.threshold;
+        BitPlane.Kernel kernel = n -> ~n[BitPlane.C] & BitPlane.countAtLeast(n, threshold);
 
-            if (i > 0) {
-                int[] t = inPixels;
-                inPixels = outPixels;
-                outPixels = t;
-            }
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int pixel = inPixels[y * width + x];
-                    if (blackFunction.isBlack(pixel)) {
-                        int neighbours = 0;
-
-                        for (int dy = -1; dy <= 1; dy++) {
-                            int iy = y + dy;
-                            int ioffset;
-                            if (0 <= iy && iy < height) {
-                                ioffset = iy * width;
-                                for (int dx = -1; dx <= 1; dx++) {
-                                    int ix = x + dx;
-                                    if (!(dy == 0 && dx == 0) && 0 <= ix && ix < width) {
-                                        int rgb = inPixels[ioffset + ix];
-                                        if (!blackFunction.isBlack(rgb)) {
-                                            neighbours++;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-
-                        if (neighbours >= threshold) {
-                            if (colormap != null) {
-                                pixel = colormap.getColor((float) i / iterations);
-                            } else {
-                                pixel = newColor;
-                            }
-                        }
-                    }
-                    outPixels[index++] = pixel;
-                }
+        for (int i = 0; i < iterations; i++) {
+            BitPlane changed = white.apply(kernel, false, false);
+            if (changed.isEmpty()) {
+                break;
             }
+            int color = colormap != null ? colormap.getColor((float) i / iterations) : newColor;
+            changed.fill(inPixels, color);
+            white = blackFunction.isBlack(color) ? white.andNot(changed) : white.or(changed);
         }
-
-        return outPixels;
+        return inPixels;
     }
 
     public String toString() {
@@ -0,0 +1,198 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.utils.ThreadUtils;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Error diffusion dithering with a 3x3 matrix, for the filters which quantize
+ * colors. Each pixel is quantized in turn and its error is spread over its
+ * neighbours, so a pixel can only be quantized once the pixels before it have
+ * been. With a serpentine scan the image must be scanned one pixel at a time,
+ * but when every row goes left to right, a row can run two pixels behind the
+ * row above it. The image is then cut into tiles of a band of rows, each row
+ * two pixels to the left of the one above, and the tiles which do not depend
+ * on each other are diffused in parallel, a diagonal of tiles at a time. The
+ * result is the same as scanning the image one pixel at a time.
+ */
+public abstract class ErrorDiffusion {
+
+    // The size of the tiles. A tile needs the two tiles above it and the
+    // tile to its left, as long as it is more than twice as wide as high.
+    private final static int TILE_ROWS = 16;
+    private final static int TILE_COLUMNS = 64;
+
+    private final int[] matrix;
+    private final int sum;
+
+    /**
+     * Construct an ErrorDiffusion.
+     *
+     * @param matrix the 3x3 matrix of the weights of the error given to each
+     * neighbour of a pixel, with the pixel at the center
+     * @param sum the sum of the weights
+     */
+    public ErrorDiffusion(int[] matrix, int sum) {
+        this.matrix = matrix;
+        this.sum = sum;
+    }
+
+    /**
+     * Quantize a color.
+     *
+     * @param rgb the color, as returned by getColor
+     * @return the quantized color
+     */
+    protected abstract int quantize(int rgb);
+
+    /**
+     * Get the color of a pixel which is quantized. The error is the difference
+     * between this color and the quantized one.
+     *
+     * @param rgb the pixel with the error diffused to it so far
+     * @return the color
+     */
+    protected int getColor(int rgb) {
+        return rgb;
+    }
+
+    /**
+     * Diffuse an image.
+     *
+     * @param inPixels the pixels of the image, to which the errors are added
+     * @param outPixels the quantized pixels
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param serpentine true to scan every other row from right to left
+     */
+    public void diffuse(int[] inPixels, int[] outPixels, int width, int height, boolean serpentine) {
+        if (serpentine || ThreadUtils.getThreshold(width, height) >= width * height) {
+            for (int y = 0; y < height; y++) {
+                boolean reverse = serpentine && (y & 1) == 1;
+                for (int x = 0; x < width; x++) {
+                    diffuse(inPixels, outPixels, width, height, x, y, reverse);
+                }
+            }
+            return;
+        }
+
+        int bands = (height + TILE_ROWS - 1) / TILE_ROWS;
+        int tiles = (width + 2 * (TILE_ROWS - 1) + TILE_COLUMNS - 1) / TILE_COLUMNS;
+        // Tile j of band i waits for tile j - 1 of its band and tile j + 1 of
+        // the band above, so it can go in step j + 2 * i
+        for (int step = 0; step < tiles + 2 * (bands - 1); step++) {
+            int first = Math.max(0, (step - tiles + 2) / 2);
+            int last = Math.min(bands - 1, step / 2);
+            if (first <= last) {
+                ThreadUtils.forkJoin(new TileAction(first, last + 1, step, inPixels, outPixels, width, height));
+            }
+        }
+    }
+
+    private void diffuseTile(int[] inPixels, int[] outPixels, int width, int height, int band, int tile) {
+        int y0 = band * TILE_ROWS;
+        int y1 = Math.min(y0 + TILE_ROWS, height);
+        for (int y = y0; y < y1; y++) {
+            int shift = 2 * (y - y0);
+            int x0 = Math.max(0, tile * TILE_COLUMNS - shift);
+            int x1 = Math.min(width, (tile + 1) * TILE_COLUMNS - shift);
+            for (int x = x0; x < x1; x++) {
+                diffuse(inPixels, outPixels, width, height, x, y, false);
+            }
+        }
+    }
+
+    /**
+     * Quantize a pixel and diffuse its error. In a reversed row, x counts
+     * from the right and so does the matrix.
+     */
+    private void diffuse(int[] inPixels, int[] outPixels, int width, int height, int x, int y, boolean reverse) {
+        int index = reverse ? y * width + width - 1 - x : y * width + x;
+        int rgb1 = getColor(inPixels[index]);
+        int rgb2 = quantize(rgb1);
+
+        outPixels[index] = rgb2;
+
+        int r1 = (rgb1 >> 16) & 0xff;
+        int g1 = (rgb1 >> 8) & 0xff;
+        int b1 = rgb1 & 0xff;
+
+        int r2 = (rgb2 >> 16) & 0xff;
+        int g2 = (rgb2 >> 8) & 0xff;
+        int b2 = rgb2 & 0xff;
+
+        int er = r1 - r2;
+        int eg = g1 - g2;
+        int eb = b1 - b2;
+
+        for (int i = -1; i <= 1; i++) {
+            int iy = i + y;
+            if (0 <= iy && iy < height) {
+                for (int j = -1; j <= 1; j++) {
+                    int jx = j + x;
+                    if (0 <= jx && jx < width) {
+                        int w = matrix[(i + 1) * 3 + j + 1];
+                        if (w != 0) {
+                            int k = (reverse ? index - j : index + j) + i * width;
+                            rgb1 = inPixels[k];
+                            r1 = (rgb1 >> 16) & 0xff;
+                            g1 = (rgb1 >> 8) & 0xff;
+                            b1 = rgb1 & 0xff;
+                            r1 += er * w / sum;
+                            g1 += eg * w / sum;
+                            b1 += eb * w / sum;
+                            inPixels[k] = (PixelUtils.clamp(r1) << 16) | (PixelUtils.clamp(g1) << 8) | PixelUtils.clamp(b1);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private class TileAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int step;
+        private final int[] inPixels;
+        private final int[] outPixels;
+        private final int width;
+        private final int height;
+
+        private TileAction(int start, int end, int step, int[] inPixels, int[] outPixels, int width, int height) {
+            this.start = start;
+            this.end = end;
+            this.step = step;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                diffuseTile(inPixels, outPixels, width, height, start, step - 2 * start);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new TileAction(start, start + split, step, inPixels, outPixels, width, height),
+                        new TileAction(start + split, end, step, inPixels, outPixels, width, height));
+            }
+        }
+    }
+}
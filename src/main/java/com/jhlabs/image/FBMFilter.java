@@ -18,7 +18,6 @@ package com.jhlabs.image;
 import com.jhlabs.math.*;
 
 import java.awt.image.BufferedImage;
-import java.util.Random;
 
 /**
  * A filter which produces textures from fractal Brownian motion.
@@ -50,7 +49,6 @@ public class FBMFilter extends PointFilter implements Cloneable {
     private Colormap colormap = new Gradient();
     private boolean ridged;
     private FBM fBm;
-    protected Random random = new Random();
     private int basisType = NOISE;
     private Function2D basis;
 
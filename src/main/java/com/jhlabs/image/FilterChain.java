@@ -0,0 +1,250 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.utils.ThreadUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ColorModel;
+import java.awt.image.DirectColorModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A BufferedImageOp which applies a list of other BufferedImageOps, one after
+ * the other, on a single ARGB working buffer. The intermediate results are
+ * wrapped as images without copying, a pair of buffers is reused between the
+ * filters which keep the image size, and consecutive point filters are fused
+ * into a single pass over the image. Consecutive ChannelLookup filters are
+ * first composed into a single table with their current settings.
+ * <p>
+ * Gray and CMYK images are filtered one filter after the other, so that the
+ * filters supporting them natively keep doing so. So are 4x8 bits RGBA
+ * images, whose pixels are not packed as ARGB by getRGB.
+ */
+public class FilterChain extends AbstractBufferedImageOp {
+
+    private static final ColorModel RGB_MODEL = new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
+
+    private final List<BufferedImageOp> filters;
+
+    /**
+     * Construct a FilterChain.
+     *
+     * @param filters the filters, in the order they are applied
+     */
+    public FilterChain(BufferedImageOp... filters) {
+        this(Arrays.asList(filters));
+    }
+
+    /**
+     * Construct a FilterChain.
+     *
+     * @param filters the filters, in the order they are applied
+     */
+    public FilterChain(List<? extends BufferedImageOp> filters) {
+        this.filters = new ArrayList<>(filters);
+    }
+
+    /**
+     * Get the filters of the chain.
+     *
+     * @return the filters, in the order they are applied
+     */
+    public List<BufferedImageOp> getFilters() {
+        return new ArrayList<>(filters);
+    }
+
+    @Override
+    public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
+        int imageType = getImageType(src);
+        if (imageType != RGB32_TYPE && imageType != RGB_3X8_TYPE) {
+            return filterSequential(src, dst);
+        }
+
+        // The color model of the working images
+        ColorModel cm = (imageType == RGB32_TYPE) ? src.getColorModel() : RGB_MODEL;
+        boolean hasAlpha = cm.hasAlpha();
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] pixels = getRGB(src, 0, 0, width, height, null);
+        int[] scratch = null;
+
+        List<BufferedImageOp> ops = compile(filters);
+        List<PointFilter> points = new ArrayList<>();
+        for (int i = 0, n = ops.size(); i <= n; i++) {
+            BufferedImageOp filter = (i < n) ? ops.get(i) : null;
+            if (filter instanceof PointFilter && isFusable((PointFilter) filter)) {
+                points.add((PointFilter) filter);
+                continue;
+            }
+
+            if (!points.isEmpty()) {
+                filterPoints(points, pixels, width, height, hasAlpha);
+                points.clear();
+            }
+            if (filter == null) {
+                break;
+            }
+
+            BufferedImage in = createBufferedImage(cm, width, height, pixels);
+            BufferedImage out = null;
+            if (keepsSize(filter)) {
+                if (scratch == null || scratch.length != pixels.length) {
+                    scratch = new int[pixels.length];
+                }
+                out = createBufferedImage(cm, width, height, scratch);
+            }
+
+            BufferedImage image = filter.filter(in, out);
+            width = image.getWidth();
+            height = image.getHeight();
+            if (image == out) {
+                scratch = pixels;
+                pixels = getRGB(image);
+            } else {
+                pixels = (image.getColorModel().equals(cm)) ? getRGB(image) : getRGB(image, 0, 0, width, height, null);
+            }
+        }
+
+        if (dst == null) {
+            if (imageType == RGB32_TYPE) {
+                return createBufferedImage(cm, width, height, pixels);
+            }
+            dst = createCompatibleDestImage(src, width, height);
+        }
+        setRGB(dst, 0, 0, width, height, pixels);
+        return dst;
+    }
+
+    private BufferedImage filterSequential(BufferedImage src, BufferedImage dst) {
+        BufferedImage image = src;
+        for (int i = 0, n = filters.size(); i < n; i++) {
+            image = filters.get(i).filter(image, (i == n - 1) ? dst : null);
+        }
+        return image;
+    }
+
+    // Replace each run of lookup filters by a single composed lookup
+    private static List<BufferedImageOp> compile(List<BufferedImageOp> filters) {
+        List<BufferedImageOp> ops = new ArrayList<>();
+        List<ChannelLookup> lookups = new ArrayList<>();
+        for (int i = 0, n = filters.size(); i <= n; i++) {
+            BufferedImageOp filter = (i < n) ? filters.get(i) : null;
+            if (filter instanceof ChannelLookup && isCompilable(filter)) {
+                lookups.add((ChannelLookup) filter);
+                continue;
+            }
+
+            if (lookups.size() == 1 && lookups.get(0) instanceof PointFilter) {
+                ops.add((BufferedImageOp) lookups.get(0));
+            } else if (!lookups.isEmpty()) {
+                ops.add(ChannelLookupFilter.compose(lookups));
+            }
+            lookups.clear();
+            if (filter != null) {
+                ops.add(filter);
+            }
+        }
+        return ops;
+    }
+
+    // Return true if the filter's lookup tables describe everything it does
+    private static boolean isCompilable(BufferedImageOp filter) {
+        if (filter instanceof PointFilter) {
+            return isFusable((PointFilter) filter);
+        }
+        return filter.getClass() == LevelsFilter.class;
+    }
+
+    // Return true if the filter always writes an image of the source size to the given destination
+    private static boolean keepsSize(BufferedImageOp filter) {
+        return filter instanceof PointFilter || filter instanceof ConvolveFilter || filter instanceof BoxBlurFilter;
+    }
+
+    // Return true if the filter works pixel by pixel through filterRGB
+    private static boolean isFusable(PointFilter filter) {
+        try {
+            Class<?> clazz = filter.getClass();
+            return clazz.getMethod("filterRGB32", BufferedImage.class, BufferedImage.class).getDeclaringClass() == PointFilter.class
+                    && clazz.getMethod("filter", BufferedImage.class, BufferedImage.class).getDeclaringClass() == AbstractBufferedImageOp.class;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    private static void filterPoints(List<PointFilter> points, int[] pixels, int width, int height, boolean hasAlpha) {
+        PointFilter[] filters = points.toArray(new PointFilter[0]);
+        for (PointFilter filter : filters) {
+            filter.setDimensions(width, height);
+        }
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new PointsAction(0, height, filters, pixels, width, hasAlpha, threshold));
+    }
+
+    private static class PointsAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final PointFilter[] filters;
+        private final int[] pixels;
+        private final int width;
+        private final boolean hasAlpha;
+        private final int threshold;
+
+        private PointsAction(int start, int end, PointFilter[] filters, int[] pixels, int width, boolean hasAlpha, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.filters = filters;
+            this.pixels = pixels;
+            this.width = width;
+            this.hasAlpha = hasAlpha;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * width;
+            if (t < threshold || end - start <= 1) {
+                // Without alpha, the alpha written by each filter is dropped as by the raster
+                int mask = hasAlpha ? 0xffffffff : 0x00ffffff;
+                for (int y = start; y < end; y++) {
+                    int index = y * width;
+                    for (int x = 0; x < width; x++) {
+                        int rgb = pixels[index];
+                        for (PointFilter filter : filters) {
+                            rgb = filter.filterRGB(x, y, rgb) & mask;
+                        }
+                        pixels[index++] = rgb;
+                    }
+                }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new PointsAction(start, start + split, filters, pixels, width, hasAlpha, threshold),
+                        new PointsAction(start + split, end, filters, pixels, width, hasAlpha, threshold));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Filter Chain";
+    }
+}
@@ -19,6 +19,7 @@ import com.jhlabs.utils.ThreadUtils;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.Kernel;
+import java.util.Arrays;
 import java.util.concurrent.RecursiveAction;
 
 /**
@@ -30,11 +31,47 @@ import java.util.concurrent.RecursiveAction;
  */
 public class GaussianFilter extends ConvolveFilter {
 
+    /**
+     * Choose the convolution or the recursive method depending on the radius.
+     */
+    public final static int AUTOMATIC = 0;
+
+    /**
+     * Convolve with a Gaussian kernel, which takes a time proportional to the
+     * radius.
+     */
+    public final static int CONVOLUTION = 1;
+
+    /**
+     * Use a recursive filter approximating the Gaussian (Young and van Vliet),
+     * which takes the same time whatever the radius.
+     */
+    public final static int RECURSIVE = 2;
+
+    /**
+     * The radius above which the AUTOMATIC method uses the recursive filter.
+     * Below it, the recursive filter differs from the convolution by up to 10
+     * levels on sharp edges. Above it the difference is smaller, but the
+     * recursive filter remains an approximation.
+     */
+    public final static float RECURSIVE_RADIUS = 40;
+
+    /**
+     * The smallest standard deviation for which the recursive filter is
+     * accurate.
+     */
+    private final static float MIN_RECURSIVE_SIGMA = 0.5f;
+
     /**
      * The blur radius.
      */
     protected float radius;
 
+    /**
+     * The blur method.
+     */
+    protected int method = AUTOMATIC;
+
     /**
      * Construct a Gaussian filter.
      */
@@ -75,6 +112,39 @@ public class GaussianFilter extends ConvolveFilter {
         return radius;
     }
 
+    /**
+     * Set the method used to blur. Above a radius of RECURSIVE_RADIUS, the
+     * recursive method is much faster and close to the convolution.
+     *
+     * @param method the method, one of AUTOMATIC, CONVOLUTION or RECURSIVE
+     * @see #getMethod
+     */
+    public void setMethod(int method) {
+        this.method = method;
+    }
+
+    /**
+     * Get the method used to blur.
+     *
+     * @return the method
+     * @see #setMethod
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    /**
+     * Get whether the blur is done with the recursive filter.
+     *
+     * @return true if the recursive filter is used
+     */
+    protected boolean isRecursive() {
+        if (radius / 3 < MIN_RECURSIVE_SIGMA) {
+            return false;
+        }
+        return method == RECURSIVE || (method == AUTOMATIC && radius > RECURSIVE_RADIUS);
+    }
+
     @Override
     public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
         if (dst == null) {
@@ -84,28 +154,423 @@ public class GaussianFilter extends ConvolveFilter {
         int width = src.getWidth();
         int height = src.getHeight();
 
-        int[] inPixels = new int[width * height];
-        int[] outPixels = new int[width * height];
-        getRGB(src, 0, 0, width, height, inPixels);
+        // The blur only reads its input and writes its output after a pass
+        // through a temporary array, so both can be the pixels of the images
+        int[] inPixels = getRGB(src);
+        int[] dstPixels = getDestRGB(dst, width, height);
+        int[] outPixels = dstPixels != null ? dstPixels : new int[width * height];
 
         if (radius > 0) {
             boolean preMul = (premultiplyAlpha && src.getColorModel().hasAlpha() && !src.isAlphaPremultiplied());
-            convolve(kernel, inPixels, outPixels, width, height, alpha, preMul, false, CLAMP_EDGES);
+            blur(inPixels, outPixels, width, height, preMul, CLAMP_EDGES);
+        } else if (outPixels != inPixels) {
+            System.arraycopy(inPixels, 0, outPixels, 0, inPixels.length);
+        }
+        if (dstPixels == null) {
+            setRGB(dst, 0, 0, width, height, outPixels);
         }
-        setRGB(dst, 0, 0, width, height, outPixels);
 
         return dst;
     }
 
+    @Override
+    protected void filterBands(byte[] inPixels, byte[] outPixels, int width, int height, int bands) {
+        if (radius > 0) {
+            blur(inPixels, outPixels, width, height, bands, CLAMP_EDGES);
+        } else {
+            System.arraycopy(inPixels, 0, outPixels, 0, inPixels.length);
+        }
+    }
+
+    /**
+     * Blur interleaved bytes with the radius and method of this filter, each
+     * band separately.
+     *
+     * @param inPixels the input samples
+     * @param outPixels the output samples
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param bands the number of bands of each pixel
+     * @param edgeAction what to do at the edges
+     */
+    protected void blur(byte[] inPixels, byte[] outPixels, int width, int height, int bands, int edgeAction) {
+        byte[] tmpPixels = new byte[inPixels.length];
+        int threshold = ThreadUtils.getThreshold(width, height);
+        if (isRecursive()) {
+            float sigma = radius / 3;
+            ThreadUtils.forkJoin(new BandsAction(0, height, null, sigma, inPixels, tmpPixels, width, height, bands, edgeAction, threshold));
+            ThreadUtils.forkJoin(new BandsAction(0, width, null, sigma, tmpPixels, outPixels, height, width, bands, edgeAction, threshold));
+        } else {
+            ThreadUtils.forkJoin(new BandsAction(0, height, kernel, 0, inPixels, tmpPixels, width, height, bands, edgeAction, threshold));
+            ThreadUtils.forkJoin(new BandsAction(0, width, kernel, 0, tmpPixels, outPixels, height, width, bands, edgeAction, threshold));
+        }
+    }
+
+    // Blurs and transposes interleaved bytes, with the kernel or else recursively
+    private static class BandsAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final Kernel kernel;
+        private final float sigma;
+        private final byte[] inPixels;
+        private final byte[] outPixels;
+        private final int width;
+        private final int height;
+        private final int bands;
+        private final int edgeAction;
+        private final int threshold;
+
+        private BandsAction(int start, int end, Kernel kernel, float sigma, byte[] inPixels, byte[] outPixels, int width, int height,
+                            int bands, int edgeAction, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.kernel = kernel;
+            this.sigma = sigma;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.width = width;
+            this.height = height;
+            this.bands = bands;
+            this.edgeAction = edgeAction;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * width;
+            if (t < threshold || end - start <= 1) {
+                if (kernel != null) {
+                    GaussianFilter.convolveAndTranspose(start, end, kernel, inPixels, outPixels, width, height, bands, edgeAction);
+                } else {
+                    GaussianFilter.recursiveAndTranspose(start, end, sigma, inPixels, outPixels, width, height, bands, edgeAction);
+                }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new BandsAction(start, start + split, kernel, sigma, inPixels, outPixels, width, height, bands, edgeAction, threshold),
+                        new BandsAction(start + split, end, kernel, sigma, inPixels, outPixels, width, height, bands, edgeAction, threshold));
+            }
+        }
+    }
+
+    /**
+     * Blur and transpose a block of rows of interleaved bytes.
+     *
+     * @param start
+     * @param end
+     * @param kernel     the blur kernel
+     * @param inPixels   the input samples
+     * @param outPixels  the output samples
+     * @param width      the width of the image
+     * @param height     the height of the image
+     * @param bands      the number of bands of each pixel
+     * @param edgeAction what to do at the edges
+     */
+    public static void convolveAndTranspose(int start, int end, Kernel kernel, byte[] inPixels, byte[] outPixels, int width, int height,
+                                            int bands, int edgeAction) {
+        float[] matrix = kernel.getKernelData(null);
+        int cols = kernel.getWidth();
+        int cols2 = cols / 2;
+        int[] xOffsets = edgeOffsets(width, cols2, cols - 1 - cols2, edgeAction, bands);
+        float[] sums = new float[bands];
+
+        if (bands == 1) {
+            // Gray, with a single sum
+            for (int y = start; y < end; y++) {
+                int index = y;
+                int ioffset = y * width;
+                for (int x = 0; x < width; x++) {
+                    float s = 0;
+                    for (int col = 0; col < cols; col++) {
+                        int xoffset = xOffsets[x + col];
+                        if (xoffset >= 0) {
+                            s += matrix[col] * (inPixels[ioffset + xoffset] & 0xff);
+                        }
+                    }
+                    outPixels[index] = (byte) ((s < 0) ? 0 : (s > 254.5f) ? 255 : (int) (s + .5f));
+                    index += height;
+                }
+            }
+            return;
+        }
+
+        for (int y = start; y < end; y++) {
+            int index = y * bands;
+            int ioffset = y * width * bands;
+            for (int x = 0; x < width; x++) {
+                Arrays.fill(sums, 0);
+                for (int col = 0; col < cols; col++) {
+                    float f = matrix[col];
+                    int xoffset = xOffsets[x + col];
+                    if (f != 0 && xoffset >= 0) {
+                        int i = ioffset + xoffset;
+                        for (int b = 0; b < bands; b++) {
+                            sums[b] += f * (inPixels[i + b] & 0xff);
+                        }
+                    }
+                }
+                for (int b = 0; b < bands; b++) {
+                    float s = sums[b];
+                    outPixels[index + b] = (byte) ((s < 0) ? 0 : (s > 254.5f) ? 255 : (int) (s + .5f));
+                }
+                index += height * bands;
+            }
+        }
+    }
+
+    /**
+     * Get the coefficients of the recursive filter of Young and van Vliet for
+     * a standard deviation.
+     *
+     * @param sigma the standard deviation
+     * @return the coefficients B, b1, b2 and b3
+     */
+    private static float[] recursiveCoefficients(float sigma) {
+        double q = (sigma >= 2.5) ? 0.98711 * sigma - 0.96330 : 3.97156 - 4.14554 * Math.sqrt(1 - 0.26891 * sigma);
+        double q2 = q * q;
+        double q3 = q2 * q;
+        double b0 = 1.57825 + 2.44413 * q + 1.4281 * q2 + 0.422205 * q3;
+        float b1 = (float) ((2.44413 * q + 2.85619 * q2 + 1.26661 * q3) / b0);
+        float b2 = (float) (-(1.4281 * q2 + 1.26661 * q3) / b0);
+        float b3 = (float) (0.422205 * q3 / b0);
+        return new float[]{1 - (b1 + b2 + b3), b1, b2, b3};
+    }
+
+    /**
+     * Filter a line in place with the causal then the anti-causal pass of the
+     * recursive filter.
+     */
+    private static void recursiveFilter(float[] c, float[] coefficients) {
+        float bb = coefficients[0];
+        float b1 = coefficients[1];
+        float b2 = coefficients[2];
+        float b3 = coefficients[3];
+        int length = c.length;
+
+        // Causal pass, starting from the steady state of the first value
+        float w1 = c[0], w2 = w1, w3 = w1;
+        for (int i = 0; i < length; i++) {
+            float w = bb * c[i] + b1 * w1 + b2 * w2 + b3 * w3;
+            c[i] = w;
+            w3 = w2;
+            w2 = w1;
+            w1 = w;
+        }
+        // Anti-causal pass
+        w1 = c[length - 1];
+        w2 = w1;
+        w3 = w1;
+        for (int i = length - 1; i >= 0; i--) {
+            float w = bb * c[i] + b1 * w1 + b2 * w2 + b3 * w3;
+            c[i] = w;
+            w3 = w2;
+            w2 = w1;
+            w1 = w;
+        }
+    }
+
+    /**
+     * Blur and transpose a block of rows of interleaved bytes with the
+     * recursive filter, as for ARGB pixels.
+     */
+    private static void recursiveAndTranspose(int start, int end, float sigma, byte[] inPixels, byte[] outPixels, int width, int height,
+                                              int bands, int edgeAction) {
+        float[] coefficients = recursiveCoefficients(sigma);
+
+        int pad = (int) Math.ceil(4 * sigma) + 3;
+        int length = width + 2 * pad;
+        int[] xOffsets = edgeOffsets(width, pad, pad, edgeAction, bands);
+        float[][] line = new float[bands][length];
+
+        for (int y = start; y < end; y++) {
+            int ioffset = y * width * bands;
+            for (int i = 0; i < length; i++) {
+                int xoffset = xOffsets[i];
+                for (int b = 0; b < bands; b++) {
+                    line[b][i] = (xoffset >= 0) ? inPixels[ioffset + xoffset + b] & 0xff : 0;
+                }
+            }
+
+            for (float[] c : line) {
+                recursiveFilter(c, coefficients);
+            }
+
+            int index = y * bands;
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < bands; b++) {
+                    outPixels[index + b] = (byte) PixelUtils.clamp((int) (line[b][x + pad] + 0.5f));
+                }
+                index += height * bands;
+            }
+        }
+    }
+
     public static void convolve(Kernel kernel, int[] inPixels, int[] outPixels, int width, int height,
                                 boolean alpha, boolean premultiply, boolean unpremultiply, int edgeAction) {
 
         int[] tmpPixels = new int[inPixels.length];
-        int threshold = Math.max(ThreadUtils.THRESHOLD, (width * height) / (ThreadUtils.getAvailableProcessors() * 10));
+        int threshold = ThreadUtils.getThreshold(width, height);
         ThreadUtils.forkJoin(new GaussianAction(0, height, kernel, inPixels, tmpPixels, width, height, alpha, premultiply, unpremultiply, edgeAction, threshold));
         ThreadUtils.forkJoin(new GaussianAction(0, width, kernel, tmpPixels, outPixels, height, width, alpha, unpremultiply, premultiply, edgeAction, threshold));
     }
 
+    /**
+     * Blur ARGB pixels with the radius and method of this filter.
+     *
+     * @param inPixels the input pixels
+     * @param outPixels the output pixels
+     * @param width the width of the pixel array
+     * @param height the height of the pixel array
+     * @param premultiply whether to premultiply the alpha while blurring
+     * @param edgeAction what to do at the edges
+     */
+    protected void blur(int[] inPixels, int[] outPixels, int width, int height, boolean premultiply, int edgeAction) {
+        if (isRecursive()) {
+            convolveRecursive(radius / 3, inPixels, outPixels, width, height, alpha, premultiply, false, edgeAction);
+        } else {
+            convolve(kernel, inPixels, outPixels, width, height, alpha, premultiply, false, edgeAction);
+        }
+    }
+
+    /**
+     * Blur ARGB pixels with a recursive approximation of a Gaussian, in two
+     * transposing passes like convolve.
+     *
+     * @param sigma the standard deviation of the Gaussian
+     * @param inPixels the input pixels
+     * @param outPixels the output pixels
+     * @param width the width of the pixel array
+     * @param height the height of the pixel array
+     * @param alpha whether to blur the alpha channel
+     * @param premultiply whether to premultiply the input
+     * @param unpremultiply whether to unpremultiply the output
+     * @param edgeAction what to do at the edges
+     */
+    public static void convolveRecursive(float sigma, int[] inPixels, int[] outPixels, int width, int height,
+                                         boolean alpha, boolean premultiply, boolean unpremultiply, int edgeAction) {
+
+        int[] tmpPixels = new int[inPixels.length];
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new RecursiveGaussianAction(0, height, sigma, inPixels, tmpPixels, width, height, alpha, premultiply, unpremultiply, edgeAction, threshold));
+        ThreadUtils.forkJoin(new RecursiveGaussianAction(0, width, sigma, tmpPixels, outPixels, height, width, alpha, unpremultiply, premultiply, edgeAction, threshold));
+    }
+
+    private static class RecursiveGaussianAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final float sigma;
+        private final int[] inPixels;
+        private final int[] outPixels;
+        private final int width;
+        private final int height;
+        private final boolean alpha;
+        private final boolean premultiply;
+        private final boolean unpremultiply;
+        private final int edgeAction;
+        private final int threshold;
+
+        private RecursiveGaussianAction(int start, int end, float sigma, int[] inPixels, int[] outPixels, int width, int height,
+                                        boolean alpha, boolean premultiply, boolean unpremultiply, int edgeAction, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.sigma = sigma;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.width = width;
+            this.height = height;
+            this.alpha = alpha;
+            this.premultiply = premultiply;
+            this.unpremultiply = unpremultiply;
+            this.edgeAction = edgeAction;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * width;
+            if (t < threshold || end - start <= 1) {
+                GaussianFilter.recursiveAndTranspose(start, end, sigma, inPixels, outPixels, width, height, alpha, premultiply, unpremultiply, edgeAction);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new RecursiveGaussianAction(start, start + split, sigma, inPixels, outPixels, width, height, alpha, premultiply, unpremultiply, edgeAction, threshold),
+                        new RecursiveGaussianAction(start + split, end, sigma, inPixels, outPixels, width, height, alpha, premultiply, unpremultiply, edgeAction, threshold));
+            }
+        }
+    }
+
+    /**
+     * Blur and transpose a block of ARGB pixels with the recursive filter of
+     * Young and van Vliet, "Recursive implementation of the Gaussian filter".
+     * Each row is extended on both sides according to the edge action, long
+     * enough for the response of the filter to die out.
+     */
+    private static void recursiveAndTranspose(int start, int end, float sigma, int[] inPixels, int[] outPixels, int width, int height,
+                                              boolean alpha, boolean premultiply, boolean unpremultiply, int edgeAction) {
+        float[] coefficients = recursiveCoefficients(sigma);
+
+        int pad = (int) Math.ceil(4 * sigma) + 3;
+        int length = width + 2 * pad;
+        float[][] line = new float[4][length];
+        float NORM = 1.0f / 255.0f;
+
+        for (int y = start; y < end; y++) {
+            int ioffset = y * width;
+            for (int i = 0; i < length; i++) {
+                int ix = i - pad;
+                int rgb;
+                if (ix >= 0 && ix < width) {
+                    rgb = inPixels[ioffset + ix];
+                } else if (edgeAction == CLAMP_EDGES) {
+                    rgb = inPixels[ioffset + ImageMath.clamp(ix, 0, width - 1)];
+                } else if (edgeAction == WRAP_EDGES) {
+                    rgb = inPixels[ioffset + ImageMath.mod(ix, width)];
+                } else {
+                    rgb = 0;
+                }
+                float pa = (rgb >> 24) & 0xff;
+                float pr = (rgb >> 16) & 0xff;
+                float pg = (rgb >> 8) & 0xff;
+                float pb = rgb & 0xff;
+                if (premultiply) {
+                    float a255 = pa * NORM;
+                    pr *= a255;
+                    pg *= a255;
+                    pb *= a255;
+                }
+                line[0][i] = pa;
+                line[1][i] = pr;
+                line[2][i] = pg;
+                line[3][i] = pb;
+            }
+
+            for (float[] c : line) {
+                recursiveFilter(c, coefficients);
+            }
+
+            int index = y;
+            for (int x = 0; x < width; x++) {
+                int i = x + pad;
+                float a = line[0][i];
+                float r = line[1][i];
+                float g = line[2][i];
+                float b = line[3][i];
+                if (unpremultiply && a != 0 && a != 255) {
+                    float f = 255.0f / a;
+                    r *= f;
+                    g *= f;
+                    b *= f;
+                }
+                int ia = alpha ? PixelUtils.clamp((int) (a + 0.5)) : 0xff;
+                int ir = PixelUtils.clamp((int) (r + 0.5));
+                int ig = PixelUtils.clamp((int) (g + 0.5));
+                int ib = PixelUtils.clamp((int) (b + 0.5));
+                outPixels[index] = (ia << 24) | (ir << 16) | (ig << 8) | ib;
+                index += height;
+            }
+        }
+    }
+
     private static class GaussianAction extends RecursiveAction {
 
         private final int start;
@@ -140,7 +605,7 @@ public class GaussianFilter extends ConvolveFilter {
         @Override
         public void compute() {
             int t = (end - start) * width;
-            if (t < threshold) {
+            if (t < threshold || end - start <= 1) {
                 GaussianFilter.convolveAndTranspose(start, end, kernel, inPixels, outPixels, width, height, alpha, premultiply, unpremultiply, edgeAction);
             } else {
                 int split = (end - start) / 2;
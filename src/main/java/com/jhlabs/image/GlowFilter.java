@@ -16,6 +16,7 @@ limitations under the License.
 package com.jhlabs.image;
 
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 /**
  * A filter which adds Gaussian blur to an image, producing a glowing effect.
@@ -52,6 +53,16 @@ public class GlowFilter extends GaussianFilter {
         return amount;
     }
 
+    @Override
+    public boolean isGraySupported() {
+        return false;
+    }
+
+    @Override
+    public boolean isCmykSupported() {
+        return false;
+    }
+
     @Override
     public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
         int width = src.getWidth();
@@ -61,16 +72,22 @@ public class GlowFilter extends GaussianFilter {
             dst = createCompatibleDestImage(src, null);
         }
 
-        int[] inPixels = new int[width * height];
-        int[] outPixels = new int[width * height];
-
-        getRGB(src, 0, 0, width, height, inPixels);
+        // The source is read again after the blur, so the destination is
+        // written in place only if it is not the source
+        int[] inPixels = getRGB(src);
+        int[] dstPixels = getDestRGB(dst, width, height);
+        if (dstPixels == inPixels) {
+            dstPixels = null;
+        }
+        int[] outPixels = dstPixels != null ? dstPixels : new int[width * height];
 
         if (radius > 0) {
             boolean pre = (premultiplyAlpha && src.getColorModel().hasAlpha() && !src.isAlphaPremultiplied());
             //convolveAndTranspose(0, height, kernel, inPixels, outPixels, width, height, alpha, pre, false, CLAMP_EDGES);
             //convolveAndTranspose(0, width, kernel, outPixels, inPixels, height, width, alpha, false, pre, CLAMP_EDGES);
-            convolve(kernel, inPixels, outPixels, width, height, alpha, pre, false, CLAMP_EDGES);
+            blur(inPixels, outPixels, width, height, pre, CLAMP_EDGES);
+        } else if (dstPixels != null) {
+            Arrays.fill(outPixels, 0);
         }
 
         //getRGB(src, 0, 0, width, height, outPixels);
@@ -99,7 +116,9 @@ public class GlowFilter extends GaussianFilter {
         }
 
         //dst.setRGB( 0, 0, width, height, inPixels, 0, width );
-        setRGB(dst, 0, 0, width, height, outPixels);
+        if (dstPixels == null) {
+            setRGB(dst, 0, 0, width, height, outPixels);
+        }
         return dst;
     }
 
@@ -20,6 +20,9 @@ import java.awt.*;
 public class HSBAdjustFilter extends PointFilter {
 
     public float hFactor, sFactor, bFactor;
+    private boolean useLookup;
+    private float[] brightnessTable;
+    private float[] inverseTable;
 
     public HSBAdjustFilter() {
         this(0, 0, 0);
@@ -56,16 +59,58 @@ public class HSBAdjustFilter extends PointFilter {
         return bFactor;
     }
 
+    /**
+     * Set whether to use precomputed tables when the hue is not changed. The
+     * colors are then scaled between their new minimum and maximum components
+     * instead of going through a full HSB conversion, which may give
+     * components differing by one level.
+     *
+     * @param useLookup true to use the tables
+     * @see #getUseLookup
+     */
+    public void setUseLookup(boolean useLookup) {
+        this.useLookup = useLookup;
+    }
+
+    /**
+     * Get whether to use precomputed tables when the hue is not changed.
+     *
+     * @return true to use the tables
+     * @see #setUseLookup
+     */
+    public boolean getUseLookup() {
+        return useLookup;
+    }
+
+    @Override
+    public void setDimensions(int width, int height) {
+        if (useLookup && hFactor == 0) {
+            // New brightness * 255 for each maximum component, and 1 / n
+            brightnessTable = new float[256];
+            inverseTable = new float[256];
+            for (int i = 0; i < 256; i++) {
+                brightnessTable[i] = ImageMath.clamp(i / 255f + bFactor, 0, 1) * 255f;
+                inverseTable[i] = (i == 0) ? 0 : 1f / i;
+            }
+        } else {
+            brightnessTable = null;
+            inverseTable = null;
+        }
+    }
+
     public int filterRGB(int x, int y, int rgb) {
         int a = rgb & 0xff000000;
         int r = (rgb >> 16) & 0xff;
         int g = (rgb >> 8) & 0xff;
         int b = rgb & 0xff;
 
-        float[] hsb = Color.RGBtoHSB(r, g, b, null);
-        float hue = hsb[0];
-        float sat = hsb[1];
-        float bri = hsb[2];
+        if (brightnessTable != null) {
+            return a | filterLookup(r, g, b);
+        }
+
+        float hue = PixelUtils.hsbHue(r, g, b);
+        float sat = PixelUtils.hsbSaturation(r, g, b);
+        float bri = PixelUtils.hsbBrightness(r, g, b);
 
         hue += hFactor;
         while (hue < 0) {
@@ -90,6 +135,34 @@ public class HSBAdjustFilter extends PointFilter {
         return a | (rgb & 0xffffff);
     }
 
+    private int filterLookup(int r, int g, int b) {
+        int cmax = (r > g) ? r : g;
+        if (b > cmax) {
+            cmax = b;
+        }
+        int cmin = (r < g) ? r : g;
+        if (b < cmin) {
+            cmin = b;
+        }
+
+        float sat = (cmax - cmin) * inverseTable[cmax] + sFactor;
+        sat = (sat < 0) ? 0 : (sat > 1) ? 1 : sat;
+
+        float max = brightnessTable[cmax];
+        float min = max * (1 - sat);
+        if (cmax == cmin) {
+            // Grays have a red hue
+            int im = (int) (min + .5f);
+            return ((int) (max + .5f) << 16) | (im << 8) | im;
+        }
+
+        float scale = (max - min) * inverseTable[cmax - cmin];
+        int ir = (int) (min + (r - cmin) * scale + .5f);
+        int ig = (int) (min + (g - cmin) * scale + .5f);
+        int ib = (int) (min + (b - cmin) * scale + .5f);
+        return (ir << 16) | (ig << 8) | ib;
+    }
+
     @Override
     public String toString() {
         return "Colors/Adjust HSB...";
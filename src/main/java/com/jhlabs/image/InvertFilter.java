@@ -18,12 +18,17 @@ package com.jhlabs.image;
 /**
  * A filter which inverts the RGB channels of an image.
  */
-public class InvertFilter extends PointFilter {
+public class InvertFilter extends PointFilter implements ChannelLookup {
 
     public InvertFilter() {
         canFilterIndexColorModel = true;
     }
 
+    @Override
+    public int[][] getChannelTables() {
+        return ChannelLookupFilter.sampleTables(this);
+    }
+
     public int filterRGB(int x, int y, int rgb) {
         int a = rgb & 0xff000000;
         return a | (~rgb & 0x00ffffff);
@@ -17,6 +17,7 @@ package com.jhlabs.image;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
+import java.util.Collections;
 
 /**
  * A BufferedImageOp which iterates another BufferedImageOp.
@@ -38,12 +39,9 @@ public class IteratedFilter extends AbstractBufferedImageOp {
     }
 
     public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
-        BufferedImage image = src;
-
-        for (int i = 0; i < iterations; i++) {
-            image = filter.filter(image, dst);
+        if (iterations <= 0) {
+            return src;
         }
-
-        return image;
+        return new FilterChain(Collections.nCopies(iterations, filter)).filter(src, dst);
     }
 }
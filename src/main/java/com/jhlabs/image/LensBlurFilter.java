@@ -16,8 +16,10 @@ limitations under the License.
 package com.jhlabs.image;
 
 import com.jhlabs.math.FFT;
+import com.jhlabs.utils.ThreadUtils;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A filter which use FFTs to simulate lens blur on an image.
@@ -113,42 +115,23 @@ public class LensBlurFilter extends AbstractBufferedImageOp {
     public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
         int width = src.getWidth();
         int height = src.getHeight();
-        int rows = 1, cols = 1;
-        int log2rows = 0, log2cols = 0;
         int iradius = (int) Math.ceil(radius);
-        int tileWidth = 128;
-        int tileHeight = tileWidth;
-
-        int adjustedWidth = width + iradius * 2;
-        int adjustedHeight = height + iradius * 2;
-
-        tileWidth = iradius < 32 ? Math.min(128, width + 2 * iradius) : Math.min(256, width + 2 * iradius);
-        tileHeight = iradius < 32 ? Math.min(128, height + 2 * iradius) : Math.min(256, height + 2 * iradius);
 
         if (dst == null) {
             dst = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         }
 
-        while (rows < tileHeight) {
-            rows *= 2;
-            log2rows++;
-        }
-        while (cols < tileWidth) {
-            cols *= 2;
-            log2cols++;
-        }
+        // The tiles overlap by the radius on each side, they must be larger than twice the radius
+        int tileSize = Math.max(iradius < 32 ? 128 : 256, 4 * iradius);
+        int cols = powerOf2(Math.min(tileSize, width + 2 * iradius));
+        int rows = powerOf2(Math.min(tileSize, height + 2 * iradius));
         int w = cols;
         int h = rows;
 
-        tileWidth = w;
-        tileHeight = h;//FIXME-tileWidth, w, and cols are always all the same
-
-        FFT fft = new FFT(Math.max(log2rows, log2cols));
+        // Shared by all the tiles, it holds no state
+        FFT fft = new FFT(Math.max(log2(rows), log2(cols)));
 
-        int[] rgb = new int[w * h];
         float[][] mask = new float[2][w * h];
-        float[][] gb = new float[2][w * h];
-        float[][] ar = new float[2][w * h];
 
         // Create the kernel
         double polyAngle = Math.PI / sides;
@@ -183,171 +166,178 @@ public class LensBlurFilter extends AbstractBufferedImageOp {
         }
 
         // Normalize the kernel
+        for (i = 0; i < w * h; i++) {
+            mask[0][i] /= total;
+        }
+
+        // The spectrum of the kernel is shared by all the tiles
+        fft.transform2D(mask[0], mask[1], w, h, true);
+
+        // The origins of the tiles
+        int stepX = w - 2 * iradius;
+        int stepY = h - 2 * iradius;
+        int tilesX = (width + stepX - 1) / stepX;
+        int tilesY = (height + stepY - 1) / stepY;
+        int[] tiles = new int[2 * tilesX * tilesY];
         i = 0;
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                mask[0][i] /= total;
-                i++;
+        for (int tileY = -iradius; tileY < height - iradius; tileY += stepY) {
+            for (int tileX = -iradius; tileX < width - iradius; tileX += stepX) {
+                tiles[i++] = tileX;
+                tiles[i++] = tileY;
             }
         }
 
-        fft.transform2D(mask[0], mask[1], w, h, true);
+        int[] inPixels = getRGB(src, 0, 0, width, height, null);
+        int[] outPixels = new int[width * height];
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new TileAction(0, tiles.length / 2, tiles, fft, mask, inPixels, outPixels, width, height, w, h, iradius, threshold));
 
-        for (int tileY = -iradius; tileY < height; tileY += tileHeight - 2 * iradius) {
-            for (int tileX = -iradius; tileX < width; tileX += tileWidth - 2 * iradius) {
-//                System.out.println("Tile: "+tileX+" "+tileY+" "+tileWidth+" "+tileHeight);
-
-                // Clip the tile to the image bounds
-                int tx = tileX, ty = tileY, tw = tileWidth, th = tileHeight;
-                int fx = 0, fy = 0;
-                if (tx < 0) {
-                    tw += tx;
-                    fx -= tx;
-                    tx = 0;
-                }
-                if (ty < 0) {
-                    th += ty;
-                    fy -= ty;
-                    ty = 0;
-                }
-                if (tx + tw > width) {
-                    tw = width - tx;
-                }
-                if (ty + th > height) {
-                    th = height - ty;
+        setRGB(dst, 0, 0, width, height, outPixels);
+        return dst;
+    }
+
+    private static int powerOf2(int n) {
+        int m = 1;
+        while (m < n) {
+            m *= 2;
+        }
+        return m;
+    }
+
+    private static int log2(int n) {
+        return Integer.numberOfTrailingZeros(n);
+    }
+
+    // Blurs a range of tiles, with scratch buffers shared by the tiles of the range
+    private class TileAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int[] tiles;
+        private final FFT fft;
+        private final float[][] mask;
+        private final int[] inPixels;
+        private final int[] outPixels;
+        private final int width;
+        private final int height;
+        private final int w;
+        private final int h;
+        private final int iradius;
+        private final int threshold;
+
+        private TileAction(int start, int end, int[] tiles, FFT fft, float[][] mask, int[] inPixels, int[] outPixels,
+                           int width, int height, int w, int h, int iradius, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.tiles = tiles;
+            this.fft = fft;
+            this.mask = mask;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.width = width;
+            this.height = height;
+            this.w = w;
+            this.h = h;
+            this.iradius = iradius;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * w * h;
+            if (t < threshold || end - start == 1) {
+                float[][] ar = new float[2][w * h];
+                float[][] gb = new float[2][w * h];
+                float[] rtemp = new float[Math.max(w, h)];
+                float[] itemp = new float[Math.max(w, h)];
+                for (int tile = start; tile < end; tile++) {
+                    filterTile(tiles[2 * tile], tiles[2 * tile + 1], ar, gb, rtemp, itemp);
                 }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new TileAction(start, start + split, tiles, fft, mask, inPixels, outPixels, width, height, w, h, iradius, threshold),
+                        new TileAction(start + split, end, tiles, fft, mask, inPixels, outPixels, width, height, w, h, iradius, threshold));
+            }
+        }
 
-                // TODO: getPixelsRGB(src,...
-                src.getRGB(tx, ty, tw, th, rgb, fy * w + fx, w);
-
-                // Create a float array from the pixels. Any pixels off the edge of the source image get duplicated from the edge.
-                i = 0;
-                for (int y = 0; y < h; y++) {
-                    int imageY = y + tileY;
-                    int j;
-                    if (imageY < 0) {
-                        j = fy;
-                    } else if (imageY > height) {
-                        j = fy + th - 1;
-                    } else {
-                        j = y;
+        private void filterTile(int tileX, int tileY, float[][] ar, float[][] gb, float[] rtemp, float[] itemp) {
+            // Create a float array from the pixels. Any pixels off the edge of the source image get duplicated from the edge.
+            int i = 0;
+            for (int y = 0; y < h; y++) {
+                int offset = ImageMath.clamp(y + tileY, 0, height - 1) * width;
+                for (int x = 0; x < w; x++) {
+                    int rgb = inPixels[offset + ImageMath.clamp(x + tileX, 0, width - 1)];
+
+                    ar[0][i] = ((rgb >> 24) & 0xff);
+                    float r = ((rgb >> 16) & 0xff);
+                    float g = ((rgb >> 8) & 0xff);
+                    float b = (rgb & 0xff);
+
+                    // Bloom...
+                    if (r > bloomThreshold) {
+                        r *= bloom;
                     }
-                    j *= w;
-                    for (int x = 0; x < w; x++) {
-                        int imageX = x + tileX;
-                        int k;
-                        if (imageX < 0) {
-                            k = fx;
-                        } else if (imageX > width) {
-                            k = fx + tw - 1;
-                        } else {
-                            k = x;
-                        }
-                        k += j;
-
-                        ar[0][i] = ((rgb[k] >> 24) & 0xff);
-                        float r = ((rgb[k] >> 16) & 0xff);
-                        float g = ((rgb[k] >> 8) & 0xff);
-                        float b = (rgb[k] & 0xff);
-
-                        // Bloom...
-                        if (r > bloomThreshold) {
-                            r *= bloom;
-                        }
-//							r = bloomThreshold + (r-bloomThreshold) * bloom;
-                        if (g > bloomThreshold) {
-                            g *= bloom;
-                        }
-//							g = bloomThreshold + (g-bloomThreshold) * bloom;
-                        if (b > bloomThreshold) {
-                            b *= bloom;
-                        }
-//							b = bloomThreshold + (b-bloomThreshold) * bloom;
-
-                        ar[1][i] = r;
-                        gb[0][i] = g;
-                        gb[1][i] = b;
-
-                        i++;
-                        k++;
+                    if (g > bloomThreshold) {
+                        g *= bloom;
                     }
-                }
-
-                // Transform into frequency space
-                fft.transform2D(ar[0], ar[1], cols, rows, true);
-                fft.transform2D(gb[0], gb[1], cols, rows, true);
-
-                // Multiply the transformed pixels by the transformed kernel
-                i = 0;
-                for (int y = 0; y < h; y++) {
-                    for (int x = 0; x < w; x++) {
-                        float re = ar[0][i];
-                        float im = ar[1][i];
-                        float rem = mask[0][i];
-                        float imm = mask[1][i];
-                        ar[0][i] = re * rem - im * imm;
-                        ar[1][i] = re * imm + im * rem;
-
-                        re = gb[0][i];
-                        im = gb[1][i];
-                        gb[0][i] = re * rem - im * imm;
-                        gb[1][i] = re * imm + im * rem;
-                        i++;
+                    if (b > bloomThreshold) {
+                        b *= bloom;
                     }
-                }
 
-                // Transform back
-                fft.transform2D(ar[0], ar[1], cols, rows, false);
-                fft.transform2D(gb[0], gb[1], cols, rows, false);
-
-                // Convert back to RGB pixels, with quadrant remapping
-                int row_flip = w >> 1;
-                int col_flip = h >> 1;
-                int index = 0;
-
-                //FIXME-don't bother converting pixels off image edges
-                for (int y = 0; y < w; y++) {
-                    int ym = y ^ row_flip;
-                    int yi = ym * cols;
-                    for (int x = 0; x < w; x++) {
-                        int xm = yi + (x ^ col_flip);
-                        int a = (int) ar[0][xm];
-                        int r = (int) ar[1][xm];
-                        int g = (int) gb[0][xm];
-                        int b = (int) gb[1][xm];
-
-                        // Clamp high pixels due to blooming
-                        if (r > 255) {
-                            r = 255;
-                        }
-                        if (g > 255) {
-                            g = 255;
-                        }
-                        if (b > 255) {
-                            b = 255;
-                        }
-                        int argb = (a << 24) | (r << 16) | (g << 8) | b;
-                        rgb[index++] = argb;
-                    }
+                    // Two real channels in each complex transform
+                    ar[1][i] = r;
+                    gb[0][i] = g;
+                    gb[1][i] = b;
+                    i++;
                 }
+            }
 
-                // Clip to the output image
-                tx = tileX + iradius;
-                ty = tileY + iradius;
-                tw = tileWidth - 2 * iradius;
-                th = tileHeight - 2 * iradius;
-                if (tx + tw > width) {
-                    tw = width - tx;
-                }
-                if (ty + th > height) {
-                    th = height - ty;
-                }
+            // Transform into frequency space
+            fft.transform2D(ar[0], ar[1], w, h, true, rtemp, itemp);
+            fft.transform2D(gb[0], gb[1], w, h, true, rtemp, itemp);
+
+            // Multiply the transformed pixels by the transformed kernel
+            for (i = 0; i < w * h; i++) {
+                float re = ar[0][i];
+                float im = ar[1][i];
+                float rem = mask[0][i];
+                float imm = mask[1][i];
+                ar[0][i] = re * rem - im * imm;
+                ar[1][i] = re * imm + im * rem;
+
+                re = gb[0][i];
+                im = gb[1][i];
+                gb[0][i] = re * rem - im * imm;
+                gb[1][i] = re * imm + im * rem;
+            }
 
-                // TODO : setRGB(dst,...
-                dst.setRGB(tx, ty, tw, th, rgb, iradius * w + iradius, w);
+            // Transform back
+            fft.transform2D(ar[0], ar[1], w, h, false, rtemp, itemp);
+            fft.transform2D(gb[0], gb[1], w, h, false, rtemp, itemp);
+
+            // Clip to the output image
+            int tx = tileX + iradius;
+            int ty = tileY + iradius;
+            int tw = Math.min(w - 2 * iradius, width - tx);
+            int th = Math.min(h - 2 * iradius, height - ty);
+
+            // Convert back to RGB pixels, with quadrant remapping
+            int row_flip = h >> 1;
+            int col_flip = w >> 1;
+            for (int y = 0; y < th; y++) {
+                int yi = ((y + iradius) ^ row_flip) * w;
+                int index = (ty + y) * width + tx;
+                for (int x = 0; x < tw; x++) {
+                    int xm = yi + ((x + iradius) ^ col_flip);
+                    // Clamp high pixels due to blooming
+                    int a = PixelUtils.clamp((int) ar[0][xm]);
+                    int r = PixelUtils.clamp((int) ar[1][xm]);
+                    int g = PixelUtils.clamp((int) gb[0][xm]);
+                    int b = PixelUtils.clamp((int) gb[1][xm]);
+                    outPixels[index++] = (a << 24) | (r << 16) | (g << 8) | b;
+                }
             }
         }
-        return dst;
     }
 
     public String toString() {
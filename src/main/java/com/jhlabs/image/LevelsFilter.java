@@ -20,7 +20,7 @@ import java.awt.*;
 /**
  * A filter which allows levels adjustment on an image.
  */
-public class LevelsFilter extends WholeImageFilter {
+public class LevelsFilter extends WholeImageFilter implements ChannelLookup {
 
     private int[][] lut;
     private float lowLevel = 0;
@@ -66,27 +66,9 @@ public class LevelsFilter extends WholeImageFilter {
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
         Histogram histogram = new Histogram(inPixels, width, height, 0, width);
 
-        int i, j;
+        lut = (histogram.getNumSamples() > 0) ? makeTables() : null;
 
-        if (histogram.getNumSamples() > 0) {
-            float scale = 255.0f / histogram.getNumSamples();
-            lut = new int[3][256];
-
-            float low = lowLevel * 255;
-            float high = highLevel * 255;
-            if (low == high) {
-                high++;
-            }
-            for (i = 0; i < 3; i++) {
-                for (j = 0; j < 256; j++) {
-                    lut[i][j] = PixelUtils.clamp((int) (255 * (lowOutputLevel + (highOutputLevel - lowOutputLevel) * (j - low) / (high - low))));
-                }
-            }
-        } else {
-            lut = null;
-        }
-
-        i = 0;
+        int i = 0;
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 inPixels[i] = filterRGB(x, y, inPixels[i]);
@@ -98,6 +80,27 @@ public class LevelsFilter extends WholeImageFilter {
         return inPixels;
     }
 
+    private int[][] makeTables() {
+        int[][] tables = new int[3][256];
+
+        float low = lowLevel * 255;
+        float high = highLevel * 255;
+        if (low == high) {
+            high++;
+        }
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 256; j++) {
+                tables[i][j] = PixelUtils.clamp((int) (255 * (lowOutputLevel + (highOutputLevel - lowOutputLevel) * (j - low) / (high - low))));
+            }
+        }
+        return tables;
+    }
+
+    @Override
+    public int[][] getChannelTables() {
+        return makeTables();
+    }
+
     public int filterRGB(int x, int y, int rgb) {
         if (lut != null) {
             int a = rgb & 0xff000000;
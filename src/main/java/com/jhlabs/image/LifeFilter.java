@@ -26,42 +26,13 @@ public class LifeFilter extends BinaryFilter {
     }
 
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int index = 0;
-        int[] outPixels = new int[width * height];
+        BitPlane black = BitPlane.create(inPixels, width, height, blackFunction);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int r = 0, g = 0, b = 0;
-                int pixel = inPixels[y * width + x];
-                int a = pixel & 0xff000000;
-                int neighbours = 0;
-
-                for (int row = -1; row <= 1; row++) {
-                    int iy = y + row;
-                    int ioffset;
-                    if (0 <= iy && iy < height) {
-                        ioffset = iy * width;
-                        for (int col = -1; col <= 1; col++) {
-                            int ix = x + col;
-                            if (!(row == 0 && col == 0) && 0 <= ix && ix < width) {
-                                int rgb = inPixels[ioffset + ix];
-                                if (blackFunction.isBlack(rgb)) {
-                                    neighbours++;
-                                }
-                            }
-                        }
-                    }
-                }
-
-                if (blackFunction.isBlack(pixel)) {
-                    outPixels[index++] = (neighbours == 2 || neighbours == 3) ? pixel : 0xffffffff;
-                } else {
-                    outPixels[index++] = neighbours == 3 ? 0xff000000 : pixel;
-                }
-            }
-
-        }
-        return outPixels;
+        BitPlane born = black.apply(n -> ~n[BitPlane.C] & BitPlane.countEqual(n, 3), false, false);
+        BitPlane died = black.apply(n -> n[BitPlane.C] & ~(BitPlane.countEqual(n, 2) | BitPlane.countEqual(n, 3)), false, false);
+        died.fill(inPixels, 0xffffffff);
+        born.fill(inPixels, 0xff000000);
+        return inPixels;
     }
 
     public String toString() {
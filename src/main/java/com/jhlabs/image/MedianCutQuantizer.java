@@ -0,0 +1,240 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+/**
+ * An image Quantizer based on Heckbert's median cut algorithm. The colors of
+ * the image are counted in a ColorHistogram, whose buckets are split into
+ * boxes: the box with the most pixels times the longest side is cut in two at
+ * the median of its pixels along that side, until there are enough boxes. Each
+ * box gives the average color of its pixels.
+ */
+public class MedianCutQuantizer implements Quantizer {
+
+    private int maximumColors;
+    private ColorHistogram histogram = new ColorHistogram();
+    private int[] table;
+    // The index of each bucket of colors plus one, or zero if it is not known
+    // yet, filled in as the colors are looked up once the table is built
+    private int[] inverse;
+
+    public MedianCutQuantizer() {
+        setup(256);
+    }
+
+    /**
+     * Initialize the quantizer. This should be called before adding any pixels.
+     *
+     * @param numColors the number of colors we're quantizing to.
+     */
+    public void setup(int numColors) {
+        maximumColors = numColors;
+        histogram = new ColorHistogram();
+        table = null;
+        inverse = null;
+    }
+
+    /**
+     * Add pixels to the quantizer.
+     *
+     * @param pixels the array of ARGB pixels
+     * @param offset the offset into the array
+     * @param count  the count of pixels
+     */
+    public void addPixels(int[] pixels, int offset, int count) {
+        histogram.addPixels(pixels, offset, count);
+        table = null;
+        inverse = null;
+    }
+
+    /**
+     * Build the color table.
+     *
+     * @return the color table
+     */
+    public int[] buildColorTable() {
+        int size = histogram.size();
+        int[] buckets = new int[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = histogram.getBucketAt(i);
+        }
+
+        // Each box is a range of the buckets, split until there are enough
+        int max = Math.max(1, Math.min(maximumColors, size));
+        int[] starts = new int[max];
+        int[] ends = new int[max];
+        int boxes = 0;
+        if (size > 0) {
+            ends[0] = size;
+            boxes = 1;
+        }
+        int[] sorted = new int[size];
+        long[] priorities = new long[max];
+        int[] axes = new int[max];
+        if (boxes > 0) {
+            measure(buckets, starts, ends, priorities, axes, 0);
+        }
+        while (boxes < max) {
+            int best = -1;
+            for (int b = 0; b < boxes; b++) {
+                if (priorities[b] > 0 && (best < 0 || priorities[b] > priorities[best])) {
+                    best = b;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            int split = split(buckets, sorted, starts[best], ends[best], axes[best]);
+            starts[boxes] = split;
+            ends[boxes] = ends[best];
+            ends[best] = split;
+            measure(buckets, starts, ends, priorities, axes, best);
+            measure(buckets, starts, ends, priorities, axes, boxes);
+            boxes++;
+        }
+
+        table = new int[boxes];
+        inverse = new int[ColorHistogram.BUCKETS];
+        for (int b = 0; b < boxes; b++) {
+            long count = 0, red = 0, green = 0, blue = 0;
+            for (int i = starts[b]; i < ends[b]; i++) {
+                int bucket = buckets[i];
+                count += histogram.getCount(bucket);
+                red += histogram.getRed(bucket);
+                green += histogram.getGreen(bucket);
+                blue += histogram.getBlue(bucket);
+                inverse[bucket] = b + 1;
+            }
+            table[b] = 0xff000000
+                    | (int) ((red + count / 2) / count) << 16
+                    | (int) ((green + count / 2) / count) << 8
+                    | (int) ((blue + count / 2) / count);
+        }
+        return table.clone();
+    }
+
+    /**
+     * Find the longest side of a box, and the priority of cutting it, which is
+     * the number of its pixels times the length of the side.
+     */
+    private void measure(int[] buckets, int[] starts, int[] ends, long[] priorities, int[] axes, int box) {
+        long count = 0;
+        int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        int[] max = {-1, -1, -1};
+        for (int i = starts[box]; i < ends[box]; i++) {
+            count += histogram.getCount(buckets[i]);
+            for (int axis = 0; axis < 3; axis++) {
+                int v = getCoordinate(buckets[i], axis);
+                min[axis] = Math.min(min[axis], v);
+                max[axis] = Math.max(max[axis], v);
+            }
+        }
+        priorities[box] = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            long priority = count * (max[axis] - min[axis]);
+            if (priority > priorities[box]) {
+                priorities[box] = priority;
+                axes[box] = axis;
+            }
+        }
+    }
+
+    private static int getCoordinate(int bucket, int axis) {
+        return (bucket >> ((2 - axis) * ColorHistogram.BITS)) & ((1 << ColorHistogram.BITS) - 1);
+    }
+
+    /**
+     * Sort a range of buckets along an axis, and find where to cut it so that
+     * each part has about half of the pixels.
+     */
+    private int split(int[] buckets, int[] sorted, int start, int end, int axis) {
+        // A counting sort on the coordinate of the axis
+        int side = 1 << ColorHistogram.BITS;
+        int[] positions = new int[side + 1];
+        long[] counts = new long[side];
+        long total = 0;
+        for (int i = start; i < end; i++) {
+            int v = getCoordinate(buckets[i], axis);
+            positions[v + 1]++;
+            counts[v] += histogram.getCount(buckets[i]);
+            total += histogram.getCount(buckets[i]);
+        }
+        for (int v = 0; v < side; v++) {
+            positions[v + 1] += positions[v];
+        }
+        for (int i = start; i < end; i++) {
+            sorted[start + positions[getCoordinate(buckets[i], axis)]++] = buckets[i];
+        }
+        System.arraycopy(sorted, start, buckets, start, end - start);
+
+        // Cut between two coordinates, after the one holding the median but
+        // leaving something on each side
+        long sum = 0;
+        int split = start;
+        int first = getCoordinate(buckets[start], axis);
+        int last = getCoordinate(buckets[end - 1], axis);
+        for (int v = first; v < last; v++) {
+            sum += counts[v];
+            split = start + positions[v];
+            if (2 * sum >= total) {
+                break;
+            }
+        }
+        return split;
+    }
+
+    /**
+     * Get the color table index for a color. Once the table is built, this
+     * may be called by several threads at once.
+     *
+     * @param rgb the color
+     * @return the index
+     */
+    public int getIndexForColor(int rgb) {
+        int[] inverse = this.inverse;
+        if (inverse == null) {
+            return 0;
+        }
+        int bucket = ColorHistogram.getBucket(rgb);
+        int index = inverse[bucket] - 1;
+        if (index < 0) {
+            // A color which was not in the image takes the nearest color of
+            // the table to the middle of its bucket
+            index = findNearest(ColorHistogram.getColor(bucket) + (0x010101 << (7 - ColorHistogram.BITS)));
+            inverse[bucket] = index + 1;
+        }
+        return index;
+    }
+
+    private int findNearest(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        int nearest = 0;
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < table.length; i++) {
+            int dr = r - ((table[i] >> 16) & 0xff);
+            int dg = g - ((table[i] >> 8) & 0xff);
+            int db = b - (table[i] & 0xff);
+            int d = dr * dr + dg * dg + db * db;
+            if (d < best) {
+                best = d;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+}
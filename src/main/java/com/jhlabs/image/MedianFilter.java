@@ -15,13 +15,13 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
-import java.awt.*;
-
 /**
  * A filter which performs a 3x3 median operation. Useful for removing dust and
  * noise.
  */
-public class MedianFilter extends WholeImageFilter {
+public class MedianFilter extends NeighbourhoodFilter {
+
+    private boolean separateChannels;
 
     public MedianFilter() {
     }
@@ -49,61 +49,193 @@ public class MedianFilter extends WholeImageFilter {
         return max;
     }
 
-    private int rgbMedian(int[] r, int[] g, int[] b) {
-        int sum, index = 0, min = Integer.MAX_VALUE;
+    /**
+     * Set whether each channel is replaced by its own median, instead of the
+     * whole pixel being replaced by the pixel which is closest to its
+     * neighbours. The channel median is faster, but may produce colors which
+     * are not in the image. The edges of the image are extended rather than
+     * padded with black.
+     *
+     * @param separateChannels true to take the median of each channel
+     * @see #getSeparateChannels
+     */
+    public void setSeparateChannels(boolean separateChannels) {
+        this.separateChannels = separateChannels;
+    }
+
+    /**
+     * Get whether each channel is replaced by its own median.
+     *
+     * @return true to take the median of each channel
+     * @see #setSeparateChannels
+     */
+    public boolean getSeparateChannels() {
+        return separateChannels;
+    }
 
+    // Return the index of the pixel with the least total distance to the others
+    private static int rgbMedian(int[] r, int[] g, int[] b, int[] sums) {
         for (int i = 0; i < 9; i++) {
-            sum = 0;
-            for (int j = 0; j < 9; j++) {
-                sum += Math.abs(r[i] - r[j]);
-                sum += Math.abs(g[i] - g[j]);
-                sum += Math.abs(b[i] - b[j]);
+            sums[i] = 0;
+        }
+        for (int i = 0; i < 9; i++) {
+            int ri = r[i], gi = g[i], bi = b[i];
+            int sum = sums[i];
+            for (int j = i + 1; j < 9; j++) {
+                int d = Math.abs(ri - r[j]) + Math.abs(gi - g[j]) + Math.abs(bi - b[j]);
+                sum += d;
+                sums[j] += d;
             }
-            if (sum < min) {
-                min = sum;
+            sums[i] = sum;
+        }
+
+        int index = 0, min = Integer.MAX_VALUE;
+        for (int i = 0; i < 9; i++) {
+            if (sums[i] < min) {
+                min = sums[i];
                 index = i;
             }
         }
         return index;
     }
 
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int index = 0;
+    private static int median3(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    // The median of 3x3 values: the median of the largest column minimum,
+    // the median column median and the smallest column maximum
+    private static int median9(int lo0, int mid0, int hi0, int lo1, int mid1, int hi1, int lo2, int mid2, int hi2) {
+        return median3(Math.max(Math.max(lo0, lo1), lo2), median3(mid0, mid1, mid2), Math.min(Math.min(hi0, hi1), hi2));
+    }
+
+    private static int channelMedian(int[] v, int shift) {
+        int[] lo = new int[3];
+        int[] mid = new int[3];
+        int[] hi = new int[3];
+        for (int i = 0; i < 3; i++) {
+            int a = (v[i] >> shift) & 0xff;
+            int b = (v[i + 3] >> shift) & 0xff;
+            int c = (v[i + 6] >> shift) & 0xff;
+            int min = Math.min(a, b);
+            int max = Math.max(a, b);
+            lo[i] = Math.min(min, c);
+            mid[i] = Math.max(min, Math.min(max, c));
+            hi[i] = Math.max(max, c);
+        }
+        return median9(lo[0], mid[0], hi[0], lo[1], mid[1], hi[1], lo[2], mid[2], hi[2]);
+    }
+
+    @Override
+    protected int filterEdgePixel(int[] inPixels, int width, int height, int x, int y) {
+        int[] argb = new int[9];
+        if (separateChannels) {
+            int k = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                int ioffset = ImageMath.clamp(y + dy, 0, height - 1) * width;
+                for (int dx = -1; dx <= 1; dx++) {
+                    argb[k++] = inPixels[ioffset + ImageMath.clamp(x + dx, 0, width - 1)];
+                }
+            }
+            return (argb[4] & 0xff000000) | (channelMedian(argb, 16) << 16) | (channelMedian(argb, 8) << 8) | channelMedian(argb, 0);
+        }
+
+        int[] r = new int[9];
+        int[] g = new int[9];
+        int[] b = new int[9];
+        int k = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            int iy = y + dy;
+            if (0 <= iy && iy < height) {
+                int ioffset = iy * width;
+                for (int dx = -1; dx <= 1; dx++) {
+                    int ix = x + dx;
+                    if (0 <= ix && ix < width) {
+                        int rgb = inPixels[ioffset + ix];
+                        argb[k] = rgb;
+                        r[k] = (rgb >> 16) & 0xff;
+                        g[k] = (rgb >> 8) & 0xff;
+                        b[k] = rgb & 0xff;
+                        k++;
+                    }
+                }
+            }
+        }
+        while (k < 9) {
+            argb[k] = 0xff000000;
+            r[k] = g[k] = b[k] = 0;
+            k++;
+        }
+        return argb[rgbMedian(r, g, b, new int[9])];
+    }
+
+    @Override
+    protected void filterInterior(int[] inPixels, int[] outPixels, int width, int height) {
+        if (separateChannels) {
+            filterChannelsInterior(inPixels, outPixels, width, height);
+            return;
+        }
+
         int[] argb = new int[9];
         int[] r = new int[9];
         int[] g = new int[9];
         int[] b = new int[9];
-        int[] outPixels = new int[width * height];
+        int[] sums = new int[9];
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int index = y * width + x;
                 int k = 0;
-                for (int dy = -1; dy <= 1; dy++) {
-                    int iy = y + dy;
-                    if (0 <= iy && iy < height) {
-                        int ioffset = iy * width;
-                        for (int dx = -1; dx <= 1; dx++) {
-                            int ix = x + dx;
-                            if (0 <= ix && ix < width) {
-                                int rgb = inPixels[ioffset + ix];
-                                argb[k] = rgb;
-                                r[k] = (rgb >> 16) & 0xff;
-                                g[k] = (rgb >> 8) & 0xff;
-                                b[k] = rgb & 0xff;
-                                k++;
-                            }
-                        }
+                for (int i = index - width - 1; i < index + 2 * width - 1; i += width) {
+                    for (int j = i; j < i + 3; j++) {
+                        int rgb = inPixels[j];
+                        argb[k] = rgb;
+                        r[k] = (rgb >> 16) & 0xff;
+                        g[k] = (rgb >> 8) & 0xff;
+                        b[k] = rgb & 0xff;
+                        k++;
                     }
                 }
-                while (k < 9) {
-                    argb[k] = 0xff000000;
-                    r[k] = g[k] = b[k] = 0;
-                    k++;
+                outPixels[index] = argb[rgbMedian(r, g, b, sums)];
+            }
+        }
+    }
+
+    // Each column of three pixels is sorted once per row, then shared by three windows
+    private void filterChannelsInterior(int[] inPixels, int[] outPixels, int width, int height) {
+        int[][] lo = new int[3][width];
+        int[][] mid = new int[3][width];
+        int[][] hi = new int[3][width];
+
+        for (int y = 1; y < height - 1; y++) {
+            int index = y * width;
+            for (int x = 0; x < width; x++) {
+                int p0 = inPixels[index - width + x];
+                int p1 = inPixels[index + x];
+                int p2 = inPixels[index + width + x];
+                for (int c = 0; c < 3; c++) {
+                    int shift = 16 - 8 * c;
+                    int a = (p0 >> shift) & 0xff;
+                    int b = (p1 >> shift) & 0xff;
+                    int d = (p2 >> shift) & 0xff;
+                    int min = Math.min(a, b);
+                    int max = Math.max(a, b);
+                    lo[c][x] = Math.min(min, d);
+                    mid[c][x] = Math.max(min, Math.min(max, d));
+                    hi[c][x] = Math.max(max, d);
                 }
-                outPixels[index++] = argb[rgbMedian(r, g, b)];
+            }
+
+            int[] rl = lo[0], rm = mid[0], rh = hi[0];
+            int[] gl = lo[1], gm = mid[1], gh = hi[1];
+            int[] bl = lo[2], bm = mid[2], bh = hi[2];
+            for (int x = 1; x < width - 1; x++) {
+                int r = median9(rl[x - 1], rm[x - 1], rh[x - 1], rl[x], rm[x], rh[x], rl[x + 1], rm[x + 1], rh[x + 1]);
+                int g = median9(gl[x - 1], gm[x - 1], gh[x - 1], gl[x], gm[x], gh[x], gl[x + 1], gm[x + 1], gh[x + 1]);
+                int b = median9(bl[x - 1], bm[x - 1], bh[x - 1], bl[x], bm[x], bh[x], bl[x + 1], bm[x + 1], bh[x + 1]);
+                outPixels[index + x] = (inPixels[index + x] & 0xff000000) | (r << 16) | (g << 8) | b;
             }
         }
-        return outPixels;
     }
 
     public String toString() {
@@ -15,41 +15,57 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
-import java.awt.*;
-
 /**
  * A filter which replcaes each pixel by the mimimum of itself and its eight
  * neightbours.
  */
-public class MinimumFilter extends WholeImageFilter {
+public class MinimumFilter extends NeighbourhoodFilter {
 
     public MinimumFilter() {
     }
 
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int index = 0;
-        int[] outPixels = new int[width * height];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = 0xffffffff;
-                for (int dy = -1; dy <= 1; dy++) {
-                    int iy = y + dy;
-                    int ioffset;
-                    if (0 <= iy && iy < height) {
-                        ioffset = iy * width;
-                        for (int dx = -1; dx <= 1; dx++) {
-                            int ix = x + dx;
-                            if (0 <= ix && ix < width) {
-                                pixel = PixelUtils.combinePixels(pixel, inPixels[ioffset + ix], PixelUtils.MIN);
-                            }
-                        }
+    @Override
+    protected int filterEdgePixel(int[] inPixels, int width, int height, int x, int y) {
+        int pixel = 0xffffffff;
+        for (int dy = -1; dy <= 1; dy++) {
+            int iy = y + dy;
+            if (0 <= iy && iy < height) {
+                int ioffset = iy * width;
+                for (int dx = -1; dx <= 1; dx++) {
+                    int ix = x + dx;
+                    if (0 <= ix && ix < width) {
+                        pixel = PixelUtils.combinePixels(pixel, inPixels[ioffset + ix], PixelUtils.MIN);
                     }
                 }
-                outPixels[index++] = pixel;
             }
         }
-        return outPixels;
+        return pixel;
+    }
+
+    // The minimum of each column is computed once per row, then shared by three windows
+    @Override
+    protected void filterInterior(int[] inPixels, int[] outPixels, int width, int height) {
+        int[] r = new int[width];
+        int[] g = new int[width];
+        int[] b = new int[width];
+
+        for (int y = 1; y < height - 1; y++) {
+            int index = y * width;
+            for (int x = 0; x < width; x++) {
+                int p0 = inPixels[index - width + x];
+                int p1 = inPixels[index + x];
+                int p2 = inPixels[index + width + x];
+                r[x] = Math.min(Math.min((p0 >> 16) & 0xff, (p1 >> 16) & 0xff), (p2 >> 16) & 0xff);
+                g[x] = Math.min(Math.min((p0 >> 8) & 0xff, (p1 >> 8) & 0xff), (p2 >> 8) & 0xff);
+                b[x] = Math.min(Math.min(p0 & 0xff, p1 & 0xff), p2 & 0xff);
+            }
+            for (int x = 1; x < width - 1; x++) {
+                outPixels[index + x] = 0xff000000
+                        | (Math.min(Math.min(r[x - 1], r[x]), r[x + 1]) << 16)
+                        | (Math.min(Math.min(g[x - 1], g[x]), g[x + 1]) << 8)
+                        | Math.min(Math.min(b[x - 1], b[x]), b[x + 1]);
+            }
+        }
     }
 
     public String toString() {
@@ -0,0 +1,210 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.utils.ThreadUtils;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A pyramid of reduced copies of an image, each half the size of the one
+ * before, for sampling the image at a smaller scale without aliasing. Level 0
+ * is the image itself, and each pixel of a level is the average of 2x2 pixels
+ * of the level below. A pixel at (x, y) in level k is centred on ((x + 0.5) *
+ * 2^k - 0.5, (y + 0.5) * 2^k - 0.5) in level 0.
+ */
+public class MipMap {
+
+    private final int[] widths;
+    private final int[] heights;
+    private final int[][] rgbLevels;
+    private final byte[][] grayLevels;
+
+    private MipMap(int width, int height, int levels, boolean gray) {
+        levels = Math.max(1, Math.min(levels, getMaxLevels(width, height)));
+        widths = new int[levels];
+        heights = new int[levels];
+        for (int k = 0; k < levels; k++) {
+            widths[k] = width;
+            heights[k] = height;
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+        }
+        rgbLevels = gray ? null : new int[levels][];
+        grayLevels = gray ? new byte[levels][] : null;
+    }
+
+    /**
+     * Build the pyramid of an ARGB image.
+     *
+     * @param pixels the pixels of the image, which become level 0
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param levels the number of levels wanted, including level 0
+     * @return the pyramid
+     */
+    public static MipMap createRGB(int[] pixels, int width, int height, int levels) {
+        MipMap mipmap = new MipMap(width, height, levels, false);
+        mipmap.rgbLevels[0] = pixels;
+        mipmap.reduce();
+        return mipmap;
+    }
+
+    /**
+     * Build the pyramid of a gray image.
+     *
+     * @param pixels the pixels of the image, which become level 0
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param levels the number of levels wanted, including level 0
+     * @return the pyramid
+     */
+    public static MipMap createGray(byte[] pixels, int width, int height, int levels) {
+        MipMap mipmap = new MipMap(width, height, levels, true);
+        mipmap.grayLevels[0] = pixels;
+        mipmap.reduce();
+        return mipmap;
+    }
+
+    /**
+     * Get the number of levels down to a single pixel.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the number of levels, including level 0
+     */
+    public static int getMaxLevels(int width, int height) {
+        int levels = 1;
+        while (width > 1 || height > 1) {
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+            levels++;
+        }
+        return levels;
+    }
+
+    private void reduce() {
+        for (int k = 1; k < widths.length; k++) {
+            int w = widths[k];
+            int h = heights[k];
+            if (rgbLevels != null) {
+                rgbLevels[k] = new int[w * h];
+            } else {
+                grayLevels[k] = new byte[w * h];
+            }
+            ThreadUtils.forkJoin(new ReduceAction(0, h, k, ThreadUtils.getThreshold(w, h)));
+        }
+    }
+
+    public boolean isGray() {
+        return grayLevels != null;
+    }
+
+    public int getLevels() {
+        return widths.length;
+    }
+
+    public int getWidth(int level) {
+        return widths[level];
+    }
+
+    public int getHeight(int level) {
+        return heights[level];
+    }
+
+    public int[] getRGB(int level) {
+        return rgbLevels[level];
+    }
+
+    public byte[] getGray(int level) {
+        return grayLevels[level];
+    }
+
+    private void reduceRGB(int start, int end, int level) {
+        int[] in = rgbLevels[level - 1];
+        int[] out = rgbLevels[level];
+        int inWidth = widths[level - 1];
+        int inHeight = heights[level - 1];
+        int outWidth = widths[level];
+
+        for (int y = start; y < end; y++) {
+            int row0 = 2 * y * inWidth;
+            int row1 = Math.min(2 * y + 1, inHeight - 1) * inWidth;
+            int index = y * outWidth;
+            for (int x = 0; x < outWidth; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(x0 + 1, inWidth - 1);
+                int p0 = in[row0 + x0];
+                int p1 = in[row0 + x1];
+                int p2 = in[row1 + x0];
+                int p3 = in[row1 + x1];
+                // Two channels at a time, the sums of four bytes fit in 16 bits
+                int rb = (p0 & 0xff00ff) + (p1 & 0xff00ff) + (p2 & 0xff00ff) + (p3 & 0xff00ff) + 0x20002;
+                int ag = ((p0 >>> 8) & 0xff00ff) + ((p1 >>> 8) & 0xff00ff) + ((p2 >>> 8) & 0xff00ff) + ((p3 >>> 8) & 0xff00ff) + 0x20002;
+                out[index++] = ((ag << 6) & 0xff00ff00) | ((rb >>> 2) & 0xff00ff);
+            }
+        }
+    }
+
+    private void reduceGray(int start, int end, int level) {
+        byte[] in = grayLevels[level - 1];
+        byte[] out = grayLevels[level];
+        int inWidth = widths[level - 1];
+        int inHeight = heights[level - 1];
+        int outWidth = widths[level];
+
+        for (int y = start; y < end; y++) {
+            int row0 = 2 * y * inWidth;
+            int row1 = Math.min(2 * y + 1, inHeight - 1) * inWidth;
+            int index = y * outWidth;
+            for (int x = 0; x < outWidth; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(x0 + 1, inWidth - 1);
+                out[index++] = (byte) (((in[row0 + x0] & 0xff) + (in[row0 + x1] & 0xff) + (in[row1 + x0] & 0xff) + (in[row1 + x1] & 0xff) + 2) >> 2);
+            }
+        }
+    }
+
+    private class ReduceAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int level;
+        private final int threshold;
+
+        private ReduceAction(int start, int end, int level, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.level = level;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) * widths[level] < threshold || end - start <= 1) {
+                if (rgbLevels != null) {
+                    reduceRGB(start, end, level);
+                } else {
+                    reduceGray(start, end, level);
+                }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new ReduceAction(start, start + split, level, threshold),
+                        new ReduceAction(start + split, end, level, threshold));
+            }
+        }
+    }
+}
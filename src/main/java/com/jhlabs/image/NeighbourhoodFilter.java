@@ -0,0 +1,90 @@
+/*
+Copyright 2006 Jerry Huxtable
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.jhlabs.image;
+
+import java.awt.*;
+
+/**
+ * A superclass for filters which replace each pixel by a function of its 3x3
+ * neighbourhood. The pixels on the edges of the image, whose neighbourhood is
+ * incomplete, are filtered one at a time by filterEdgePixel, while the
+ * interior is filtered by filterInterior without any bounds checks. Images are
+ * split into overlapping strips which are filtered in parallel.
+ */
+public abstract class NeighbourhoodFilter extends WholeImageFilter {
+
+    /**
+     * Construct a NeighbourhoodFilter.
+     */
+    public NeighbourhoodFilter() {
+    }
+
+    @Override
+    protected int getNeighbourhoodRadius() {
+        return 1;
+    }
+
+    /**
+     * Filter a pixel on the edge of the image.
+     *
+     * @param inPixels the input pixels
+     * @param width the image width
+     * @param height the image height
+     * @param x the pixel x coordinate
+     * @param y the pixel y coordinate
+     * @return the filtered pixel
+     */
+    protected abstract int filterEdgePixel(int[] inPixels, int width, int height, int x, int y);
+
+    /**
+     * Filter the interior of the image, that is every pixel with 1 &lt;= x &lt;
+     * width-1 and 1 &lt;= y &lt; height-1. This is only called for images of at
+     * least 3x3 pixels.
+     *
+     * @param inPixels the input pixels
+     * @param outPixels the output pixels
+     * @param width the image width
+     * @param height the image height
+     */
+    protected abstract void filterInterior(int[] inPixels, int[] outPixels, int width, int height);
+
+    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
+        int[] outPixels = new int[width * height];
+
+        if (width < 3 || height < 3) {
+            int index = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    outPixels[index++] = filterEdgePixel(inPixels, width, height, x, y);
+                }
+            }
+            return outPixels;
+        }
+
+        int last = (height - 1) * width;
+        for (int x = 0; x < width; x++) {
+            outPixels[x] = filterEdgePixel(inPixels, width, height, x, 0);
+            outPixels[last + x] = filterEdgePixel(inPixels, width, height, x, height - 1);
+        }
+        for (int y = 1; y < height - 1; y++) {
+            int index = y * width;
+            outPixels[index] = filterEdgePixel(inPixels, width, height, 0, y);
+            outPixels[index + width - 1] = filterEdgePixel(inPixels, width, height, width - 1, y);
+        }
+        filterInterior(inPixels, outPixels, width, height);
+        return outPixels;
+    }
+}
@@ -72,6 +72,9 @@ public class OctTreeQuantizer implements Quantizer {
     private int maximumColors;
     private int colors = 0;
     private final Vector[] colorList;
+    // The index of each bucket of colors plus one, or zero if it is not known
+    // yet, filled in as the colors are looked up once the table is built
+    private int[] inverse;
 
     public OctTreeQuantizer() {
         setup(256);
@@ -100,21 +103,47 @@ public class OctTreeQuantizer implements Quantizer {
      * @param count  the count of pixels
      */
     public void addPixels(int[] pixels, int offset, int count) {
-        for (int i = 0; i < count; i++) {
-            insertColor(pixels[i + offset]);
+        // The shape of the tree only changes when a color is inserted whose
+        // bucket of the deepest level has not been met yet, so inserting each
+        // bucket once with all its pixels, in the order of their first
+        // pixels, builds the same tree as inserting the pixels one by one
+        ColorHistogram histogram = new ColorHistogram();
+        histogram.addPixels(pixels, offset, count);
+        for (int i = 0; i < histogram.size(); i++) {
+            int bucket = histogram.getBucketAt(i);
+            insertColor(ColorHistogram.getColor(bucket), histogram.getCount(bucket),
+                    (int) histogram.getRed(bucket), (int) histogram.getGreen(bucket), (int) histogram.getBlue(bucket));
             if (colors > reduceColors) {
                 reduceTree(reduceColors);
             }
         }
+        inverse = null;
     }
 
     /**
-     * Get the color table index for a color.
+     * Get the color table index for a color. Once the table is built, this
+     * may be called by several threads at once.
      *
      * @param rgb the color
      * @return the index
      */
     public int getIndexForColor(int rgb) {
+        int[] inverse = this.inverse;
+        if (inverse == null) {
+            return findIndexForColor(rgb);
+        }
+        // The tree has a leaf for each bucket at most, so all the colors of a
+        // bucket have the same index
+        int bucket = ColorHistogram.getBucket(rgb);
+        int index = inverse[bucket] - 1;
+        if (index < 0) {
+            index = findIndexForColor(rgb);
+            inverse[bucket] = index + 1;
+        }
+        return index;
+    }
+
+    private int findIndexForColor(int rgb) {
         int red = (rgb >> 16) & 0xff;
         int green = (rgb >> 8) & 0xff;
         int blue = rgb & 0xff;
@@ -150,7 +179,7 @@ public class OctTreeQuantizer implements Quantizer {
         return 0;
     }
 
-    private void insertColor(int rgb) {
+    private void insertColor(int rgb, int count, int totalRed, int totalGreen, int totalBlue) {
         int red = (rgb >> 16) & 0xff;
         int green = (rgb >> 8) & 0xff;
         int blue = rgb & 0xff;
@@ -187,10 +216,10 @@ public class OctTreeQuantizer implements Quantizer {
 
                 if (level == MAX_LEVEL) {
                     child.isLeaf = true;
-                    child.count = 1;
-                    child.totalRed = red;
-                    child.totalGreen = green;
-                    child.totalBlue = blue;
+                    child.count = count;
+                    child.totalRed = totalRed;
+                    child.totalGreen = totalGreen;
+                    child.totalBlue = totalBlue;
                     child.level = level;
                     colors++;
                     return;
@@ -198,10 +227,10 @@ public class OctTreeQuantizer implements Quantizer {
 
                 node = child;
             } else if (child.isLeaf) {
-                child.count++;
-                child.totalRed += red;
-                child.totalGreen += green;
-                child.totalBlue += blue;
+                child.count += count;
+                child.totalRed += totalRed;
+                child.totalGreen += totalGreen;
+                child.totalBlue += totalBlue;
                 return;
             } else {
                 node = child;
@@ -255,6 +284,7 @@ public class OctTreeQuantizer implements Quantizer {
     public int[] buildColorTable() {
         int[] table = new int[colors];
         buildColorTable(root, table, 0);
+        inverse = new int[ColorHistogram.BUCKETS];
         return table;
     }
 
@@ -266,18 +296,13 @@ public class OctTreeQuantizer implements Quantizer {
      * @param table    the output color table
      */
     public void buildColorTable(int[] inPixels, int[] table) {
-        int count = inPixels.length;
         maximumColors = table.length;
-        for (int i = 0; i < count; i++) {
-            insertColor(inPixels[i]);
-            if (colors > reduceColors) {
-                reduceTree(reduceColors);
-            }
-        }
+        addPixels(inPixels, 0, inPixels.length);
         if (colors > maximumColors) {
             reduceTree(maximumColors);
         }
         buildColorTable(root, table, 0);
+        inverse = new int[ColorHistogram.BUCKETS];
     }
 
     private int buildColorTable(OctTreeNode node, int[] table, int index) {
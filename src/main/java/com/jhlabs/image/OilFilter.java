@@ -68,6 +68,11 @@ public class OilFilter extends WholeImageFilter {
         return levels;
     }
 
+    @Override
+    protected int getNeighbourhoodRadius() {
+        return range;
+    }
+
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
         int index = 0;
         int[] rHistogram = new int[levels];
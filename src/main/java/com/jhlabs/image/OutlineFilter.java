@@ -28,43 +28,16 @@ public class OutlineFilter extends BinaryFilter {
     }
 
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int index = 0;
-        int[] outPixels = new int[width * height];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = inPixels[y * width + x];
-                if (blackFunction.isBlack(pixel)) {
-                    int neighbours = 0;
-
-                    for (int dy = -1; dy <= 1; dy++) {
-                        int iy = y + dy;
-                        int ioffset;
-                        if (0 <= iy && iy < height) {
-                            ioffset = iy * width;
-                            for (int dx = -1; dx <= 1; dx++) {
-                                int ix = x + dx;
-                                if (!(dy == 0 && dx == 0) && 0 <= ix && ix < width) {
-                                    int rgb = inPixels[ioffset + ix];
-                                    if (blackFunction.isBlack(rgb)) {
-                                        neighbours++;
-                                    }
-                                } else {
-                                    neighbours++;
-                                }
-                            }
-                        }
-                    }
-
-                    if (neighbours == 9) {
-                        pixel = newColor;
-                    }
-                }
-                outPixels[index++] = pixel;
-            }
-
-        }
-        return outPixels;
+        BitPlane black = BitPlane.create(inPixels, width, height, blackFunction);
+
+        // A pixel is interior if it and its neighbours are black, where the
+        // pixels beyond the left and right edges count as black but those
+        // beyond the top and bottom do not
+        BitPlane interior = black.apply(n -> n[BitPlane.NW] & n[BitPlane.N] & n[BitPlane.NE]
+                & n[BitPlane.W] & n[BitPlane.C] & n[BitPlane.E]
+                & n[BitPlane.SW] & n[BitPlane.S] & n[BitPlane.SE], true, false);
+        interior.fill(inPixels, newColor);
+        return inPixels;
     }
 
     public String toString() {
@@ -143,6 +143,13 @@ public class PerspectiveFilter extends TransformFilter {
         out[1] = originalSpace.height * (D * x + E * y + F) / (G * x + H * y + I);
     }
 
+    @Override
+    protected float[] getInverseMatrix() {
+        float w = originalSpace.width;
+        float h = originalSpace.height;
+        return new float[]{w * A, w * B, w * C, h * D, h * E, h * F, G, H, I};
+    }
+
     @Override
     public String toString() {
         return "Distort/Perspective...";
@@ -71,6 +71,80 @@ public class PixelUtils {
         return (r + g + b) / 3;
     }
 
+    /**
+     * Return the HSB hue of a color. This gives the same result as
+     * Color.RGBtoHSB without allocating an array.
+     *
+     * @param r the red component (0..255)
+     * @param g the green component (0..255)
+     * @param b the blue component (0..255)
+     * @return the hue (0..1)
+     */
+    public static float hsbHue(int r, int g, int b) {
+        int cmax = (r > g) ? r : g;
+        if (b > cmax) {
+            cmax = b;
+        }
+        int cmin = (r < g) ? r : g;
+        if (b < cmin) {
+            cmin = b;
+        }
+        if (cmax == 0 || cmax == cmin) {
+            return 0;
+        }
+
+        float range = (float) (cmax - cmin);
+        float redc = ((float) (cmax - r)) / range;
+        float greenc = ((float) (cmax - g)) / range;
+        float bluec = ((float) (cmax - b)) / range;
+        float hue;
+        if (r == cmax) {
+            hue = bluec - greenc;
+        } else if (g == cmax) {
+            hue = 2.0f + redc - bluec;
+        } else {
+            hue = 4.0f + greenc - redc;
+        }
+        hue = hue / 6.0f;
+        return (hue < 0) ? hue + 1.0f : hue;
+    }
+
+    /**
+     * Return the HSB saturation of a color, as Color.RGBtoHSB does.
+     *
+     * @param r the red component (0..255)
+     * @param g the green component (0..255)
+     * @param b the blue component (0..255)
+     * @return the saturation (0..1)
+     */
+    public static float hsbSaturation(int r, int g, int b) {
+        int cmax = (r > g) ? r : g;
+        if (b > cmax) {
+            cmax = b;
+        }
+        int cmin = (r < g) ? r : g;
+        if (b < cmin) {
+            cmin = b;
+        }
+        return (cmax == 0) ? 0 : ((float) (cmax - cmin)) / ((float) cmax);
+    }
+
+    /**
+     * Return the HSB brightness of a color, as Color.RGBtoHSB does.
+     *
+     * @param r the red component (0..255)
+     * @param g the green component (0..255)
+     * @param b the blue component (0..255)
+     * @return the brightness (0..1)
+     */
+    public static float hsbBrightness(int r, int g, int b) {
+        int cmax = (r > g) ? r : g;
+        if (b > cmax) {
+            cmax = b;
+        }
+        return ((float) cmax) / 255.0f;
+    }
+
     public static boolean nearColors(int rgb1, int rgb2, int tolerance) {
         int r1 = (rgb1 >> 16) & 0xff;
         int g1 = (rgb1 >> 8) & 0xff;
@@ -81,9 +155,6 @@ public class PixelUtils {
         return Math.abs(r1 - r2) <= tolerance && Math.abs(g1 - g2) <= tolerance && Math.abs(b1 - b2) <= tolerance;
     }
 
-    private final static float[] hsb1 = new float[3];//FIXME-not thread safe
-    private final static float[] hsb2 = new float[3];//FIXME-not thread safe
-
     // Return rgb1 painted onto rgb2
     public static int combinePixels(int rgb1, int rgb2, int op) {
         return combinePixels(rgb1, rgb2, op, 0xff);
@@ -155,24 +226,10 @@ public class PixelUtils {
             case SATURATION:
             case VALUE:
             case COLOR:
-                Color.RGBtoHSB(r1, g1, b1, hsb1);
-                Color.RGBtoHSB(r2, g2, b2, hsb2);
-                switch (op) {
-                    case HUE:
-                        hsb2[0] = hsb1[0];
-                        break;
-                    case SATURATION:
-                        hsb2[1] = hsb1[1];
-                        break;
-                    case VALUE:
-                        hsb2[2] = hsb1[2];
-                        break;
-                    case COLOR:
-                        hsb2[0] = hsb1[0];
-                        hsb2[1] = hsb1[1];
-                        break;
-                }
-                rgb1 = Color.HSBtoRGB(hsb2[0], hsb2[1], hsb2[2]);
+                float hue = (op == HUE || op == COLOR) ? hsbHue(r1, g1, b1) : hsbHue(r2, g2, b2);
+                float sat = (op == SATURATION || op == COLOR) ? hsbSaturation(r1, g1, b1) : hsbSaturation(r2, g2, b2);
+                float bri = (op == VALUE) ? hsbBrightness(r1, g1, b1) : hsbBrightness(r2, g2, b2);
+                rgb1 = Color.HSBtoRGB(hue, sat, bri);
                 r1 = (rgb1 >> 16) & 0xff;
                 g1 = (rgb1 >> 8) & 0xff;
                 b1 = rgb1 & 0xff;
@@ -24,13 +24,11 @@ public class PlasmaFilter extends WholeImageFilter {
     public float turbulence = 1.0f;
     private float scaling = 0.0f;
     private Colormap colormap = new LinearColormap();
-    private final Random randomGenerator;
     private long seed = 567;
     private boolean useColormap = false;
     private boolean useImageColors = false;
 
     public PlasmaFilter() {
-        randomGenerator = new Random();
     }
 
     /**
@@ -111,7 +109,7 @@ public class PlasmaFilter extends WholeImageFilter {
         seed = new Date().getTime();
     }
 
-    private int randomRGB(int[] inPixels, int x, int y) {
+    private int randomRGB(Random randomGenerator, int[] inPixels, int x, int y) {
         if (useImageColors) {
             return inPixels[y * originalSpace.width + x];
         } else {
@@ -122,7 +120,7 @@ public class PlasmaFilter extends WholeImageFilter {
         }
     }
 
-    private int displace(int rgb, float amount) {
+    private int displace(Random randomGenerator, int rgb, float amount) {
         int r = (rgb >> 16) & 0xff;
         int g = (rgb >> 8) & 0xff;
         int b = rgb & 0xff;
@@ -144,7 +142,7 @@ public class PlasmaFilter extends WholeImageFilter {
         pixels[y * stride + x] = rgb;
     }
 
-    private boolean doPixel(int x1, int y1, int x2, int y2, int[] pixels, int stride, int depth, int scale) {
+    private boolean doPixel(Random randomGenerator, int x1, int y1, int x2, int y2, int[] pixels, int stride, int depth, int scale) {
         int mx, my;
 
         if (depth == 0) {
@@ -166,12 +164,12 @@ public class PlasmaFilter extends WholeImageFilter {
 
             if (mx != x1 || mx != x2) {
                 ml = average(tl, bl);
-                ml = displace(ml, amount);
+                ml = displace(randomGenerator, ml, amount);
                 putPixel(x1, my, ml, pixels, stride);
 
                 if (x1 != x2) {
                     mr = average(tr, br);
-                    mr = displace(mr, amount);
+                    mr = displace(randomGenerator, mr, amount);
                     putPixel(x2, my, mr, pixels, stride);
                 }
             }
@@ -179,13 +177,13 @@ public class PlasmaFilter extends WholeImageFilter {
             if (my != y1 || my != y2) {
                 if (x1 != mx || my != y2) {
                     mb = average(bl, br);
-                    mb = displace(mb, amount);
+                    mb = displace(randomGenerator, mb, amount);
                     putPixel(mx, y2, mb, pixels, stride);
                 }
 
                 if (y1 != y2) {
                     mt = average(tl, tr);
-                    mt = displace(mt, amount);
+                    mt = displace(randomGenerator, mt, amount);
                     putPixel(mx, y1, mt, pixels, stride);
                 }
             }
@@ -194,7 +192,7 @@ public class PlasmaFilter extends WholeImageFilter {
                 mm = average(tl, br);
                 t = average(bl, tr);
                 mm = average(mm, t);
-                mm = displace(mm, amount);
+                mm = displace(randomGenerator, mm, amount);
                 putPixel(mx, my, mm, pixels, stride);
             }
 
@@ -204,31 +202,32 @@ public class PlasmaFilter extends WholeImageFilter {
         mx = (x1 + x2) / 2;
         my = (y1 + y2) / 2;
 
-        doPixel(x1, y1, mx, my, pixels, stride, depth - 1, scale + 1);
-        doPixel(x1, my, mx, y2, pixels, stride, depth - 1, scale + 1);
-        doPixel(mx, y1, x2, my, pixels, stride, depth - 1, scale + 1);
-        return doPixel(mx, my, x2, y2, pixels, stride, depth - 1, scale + 1);
+        doPixel(randomGenerator, x1, y1, mx, my, pixels, stride, depth - 1, scale + 1);
+        doPixel(randomGenerator, x1, my, mx, y2, pixels, stride, depth - 1, scale + 1);
+        doPixel(randomGenerator, mx, y1, x2, my, pixels, stride, depth - 1, scale + 1);
+        return doPixel(randomGenerator, mx, my, x2, y2, pixels, stride, depth - 1, scale + 1);
     }
 
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
         int[] outPixels = new int[width * height];
 
-        randomGenerator.setSeed(seed);
+        // A generator for each call, the filter holds no state while rendering
+        Random randomGenerator = new Random(seed);
 
         int w1 = width - 1;
         int h1 = height - 1;
-        putPixel(0, 0, randomRGB(inPixels, 0, 0), outPixels, width);
-        putPixel(w1, 0, randomRGB(inPixels, w1, 0), outPixels, width);
-        putPixel(0, h1, randomRGB(inPixels, 0, h1), outPixels, width);
-        putPixel(w1, h1, randomRGB(inPixels, w1, h1), outPixels, width);
-        putPixel(w1 / 2, h1 / 2, randomRGB(inPixels, w1 / 2, h1 / 2), outPixels, width);
-        putPixel(0, h1 / 2, randomRGB(inPixels, 0, h1 / 2), outPixels, width);
-        putPixel(w1, h1 / 2, randomRGB(inPixels, w1, h1 / 2), outPixels, width);
-        putPixel(w1 / 2, 0, randomRGB(inPixels, w1 / 2, 0), outPixels, width);
-        putPixel(w1 / 2, h1, randomRGB(inPixels, w1 / 2, h1), outPixels, width);
+        putPixel(0, 0, randomRGB(randomGenerator, inPixels, 0, 0), outPixels, width);
+        putPixel(w1, 0, randomRGB(randomGenerator, inPixels, w1, 0), outPixels, width);
+        putPixel(0, h1, randomRGB(randomGenerator, inPixels, 0, h1), outPixels, width);
+        putPixel(w1, h1, randomRGB(randomGenerator, inPixels, w1, h1), outPixels, width);
+        putPixel(w1 / 2, h1 / 2, randomRGB(randomGenerator, inPixels, w1 / 2, h1 / 2), outPixels, width);
+        putPixel(0, h1 / 2, randomRGB(randomGenerator, inPixels, 0, h1 / 2), outPixels, width);
+        putPixel(w1, h1 / 2, randomRGB(randomGenerator, inPixels, w1, h1 / 2), outPixels, width);
+        putPixel(w1 / 2, 0, randomRGB(randomGenerator, inPixels, w1 / 2, 0), outPixels, width);
+        putPixel(w1 / 2, h1, randomRGB(randomGenerator, inPixels, w1 / 2, h1), outPixels, width);
 
         int depth = 1;
-        while (doPixel(0, 0, width - 1, height - 1, outPixels, width, depth, 0)) {
+        while (doPixel(randomGenerator, 0, 0, width - 1, height - 1, outPixels, width, depth, 0)) {
             depth++;
         }
 
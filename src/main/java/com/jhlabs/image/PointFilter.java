@@ -64,7 +64,7 @@ public abstract class PointFilter extends AbstractBufferedImageOp {
         if (dst == null) {
             dst = createCompatibleDestImage(src);
         }
-        int threshold = Math.max(ThreadUtils.THRESHOLD, (width * height) / (ThreadUtils.getAvailableProcessors() * 10));
+        int threshold = ThreadUtils.getThreshold(width, height);
         ThreadUtils.forkJoin(new PointAction(0, height, src, dst, rgbType, threshold));
         return dst;
     }
@@ -91,7 +91,7 @@ public abstract class PointFilter extends AbstractBufferedImageOp {
         public void compute() {
             int width = src.getWidth();
             int t = (end - start) * width;
-            if (t < threshold) {
+            if (t < threshold || end - start <= 1) {
                 int[] pixels = new int[width];
 
                 for (int y = start; y < end; y++) {
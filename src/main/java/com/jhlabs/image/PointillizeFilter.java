@@ -67,6 +67,7 @@ public class PointillizeFilter extends CellularFilter {
         nx += 1000;
         ny += 1000;    // Reduce artifacts around 0,0
         float f = evaluate(nx, ny);
+        Point[] results = getResults();
 
         float f1 = results[0].distance;
         int srcx = ImageMath.clamp((int) ((results[0].x - 1000) * scale), 0, width - 1);
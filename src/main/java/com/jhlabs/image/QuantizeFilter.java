@@ -15,20 +15,32 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
+import com.jhlabs.utils.ThreadUtils;
+
 import java.awt.*;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A filter which quantizes an image to a set number of colors - useful for
  * producing images which are to be encoded using an index color model. The
- * filter can perform Floyd-Steinberg error-diffusion dithering if required. At
- * present, the quantization is done using an octtree algorithm but I eventually
- * hope to add more quantization methods such as median cut. Note: at present,
- * the filter produces an image which uses the RGB color model (because the
- * application it was written for required it). I hope to extend it to produce
- * an IndexColorModel by request.
+ * filter can perform Floyd-Steinberg error-diffusion dithering or an ordered
+ * dither if required. The quantization is done using an octtree algorithm or
+ * median cut (see setMethod). Note: at present, the filter produces an image
+ * which uses the RGB color model (because the application it was written for
+ * required it). I hope to extend it to produce an IndexColorModel by request.
  */
 public class QuantizeFilter extends WholeImageFilter {
 
+    /**
+     * Quantize with an OctTreeQuantizer.
+     */
+    public final static int OCTTREE = 0;
+
+    /**
+     * Quantize with a MedianCutQuantizer.
+     */
+    public final static int MEDIAN_CUT = 1;
+
     /**
      * Floyd-Steinberg dithering matrix.
      */
@@ -41,6 +53,8 @@ public class QuantizeFilter extends WholeImageFilter {
     private boolean dither;
     private int numColors = 256;
     private boolean serpentine = true;
+    private int method = OCTTREE;
+    private boolean ordered;
 
     /**
      * Set the number of colors to quantize to.
@@ -97,76 +111,154 @@ public class QuantizeFilter extends WholeImageFilter {
         return serpentine;
     }
 
+    /**
+     * Set whether to dither with an ordered pattern rather than by error
+     * diffusion. Each pixel is then dithered on its own, so the whole image
+     * can be dithered in parallel, but the pattern shows more.
+     *
+     * @param ordered true to use an ordered dither
+     * @see #getOrdered
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Get whether to dither with an ordered pattern.
+     *
+     * @return true to use an ordered dither
+     * @see #setOrdered
+     */
+    public boolean getOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Set the method used to choose the colors.
+     *
+     * @param method the method, OCTTREE or MEDIAN_CUT
+     * @see #getMethod
+     */
+    public void setMethod(int method) {
+        this.method = method;
+    }
+
+    /**
+     * Get the method used to choose the colors.
+     *
+     * @return the method
+     * @see #setMethod
+     */
+    public int getMethod() {
+        return method;
+    }
+
     public void quantize(int[] inPixels, int[] outPixels, int width, int height, int numColors, boolean dither, boolean serpentine) {
         int count = width * height;
-        Quantizer quantizer = new OctTreeQuantizer();
+        if (dither && ordered) {
+            // Offset the pixels by a pattern as wide as the gaps between the
+            // colors before choosing them, so that the quantizer knows every
+            // color it is asked for
+            int spread = (int) (255 / Math.max(1, Math.cbrt(numColors) - 1));
+            // Despite its name, this is a 16x16 matrix of 256 entries
+            int[] pattern = DitherFilter.ditherOrdered8x8Matrix;
+            int[] offsets = new int[pattern.length];
+            for (int i = 0; i < pattern.length; i++) {
+                offsets[i] = (2 * pattern[i] - 255) * spread / 512;
+            }
+            ThreadUtils.forkJoin(new OrderAction(0, height, inPixels, width, offsets, ThreadUtils.getThreshold(width, height)));
+        }
+
+        Quantizer quantizer = method == MEDIAN_CUT ? new MedianCutQuantizer() : new OctTreeQuantizer();
         quantizer.setup(numColors);
         quantizer.addPixels(inPixels, 0, count);
         int[] table = quantizer.buildColorTable();
 
-        if (!dither) {
-            for (int i = 0; i < count; i++) {
-                outPixels[i] = table[quantizer.getIndexForColor(inPixels[i])];
-            }
+        if (!dither || ordered) {
+            ThreadUtils.forkJoin(new MapAction(0, height, inPixels, outPixels, width, quantizer, table, ThreadUtils.getThreshold(width, height)));
         } else {
-            int index = 0;
-            for (int y = 0; y < height; y++) {
-                boolean reverse = serpentine && (y & 1) == 1;
-                int direction;
-                if (reverse) {
-                    index = y * width + width - 1;
-                    direction = -1;
-                } else {
-                    index = y * width;
-                    direction = 1;
+            ErrorDiffusion diffusion = new ErrorDiffusion(matrix, sum) {
+                @Override
+                protected int quantize(int rgb) {
+                    return table[quantizer.getIndexForColor(rgb)];
                 }
-                for (int x = 0; x < width; x++) {
-                    int rgb1 = inPixels[index];
-                    int rgb2 = table[quantizer.getIndexForColor(rgb1)];
-
-                    outPixels[index] = rgb2;
-
-                    int r1 = (rgb1 >> 16) & 0xff;
-                    int g1 = (rgb1 >> 8) & 0xff;
-                    int b1 = rgb1 & 0xff;
-
-                    int r2 = (rgb2 >> 16) & 0xff;
-                    int g2 = (rgb2 >> 8) & 0xff;
-                    int b2 = rgb2 & 0xff;
-
-                    int er = r1 - r2;
-                    int eg = g1 - g2;
-                    int eb = b1 - b2;
-
-                    for (int i = -1; i <= 1; i++) {
-                        int iy = i + y;
-                        if (0 <= iy && iy < height) {
-                            for (int j = -1; j <= 1; j++) {
-                                int jx = j + x;
-                                if (0 <= jx && jx < width) {
-                                    int w;
-                                    if (reverse) {
-                                        w = matrix[(i + 1) * 3 - j + 1];
-                                    } else {
-                                        w = matrix[(i + 1) * 3 + j + 1];
-                                    }
-                                    if (w != 0) {
-                                        int k = reverse ? index - j : index + j;
-                                        rgb1 = inPixels[k];
-                                        r1 = (rgb1 >> 16) & 0xff;
-                                        g1 = (rgb1 >> 8) & 0xff;
-                                        b1 = rgb1 & 0xff;
-                                        r1 += er * w / sum;
-                                        g1 += eg * w / sum;
-                                        b1 += eb * w / sum;
-                                        inPixels[k] = (PixelUtils.clamp(r1) << 16) | (PixelUtils.clamp(g1) << 8) | PixelUtils.clamp(b1);
-                                    }
-                                }
-                            }
-                        }
+            };
+            diffusion.diffuse(inPixels, outPixels, width, height, serpentine);
+        }
+    }
+
+    private static class OrderAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int[] pixels;
+        private final int width;
+        private final int[] offsets;
+        private final int threshold;
+
+        private OrderAction(int start, int end, int[] pixels, int width, int[] offsets, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.pixels = pixels;
+            this.width = width;
+            this.offsets = offsets;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) * width < threshold || end - start <= 1) {
+                for (int y = start; y < end; y++) {
+                    int index = y * width;
+                    for (int x = 0; x < width; x++, index++) {
+                        int rgb = pixels[index];
+                        int offset = offsets[((y & 15) << 4) | (x & 15)];
+                        int r = PixelUtils.clamp(((rgb >> 16) & 0xff) + offset);
+                        int g = PixelUtils.clamp(((rgb >> 8) & 0xff) + offset);
+                        int b = PixelUtils.clamp((rgb & 0xff) + offset);
+                        pixels[index] = (rgb & 0xff000000) | (r << 16) | (g << 8) | b;
                     }
-                    index += direction;
                 }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new OrderAction(start, start + split, pixels, width, offsets, threshold),
+                        new OrderAction(start + split, end, pixels, width, offsets, threshold));
+            }
+        }
+    }
+
+    private static class MapAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int[] inPixels;
+        private final int[] outPixels;
+        private final int width;
+        private final Quantizer quantizer;
+        private final int[] table;
+        private final int threshold;
+
+        private MapAction(int start, int end, int[] inPixels, int[] outPixels, int width, Quantizer quantizer, int[] table, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.width = width;
+            this.quantizer = quantizer;
+            this.table = table;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if ((end - start) * width < threshold || end - start <= 1) {
+                for (int i = start * width; i < end * width; i++) {
+                    outPixels[i] = table[quantizer.getIndexForColor(inPixels[i])];
+                }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new MapAction(start, start + split, inPixels, outPixels, width, quantizer, table, threshold),
+                        new MapAction(start + split, end, inPixels, outPixels, width, quantizer, table, threshold));
             }
         }
     }
@@ -15,7 +15,7 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
-public class RGBAdjustFilter extends PointFilter {
+public class RGBAdjustFilter extends PointFilter implements ChannelLookup {
 
     public float rFactor, gFactor, bFactor;
 
@@ -62,6 +62,11 @@ public class RGBAdjustFilter extends PointFilter {
         return lut;
     }
 
+    @Override
+    public int[][] getChannelTables() {
+        return ChannelLookupFilter.sampleTables(this);
+    }
+
     public int filterRGB(int x, int y, int rgb) {
         int a = rgb & 0xff000000;
         int r = (rgb >> 16) & 0xff;
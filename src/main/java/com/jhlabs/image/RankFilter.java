@@ -0,0 +1,329 @@
+/*
+Copyright 2006 Jerry Huxtable
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.utils.ThreadUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A filter which replaces each channel of each pixel by a given rank of the
+ * values in its square neighbourhood: the minimum, the median, the maximum or
+ * any percentile in between. The edges of the image are extended.
+ * <p>
+ * The filter keeps a histogram of each image column, and slides a two-level
+ * kernel histogram along each row (Perreault and H&eacute;bert, "Median
+ * Filtering in Constant Time"), so that the time taken per pixel does not
+ * depend on the radius.
+ */
+public class RankFilter extends AbstractBufferedImageOp {
+
+    /**
+     * The rank of the minimum.
+     */
+    public final static float MINIMUM = 0;
+
+    /**
+     * The rank of the median.
+     */
+    public final static float MEDIAN = 0.5f;
+
+    /**
+     * The rank of the maximum.
+     */
+    public final static float MAXIMUM = 1;
+
+    private int radius;
+    private float rank;
+
+    /**
+     * Construct a median RankFilter with a radius of 2.
+     */
+    public RankFilter() {
+        this(2, MEDIAN);
+    }
+
+    /**
+     * Construct a RankFilter.
+     *
+     * @param radius the radius of the neighbourhood
+     * @param rank the rank, from 0 (minimum) to 1 (maximum)
+     */
+    public RankFilter(int radius, float rank) {
+        this.radius = radius;
+        this.rank = rank;
+    }
+
+    /**
+     * Set the radius of the neighbourhood, which is a square of 2*radius+1
+     * pixels on each side.
+     *
+     * @param radius the radius
+     * @min-value 0
+     * @see #getRadius
+     */
+    public void setRadius(int radius) {
+        this.radius = radius;
+    }
+
+    /**
+     * Get the radius of the neighbourhood.
+     *
+     * @return the radius
+     * @see #setRadius
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Set the rank of the selected value in the neighbourhood: 0 selects the
+     * minimum, 0.5 the median and 1 the maximum.
+     *
+     * @param rank the rank
+     * @min-value 0
+     * @max-value 1
+     * @see #getRank
+     */
+    public void setRank(float rank) {
+        this.rank = rank;
+    }
+
+    /**
+     * Get the rank of the selected value in the neighbourhood.
+     *
+     * @return the rank
+     * @see #setRank
+     */
+    public float getRank() {
+        return rank;
+    }
+
+    @Override
+    public boolean isGraySupported() {
+        return true;
+    }
+
+    @Override
+    public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int size = width * height;
+        int[] inPixels = getRGB(src, 0, 0, width, height, null);
+
+        byte[][] planes = new byte[3][size];
+        for (int i = 0; i < size; i++) {
+            int rgb = inPixels[i];
+            planes[0][i] = (byte) (rgb >> 16);
+            planes[1][i] = (byte) (rgb >> 8);
+            planes[2][i] = (byte) rgb;
+        }
+
+        for (int c = 0; c < 3; c++) {
+            planes[c] = filterPlane(planes[c], width, height);
+        }
+
+        byte[] r = planes[0], g = planes[1], b = planes[2];
+        for (int i = 0; i < size; i++) {
+            inPixels[i] = (inPixels[i] & 0xff000000) | ((r[i] & 0xff) << 16) | ((g[i] & 0xff) << 8) | (b[i] & 0xff);
+        }
+
+        if (dst == null) {
+            dst = createCompatibleDestImage(src);
+        }
+        setRGB(dst, 0, 0, width, height, inPixels);
+        return dst;
+    }
+
+    @Override
+    public BufferedImage filterGRAY8(BufferedImage src, BufferedImage dst) {
+        if (getImageType(src) != GRAY8_TYPE) {
+            return filterRGB32(src, dst);
+        }
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+        byte[] outPixels = filterPlane(getGRAY(src, 0, 0, width, height, null), width, height);
+
+        if (dst == null) {
+            dst = createCompatibleDestImage(src);
+        }
+        setGRAY(dst, 0, 0, width, height, outPixels);
+        return dst;
+    }
+
+    private byte[] filterPlane(byte[] inPixels, int width, int height) {
+        int r = Math.max(radius, 0);
+        int diameter = 2 * r + 1;
+        int index = Math.round(ImageMath.clamp(rank, 0, 1) * (diameter * diameter - 1));
+
+        // Clamped coordinates, offset by r+1 so that indices from -r-1 to size+r are valid
+        int[] xOffsets = clampedOffsets(width, r, 1);
+        int[] yOffsets = clampedOffsets(height, r, width);
+
+        byte[] outPixels = new byte[width * height];
+        int threshold = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new RankAction(0, height, inPixels, outPixels, width, r, index, xOffsets, yOffsets, threshold));
+        return outPixels;
+    }
+
+    private static int[] clampedOffsets(int size, int r, int scale) {
+        int[] offsets = new int[size + 2 * r + 2];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = ImageMath.clamp(i - r - 1, 0, size - 1) * scale;
+        }
+        return offsets;
+    }
+
+    private static class RankAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final byte[] inPixels;
+        private final byte[] outPixels;
+        private final int width;
+        private final int radius;
+        private final int index;
+        private final int[] xOffsets;
+        private final int[] yOffsets;
+        private final int threshold;
+
+        private RankAction(int start, int end, byte[] inPixels, byte[] outPixels, int width, int radius, int index, int[] xOffsets, int[] yOffsets, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.width = width;
+            this.radius = radius;
+            this.index = index;
+            this.xOffsets = xOffsets;
+            this.yOffsets = yOffsets;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * width;
+            // Each band first builds its column histograms from 2*radius+1 rows
+            if (t < threshold || end - start < 4 * (2 * radius + 1)) {
+                filterRows();
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new RankAction(start, start + split, inPixels, outPixels, width, radius, index, xOffsets, yOffsets, threshold),
+                        new RankAction(start + split, end, inPixels, outPixels, width, radius, index, xOffsets, yOffsets, threshold));
+            }
+        }
+
+        private void filterRows() {
+            int r = radius;
+            int diameter = 2 * r + 1;
+            int o = r + 1;
+
+            // The histograms of the columns, over the rows y-r to y+r
+            short[] columnFine = new short[width * 256];
+            short[] columnCoarse = new short[width * 16];
+            // The histogram of the kernel, the fine level being updated lazily
+            int[] kernelFine = new int[256];
+            int[] kernelCoarse = new int[16];
+            int[] updated = new int[16];
+
+            for (int dy = -r; dy <= r; dy++) {
+                int offset = yOffsets[start + dy + o];
+                for (int x = 0; x < width; x++) {
+                    int v = inPixels[offset + x] & 0xff;
+                    columnFine[(x << 8) + v]++;
+                    columnCoarse[(x << 4) + (v >> 4)]++;
+                }
+            }
+
+            for (int y = start; y < end; y++) {
+                if (y > start) {
+                    int removed = yOffsets[y - r - 1 + o];
+                    int added = yOffsets[y + r + o];
+                    for (int x = 0; x < width; x++) {
+                        int v = inPixels[removed + x] & 0xff;
+                        columnFine[(x << 8) + v]--;
+                        columnCoarse[(x << 4) + (v >> 4)]--;
+                        v = inPixels[added + x] & 0xff;
+                        columnFine[(x << 8) + v]++;
+                        columnCoarse[(x << 4) + (v >> 4)]++;
+                    }
+                }
+
+                Arrays.fill(kernelCoarse, 0);
+                Arrays.fill(updated, -1);
+                for (int dx = -r; dx <= r; dx++) {
+                    int column = xOffsets[dx + o] << 4;
+                    for (int k = 0; k < 16; k++) {
+                        kernelCoarse[k] += columnCoarse[column + k];
+                    }
+                }
+
+                int outIndex = y * width;
+                for (int x = 0; x < width; x++) {
+                    if (x > 0) {
+                        int added = xOffsets[x + r + o] << 4;
+                        int removed = xOffsets[x - r - 1 + o] << 4;
+                        for (int k = 0; k < 16; k++) {
+                            kernelCoarse[k] += columnCoarse[added + k] - columnCoarse[removed + k];
+                        }
+                    }
+
+                    int sum = 0;
+                    int k = 0;
+                    while (sum + kernelCoarse[k] <= index) {
+                        sum += kernelCoarse[k++];
+                    }
+
+                    // Bring the fine bins of the selected coarse bin up to date
+                    int base = k << 4;
+                    int last = updated[k];
+                    if (last < 0 || x - last > diameter) {
+                        Arrays.fill(kernelFine, base, base + 16, 0);
+                        for (int dx = -r; dx <= r; dx++) {
+                            int column = (xOffsets[x + dx + o] << 8) + base;
+                            for (int i = 0; i < 16; i++) {
+                                kernelFine[base + i] += columnFine[column + i];
+                            }
+                        }
+                    } else {
+                        for (int c = last + 1; c <= x; c++) {
+                            int added = (xOffsets[c + r + o] << 8) + base;
+                            int removed = (xOffsets[c - r - 1 + o] << 8) + base;
+                            for (int i = 0; i < 16; i++) {
+                                kernelFine[base + i] += columnFine[added + i] - columnFine[removed + i];
+                            }
+                        }
+                    }
+                    updated[k] = x;
+
+                    int v = base;
+                    while (sum + kernelFine[v] <= index) {
+                        sum += kernelFine[v++];
+                    }
+                    outPixels[outIndex + x] = (byte) v;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Blur/Rank...";
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ Copyright 2006 Jerry Huxtable
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.jhlabs.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * A view of the samples of an image in its own data buffer, so that they can
+ * be read and written without copying them. Packed int images have one int
+ * per pixel and interleaved byte images have one byte per band. The sample of
+ * band b of the pixel at (x, y) is at getIndex(x, y) + getBandOffsets()[b], and
+ * the view of a sub-image indexes the buffer of its parent.
+ * <p>
+ * The array of the buffer is only taken by getIntData and getByteData. From
+ * then on, Java2D no longer manages the image, so drawing it is no longer
+ * accelerated.
+ */
+public class RasterView {
+
+    private final DataBuffer buffer;
+    private final int width;
+    private final int height;
+    private final int offset;
+    private final int scanlineStride;
+    private final int pixelStride;
+    private final int[] bandOffsets;
+
+    private RasterView(DataBuffer buffer, int width, int height, int offset, int scanlineStride, int pixelStride, int[] bandOffsets) {
+        this.buffer = buffer;
+        this.width = width;
+        this.height = height;
+        this.offset = offset;
+        this.scanlineStride = scanlineStride;
+        this.pixelStride = pixelStride;
+        this.bandOffsets = bandOffsets;
+    }
+
+    /**
+     * Get the view of an image.
+     *
+     * @param image the image
+     * @return the view, or null if the image is neither packed ints nor
+     * interleaved bytes
+     */
+    public static RasterView of(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        // The buffer index of the pixel at the raster origin
+        int x0 = raster.getMinX() - raster.getSampleModelTranslateX();
+        int y0 = raster.getMinY() - raster.getSampleModelTranslateY();
+
+        if (raster.getDataBuffer() instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel) {
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            int scanlineStride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+            return new RasterView(buffer, image.getWidth(), image.getHeight(),
+                    buffer.getOffset() + y0 * scanlineStride + x0, scanlineStride, 1, new int[]{0});
+        }
+        if (raster.getDataBuffer() instanceof DataBufferByte && sampleModel instanceof PixelInterleavedSampleModel) {
+            DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+            PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) sampleModel;
+            int scanlineStride = interleaved.getScanlineStride();
+            int pixelStride = interleaved.getPixelStride();
+            return new RasterView(buffer, image.getWidth(), image.getHeight(),
+                    buffer.getOffset() + y0 * scanlineStride + x0 * pixelStride, scanlineStride, pixelStride, interleaved.getBandOffsets());
+        }
+        return null;
+    }
+
+    /**
+     * Get whether the image is packed ints, rather than interleaved bytes.
+     *
+     * @return true for packed ints
+     */
+    public boolean isInt() {
+        return buffer instanceof DataBufferInt;
+    }
+
+    public int[] getIntData() {
+        return ((DataBufferInt) buffer).getData();
+    }
+
+    public byte[] getByteData() {
+        return ((DataBufferByte) buffer).getData();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the index of the pixel at (0, 0).
+     *
+     * @return the index
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getScanlineStride() {
+        return scanlineStride;
+    }
+
+    public int getPixelStride() {
+        return pixelStride;
+    }
+
+    public int getBands() {
+        return bandOffsets.length;
+    }
+
+    public int[] getBandOffsets() {
+        return bandOffsets.clone();
+    }
+
+    /**
+     * Get the index of a pixel in the data.
+     *
+     * @param x the X position of the pixel
+     * @param y the Y position of the pixel
+     * @return the index
+     */
+    public int getIndex(int x, int y) {
+        return offset + y * scanlineStride + x * pixelStride;
+    }
+
+    /**
+     * Get whether the bands of each pixel are in order, with nothing between
+     * the pixels or between the rows.
+     *
+     * @return true if the samples of the image are contiguous
+     */
+    public boolean isContiguous() {
+        if (pixelStride != bandOffsets.length || scanlineStride != width * pixelStride) {
+            return false;
+        }
+        for (int b = 0; b < bandOffsets.length; b++) {
+            if (bandOffsets[b] != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get whether the buffer holds exactly the samples of the image, in the
+     * layout the filters use for whole image arrays.
+     *
+     * @return true if the data can be used as the array of the image
+     */
+    public boolean isExact() {
+        return offset == 0 && isContiguous() && buffer.getSize() == width * height * pixelStride;
+    }
+}
@@ -15,14 +15,12 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
-import java.awt.*;
-
 /**
  * A filter which performs reduces noise by looking at each pixel's 8
  * neighbours, and if it's a minimum or maximum, replacing it by the next
  * minimum or maximum of the neighbours.
  */
-public class ReduceNoiseFilter extends WholeImageFilter {
+public class ReduceNoiseFilter extends NeighbourhoodFilter {
 
     public ReduceNoiseFilter() {
     }
@@ -51,52 +49,78 @@ public class ReduceNoiseFilter extends WholeImageFilter {
         return v[4];
     }
 
-    protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int index = 0;
+    @Override
+    protected int filterEdgePixel(int[] inPixels, int width, int height, int x, int y) {
         int[] r = new int[9];
         int[] g = new int[9];
         int[] b = new int[9];
-        int[] outPixels = new int[width * height];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int k = 0;
-                int irgb = inPixels[index];
-                int ir = (irgb >> 16) & 0xff;
-                int ig = (irgb >> 8) & 0xff;
-                int ib = irgb & 0xff;
-                for (int dy = -1; dy <= 1; dy++) {
-                    int iy = y + dy;
-                    if (0 <= iy && iy < height) {
-                        int ioffset = iy * width;
-                        for (int dx = -1; dx <= 1; dx++) {
-                            int ix = x + dx;
-                            if (0 <= ix && ix < width) {
-                                int rgb = inPixels[ioffset + ix];
-                                r[k] = (rgb >> 16) & 0xff;
-                                g[k] = (rgb >> 8) & 0xff;
-                                b[k] = rgb & 0xff;
-                            } else {
-                                r[k] = ir;
-                                g[k] = ig;
-                                b[k] = ib;
-                            }
-                            k++;
-                        }
+        int k = 0;
+        int irgb = inPixels[y * width + x];
+        int ir = (irgb >> 16) & 0xff;
+        int ig = (irgb >> 8) & 0xff;
+        int ib = irgb & 0xff;
+        for (int dy = -1; dy <= 1; dy++) {
+            int iy = y + dy;
+            if (0 <= iy && iy < height) {
+                int ioffset = iy * width;
+                for (int dx = -1; dx <= 1; dx++) {
+                    int ix = x + dx;
+                    if (0 <= ix && ix < width) {
+                        int rgb = inPixels[ioffset + ix];
+                        r[k] = (rgb >> 16) & 0xff;
+                        g[k] = (rgb >> 8) & 0xff;
+                        b[k] = rgb & 0xff;
                     } else {
-                        for (int dx = -1; dx <= 1; dx++) {
-                            r[k] = ir;
-                            g[k] = ig;
-                            b[k] = ib;
-                            k++;
-                        }
+                        r[k] = ir;
+                        g[k] = ig;
+                        b[k] = ib;
                     }
+                    k++;
+                }
+            } else {
+                for (int dx = -1; dx <= 1; dx++) {
+                    r[k] = ir;
+                    g[k] = ig;
+                    b[k] = ib;
+                    k++;
                 }
-                outPixels[index] = (inPixels[index] & 0xff000000) | (smooth(r) << 16) | (smooth(g) << 8) | smooth(b);
+            }
+        }
+        return (irgb & 0xff000000) | (smooth(r) << 16) | (smooth(g) << 8) | smooth(b);
+    }
+
+    // Clamp the channel between the minimum and maximum of its eight neighbours
+    private static int smooth(int c, int n, int s, int w, int e, int nw, int ne, int sw, int se, int shift) {
+        int v1 = (n >> shift) & 0xff, v2 = (s >> shift) & 0xff;
+        int v3 = (w >> shift) & 0xff, v4 = (e >> shift) & 0xff;
+        int v5 = (nw >> shift) & 0xff, v6 = (ne >> shift) & 0xff;
+        int v7 = (sw >> shift) & 0xff, v8 = (se >> shift) & 0xff;
+        int min = Math.min(Math.min(Math.min(v1, v2), Math.min(v3, v4)), Math.min(Math.min(v5, v6), Math.min(v7, v8)));
+        int max = Math.max(Math.max(Math.max(v1, v2), Math.max(v3, v4)), Math.max(Math.max(v5, v6), Math.max(v7, v8)));
+        return Math.min(Math.max((c >> shift) & 0xff, min), max);
+    }
+
+    @Override
+    protected void filterInterior(int[] inPixels, int[] outPixels, int width, int height) {
+        for (int y = 1; y < height - 1; y++) {
+            int index = y * width + 1;
+            for (int x = 1; x < width - 1; x++) {
+                int rgb = inPixels[index];
+                int n = inPixels[index - width];
+                int s = inPixels[index + width];
+                int w = inPixels[index - 1];
+                int e = inPixels[index + 1];
+                int nw = inPixels[index - width - 1];
+                int ne = inPixels[index - width + 1];
+                int sw = inPixels[index + width - 1];
+                int se = inPixels[index + width + 1];
+                outPixels[index] = (rgb & 0xff000000)
+                        | (smooth(rgb, n, s, w, e, nw, ne, sw, se, 16) << 16)
+                        | (smooth(rgb, n, s, w, e, nw, ne, sw, se, 8) << 8)
+                        | smooth(rgb, n, s, w, e, nw, ne, sw, se, 0);
                 index++;
             }
         }
-        return outPixels;
     }
 
     public String toString() {
@@ -0,0 +1,417 @@
+/*
+Copyright 2006 Jerry Huxtable
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.jhlabs.image;
+
+import com.jhlabs.utils.ThreadUtils;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A separable resampler, which scales an image in two passes: first along the
+ * rows, then along the columns. The filter weights of each destination column
+ * and row are computed once, in fixed point, and when shrinking the kernel is
+ * widened so that every source pixel contributes to the result.
+ * <p>
+ * Packed ARGB pixels and interleaved byte samples (gray, CMYK...) are
+ * supported. Both passes are split into bands of rows on the fork-join pool.
+ */
+public class Resampler {
+
+    /**
+     * A box kernel, which averages the source pixels covered by each
+     * destination pixel.
+     */
+    public final static int BOX = 0;
+
+    /**
+     * A triangle kernel, that is bilinear interpolation.
+     */
+    public final static int TRIANGLE = 1;
+
+    /**
+     * The Catmull-Rom cubic kernel.
+     */
+    public final static int CATMULL_ROM = 2;
+
+    /**
+     * The Mitchell-Netravali cubic kernel, with B = C = 1/3.
+     */
+    public final static int MITCHELL = 3;
+
+    /**
+     * The Lanczos kernel with three lobes.
+     */
+    public final static int LANCZOS3 = 4;
+
+    private final static int BITS = 14;
+    private final static int ONE = 1 << BITS;
+    private final static int HALF = 1 << (BITS - 1);
+
+    private final int kernel;
+
+    /**
+     * Construct a Resampler.
+     *
+     * @param kernel the kernel, one of BOX, TRIANGLE, CATMULL_ROM, MITCHELL or
+     * LANCZOS3
+     */
+    public Resampler(int kernel) {
+        this.kernel = kernel;
+    }
+
+    /**
+     * Get the kernel.
+     *
+     * @return the kernel
+     */
+    public int getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Get the support of a kernel, that is the distance beyond which it is
+     * zero.
+     *
+     * @param kernel the kernel
+     * @return the support, in pixels
+     */
+    public static float getSupport(int kernel) {
+        switch (kernel) {
+            case BOX:
+                return 0.5f;
+            case TRIANGLE:
+                return 1;
+            case CATMULL_ROM:
+            case MITCHELL:
+                return 2;
+            case LANCZOS3:
+                return 3;
+        }
+        throw new IllegalArgumentException("Unknown kernel: " + kernel);
+    }
+
+    /**
+     * Evaluate a kernel.
+     *
+     * @param kernel the kernel
+     * @param x the distance from the center
+     * @return the value of the kernel
+     */
+    public static double evaluate(int kernel, double x) {
+        x = Math.abs(x);
+        switch (kernel) {
+            case BOX:
+                return (x < 0.5) ? 1 : (x == 0.5) ? 0.5 : 0;
+            case TRIANGLE:
+                return (x < 1) ? 1 - x : 0;
+            case CATMULL_ROM:
+                return cubic(x, 0, 0.5);
+            case MITCHELL:
+                return cubic(x, 1 / 3.0, 1 / 3.0);
+            case LANCZOS3:
+                if (x < 1e-6) {
+                    return 1;
+                }
+                if (x >= 3) {
+                    return 0;
+                }
+                double px = Math.PI * x;
+                return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+        }
+        throw new IllegalArgumentException("Unknown kernel: " + kernel);
+    }
+
+    private static double cubic(double x, double b, double c) {
+        if (x < 1) {
+            return ((12 - 9 * b - 6 * c) * x * x * x + (-18 + 12 * b + 6 * c) * x * x + (6 - 2 * b)) / 6;
+        }
+        if (x < 2) {
+            return ((-b - 6 * c) * x * x * x + (6 * b + 30 * c) * x * x + (-12 * b - 48 * c) * x + (8 * b + 24 * c)) / 6;
+        }
+        return 0;
+    }
+
+    /**
+     * Resample packed ARGB pixels. The color channels should be premultiplied
+     * by the alpha if the image is transparent.
+     *
+     * @param inPixels the source pixels
+     * @param srcWidth the source width
+     * @param srcHeight the source height
+     * @param dstWidth the destination width
+     * @param dstHeight the destination height
+     * @return the destination pixels
+     */
+    public int[] resample(int[] inPixels, int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        Weights xWeights = new Weights(kernel, srcWidth, dstWidth);
+        Weights yWeights = new Weights(kernel, srcHeight, dstHeight);
+
+        int[] tmpPixels = new int[dstWidth * srcHeight];
+        int[] outPixels = new int[dstWidth * dstHeight];
+        ThreadUtils.forkJoin(new ResampleAction(0, srcHeight, inPixels, null, srcWidth, 1, tmpPixels, null, dstWidth, xWeights, true, ThreadUtils.getThreshold(dstWidth, srcHeight)));
+        ThreadUtils.forkJoin(new ResampleAction(0, dstHeight, tmpPixels, null, dstWidth, 1, outPixels, null, dstWidth, yWeights, false, ThreadUtils.getThreshold(dstWidth, dstHeight)));
+        return outPixels;
+    }
+
+    /**
+     * Resample interleaved byte samples.
+     *
+     * @param inPixels the source samples
+     * @param bands the number of samples per pixel
+     * @param srcWidth the source width
+     * @param srcHeight the source height
+     * @param dstWidth the destination width
+     * @param dstHeight the destination height
+     * @return the destination samples
+     */
+    public byte[] resample(byte[] inPixels, int bands, int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        Weights xWeights = new Weights(kernel, srcWidth, dstWidth);
+        Weights yWeights = new Weights(kernel, srcHeight, dstHeight);
+
+        byte[] tmpPixels = new byte[dstWidth * srcHeight * bands];
+        byte[] outPixels = new byte[dstWidth * dstHeight * bands];
+        ThreadUtils.forkJoin(new ResampleAction(0, srcHeight, null, inPixels, srcWidth, bands, null, tmpPixels, dstWidth, xWeights, true, ThreadUtils.getThreshold(dstWidth, srcHeight)));
+        ThreadUtils.forkJoin(new ResampleAction(0, dstHeight, null, tmpPixels, dstWidth, bands, null, outPixels, dstWidth, yWeights, false, ThreadUtils.getThreshold(dstWidth, dstHeight)));
+        return outPixels;
+    }
+
+    /**
+     * The fixed point weights of the source pixels contributing to each
+     * destination pixel along one axis.
+     */
+    private static class Weights {
+
+        // The first contributing source pixel of each destination pixel
+        private final int[] start;
+        // The number of contributing source pixels
+        private final int[] count;
+        // The weights, stride apart, summing to ONE
+        private final int[] weights;
+        private final int stride;
+
+        private Weights(int kernel, int srcSize, int dstSize) {
+            double scale = (double) srcSize / dstSize;
+            double filterScale = Math.max(scale, 1);
+            double support = getSupport(kernel) * filterScale;
+
+            stride = (int) Math.ceil(2 * support) + 2;
+            start = new int[dstSize];
+            count = new int[dstSize];
+            weights = new int[dstSize * stride];
+            double[] w = new double[stride];
+
+            for (int i = 0; i < dstSize; i++) {
+                double center = (i + 0.5) * scale;
+                int left = Math.max((int) Math.floor(center - support), 0);
+                int right = Math.min((int) Math.ceil(center + support), srcSize);
+                int n = Math.min(right - left, stride);
+
+                double sum = 0;
+                for (int j = 0; j < n; j++) {
+                    w[j] = evaluate(kernel, (left + j + 0.5 - center) / filterScale);
+                    sum += w[j];
+                }
+                if (sum == 0) {
+                    // The kernel falls between source pixels: use the nearest
+                    left = ImageMath.clamp((int) center, 0, srcSize - 1);
+                    n = 1;
+                    w[0] = sum = 1;
+                }
+
+                // Trim the zero weights at either end
+                int first = 0;
+                while (first < n - 1 && w[first] == 0) {
+                    first++;
+                }
+                while (n - 1 > first && w[n - 1] == 0) {
+                    n--;
+                }
+
+                int offset = i * stride;
+                int total = 0;
+                int largest = offset;
+                for (int j = first; j < n; j++) {
+                    int k = offset + j - first;
+                    weights[k] = (int) Math.round(w[j] / sum * ONE);
+                    total += weights[k];
+                    if (weights[k] > weights[largest]) {
+                        largest = k;
+                    }
+                }
+                // Make the weights sum exactly to one, so that flat areas stay flat
+                weights[largest] += ONE - total;
+                start[i] = left + first;
+                count[i] = n - first;
+            }
+        }
+    }
+
+    private static class ResampleAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final int[] inPixels;
+        private final byte[] inSamples;
+        private final int inWidth;
+        private final int bands;
+        private final int[] outPixels;
+        private final byte[] outSamples;
+        private final int outWidth;
+        private final Weights weights;
+        private final boolean horizontal;
+        private final int threshold;
+
+        private ResampleAction(int start, int end, int[] inPixels, byte[] inSamples, int inWidth, int bands, int[] outPixels, byte[] outSamples, int outWidth, Weights weights, boolean horizontal, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.inPixels = inPixels;
+            this.inSamples = inSamples;
+            this.inWidth = inWidth;
+            this.bands = bands;
+            this.outPixels = outPixels;
+            this.outSamples = outSamples;
+            this.outWidth = outWidth;
+            this.weights = weights;
+            this.horizontal = horizontal;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * outWidth;
+            if (t < threshold || end - start <= 1) {
+                if (inPixels != null) {
+                    if (horizontal) {
+                        resampleRowsARGB();
+                    } else {
+                        resampleColumnsARGB();
+                    }
+                } else {
+                    if (horizontal) {
+                        resampleRowsBytes();
+                    } else {
+                        resampleColumnsBytes();
+                    }
+                }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new ResampleAction(start, start + split, inPixels, inSamples, inWidth, bands, outPixels, outSamples, outWidth, weights, horizontal, threshold),
+                        new ResampleAction(start + split, end, inPixels, inSamples, inWidth, bands, outPixels, outSamples, outWidth, weights, horizontal, threshold));
+            }
+        }
+
+        private void resampleRowsARGB() {
+            int[] w = weights.weights;
+            int stride = weights.stride;
+            for (int y = start; y < end; y++) {
+                int inRow = y * inWidth;
+                int outIndex = y * outWidth;
+                for (int x = 0; x < outWidth; x++) {
+                    int a = HALF, r = HALF, g = HALF, b = HALF;
+                    int index = inRow + weights.start[x];
+                    int k = x * stride;
+                    for (int n = weights.count[x]; n > 0; n--) {
+                        int rgb = inPixels[index++];
+                        int f = w[k++];
+                        a += f * (rgb >>> 24);
+                        r += f * ((rgb >> 16) & 0xff);
+                        g += f * ((rgb >> 8) & 0xff);
+                        b += f * (rgb & 0xff);
+                    }
+                    outPixels[outIndex++] = pack(a, r, g, b);
+                }
+            }
+        }
+
+        private void resampleColumnsARGB() {
+            int[] w = weights.weights;
+            int stride = weights.stride;
+            for (int y = start; y < end; y++) {
+                int first = weights.start[y] * inWidth;
+                int count = weights.count[y];
+                int k0 = y * stride;
+                int outIndex = y * outWidth;
+                for (int x = 0; x < outWidth; x++) {
+                    int a = HALF, r = HALF, g = HALF, b = HALF;
+                    int index = first + x;
+                    for (int k = k0; k < k0 + count; k++) {
+                        int rgb = inPixels[index];
+                        int f = w[k];
+                        a += f * (rgb >>> 24);
+                        r += f * ((rgb >> 16) & 0xff);
+                        g += f * ((rgb >> 8) & 0xff);
+                        b += f * (rgb & 0xff);
+                        index += inWidth;
+                    }
+                    outPixels[outIndex++] = pack(a, r, g, b);
+                }
+            }
+        }
+
+        private void resampleRowsBytes() {
+            int[] w = weights.weights;
+            int stride = weights.stride;
+            for (int y = start; y < end; y++) {
+                int inRow = y * inWidth * bands;
+                int outIndex = y * outWidth * bands;
+                for (int x = 0; x < outWidth; x++) {
+                    int first = inRow + weights.start[x] * bands;
+                    int count = weights.count[x];
+                    int k0 = x * stride;
+                    for (int band = 0; band < bands; band++) {
+                        int sum = HALF;
+                        int index = first + band;
+                        for (int k = k0; k < k0 + count; k++) {
+                            sum += w[k] * (inSamples[index] & 0xff);
+                            index += bands;
+                        }
+                        outSamples[outIndex++] = (byte) clamp(sum);
+                    }
+                }
+            }
+        }
+
+        private void resampleColumnsBytes() {
+            int[] w = weights.weights;
+            int stride = weights.stride;
+            int rowLength = inWidth * bands;
+            for (int y = start; y < end; y++) {
+                int first = weights.start[y] * rowLength;
+                int count = weights.count[y];
+                int k0 = y * stride;
+                int outIndex = y * rowLength;
+                for (int i = 0; i < rowLength; i++) {
+                    int sum = HALF;
+                    int index = first + i;
+                    for (int k = k0; k < k0 + count; k++) {
+                        sum += w[k] * (inSamples[index] & 0xff);
+                        index += rowLength;
+                    }
+                    outSamples[outIndex++] = (byte) clamp(sum);
+                }
+            }
+        }
+
+        private static int clamp(int sum) {
+            sum >>= BITS;
+            return (sum < 0) ? 0 : (sum > 255) ? 255 : sum;
+        }
+
+        private static int pack(int a, int r, int g, int b) {
+            return (clamp(a) << 24) | (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+        }
+    }
+}
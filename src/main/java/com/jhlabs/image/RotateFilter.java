@@ -129,6 +129,11 @@ public class RotateFilter extends TransformFilter {
         out[1] = (y * cos) + (x * sin);
     }
 
+    @Override
+    protected float[] getInverseMatrix() {
+        return new float[]{cos, -sin, 0, sin, cos, 0, 0, 0, 1};
+    }
+
     @Override
     public String toString() {
         return "Rotate " + (int) (angle * 180 / Math.PI);
@@ -38,8 +38,6 @@ public class ShapeFilter extends WholeImageFilter {
     private int type;
 
     private final static int one = 41;
-    private final static int sqrt2 = (int) (41 * Math.sqrt(2));
-    private final static int sqrt5 = (int) (41 * Math.sqrt(5));
 
     public ShapeFilter() {
         colormap = new LinearColormap();
@@ -114,39 +112,29 @@ public class ShapeFilter extends WholeImageFilter {
         return inPixels;
     }
 
+    /**
+     * Replace each positive value of a map by the distance to the nearest zero
+     * in units of 1/41 pixel, where the pixels outside the map count as zero.
+     * The distance is also limited to the value plus 41, so that the alpha of
+     * a pixel bounds its distance, and the distances inside an opaque shape
+     * level off at about 27 pixels.
+     *
+     * @param map the map
+     * @param width the width of the map
+     * @param height the height of the map
+     * @return the largest distance
+     */
     public int distanceMap(int[] map, int width, int height) {
-        int xmax = width - 3;
-        int ymax = height - 3;
+        BitPlane zeros = BitPlane.create(map, width, height, v -> v <= 0);
+        float[] distances = DistanceTransform.getDistances(zeros, true);
         int max = 0;
-        int v;
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int offset = x + y * width;
-                if (map[offset] > 0) {
-                    if (x < 2 || x > xmax || y < 2 || y > ymax) {
-                        v = setEdgeValue(x, y, map, width, offset, xmax, ymax);
-                    } else {
-                        v = setValue(map, width, offset);
-                    }
-                    if (v > max) {
-                        max = v;
-                    }
-                }
-            }
-        }
-        for (int y = height - 1; y >= 0; y--) {
-            for (int x = width - 1; x >= 0; x--) {
-                int offset = x + y * width;
-                if (map[offset] > 0) {
-                    if (x < 2 || x > xmax || y < 2 || y > ymax) {
-                        v = setEdgeValue(x, y, map, width, offset, xmax, ymax);
-                    } else {
-                        v = setValue(map, width, offset);
-                    }
-                    if (v > max) {
-                        max = v;
-                    }
+        for (int offset = 0; offset < map.length; offset++) {
+            if (map[offset] > 0) {
+                int v = Math.min((int) (distances[offset] * one), map[offset] + one);
+                map[offset] = v;
+                if (v > max) {
+                    max = v;
                 }
             }
         }
@@ -258,183 +246,6 @@ public class ShapeFilter extends WholeImageFilter {
         }
     }
 
-    private int setEdgeValue(int x, int y, int[] map, int width, int offset, int xmax, int ymax) {
-        int min, v;
-        int r1, r2, r3, r4, r5;
-
-        r1 = offset - width - width - 2;
-        r2 = r1 + width;
-        r3 = r2 + width;
-        r4 = r3 + width;
-        r5 = r4 + width;
-
-        if (y == 0 || x == 0 || y == ymax + 2 || x == xmax + 2) {
-            return map[offset] = one;
-        }
-
-        v = map[r2 + 2] + one;
-        min = v;
-
-        v = map[r3 + 1] + one;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r3 + 3] + one;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r4 + 2] + one;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r2 + 1] + sqrt2;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r2 + 3] + sqrt2;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r4 + 1] + sqrt2;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r4 + 3] + sqrt2;
-        if (v < min) {
-            min = v;
-        }
-
-        if (y == 1 || x == 1 || y == ymax + 1 || x == xmax + 1) {
-            return map[offset] = min;
-        }
-
-        v = map[r1 + 1] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r1 + 3] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r2 + 4] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r4 + 4] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r5 + 3] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r5 + 1] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r4] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r2] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        return map[offset] = min;
-    }
-
-    private int setValue(int[] map, int width, int offset) {
-        int min, v;
-        int r1, r2, r3, r4, r5;
-
-        r1 = offset - width - width - 2;
-        r2 = r1 + width;
-        r3 = r2 + width;
-        r4 = r3 + width;
-        r5 = r4 + width;
-
-        v = map[r2 + 2] + one;
-        min = v;
-        v = map[r3 + 1] + one;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r3 + 3] + one;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r4 + 2] + one;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r2 + 1] + sqrt2;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r2 + 3] + sqrt2;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r4 + 1] + sqrt2;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r4 + 3] + sqrt2;
-        if (v < min) {
-            min = v;
-        }
-
-        v = map[r1 + 1] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r1 + 3] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r2 + 4] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r4 + 4] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r5 + 3] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r5 + 1] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r4] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-        v = map[r2] + sqrt5;
-        if (v < min) {
-            min = v;
-        }
-
-        return map[offset] = min;
-    }
-
     public String toString() {
         return "Stylize/Shapeburst...";
     }
@@ -82,6 +82,11 @@ public class ShearFilter extends TransformFilter {
         out[1] = y + yoffset + (x * shy);
     }
 
+    @Override
+    protected float[] getInverseMatrix() {
+        return new float[]{1, shx, xoffset, shy, 1, yoffset, 0, 0, 1};
+    }
+
     @Override
     public String toString() {
         return "Distort/Shear...";
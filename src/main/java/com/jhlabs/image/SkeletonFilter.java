@@ -43,84 +43,44 @@ public class SkeletonFilter extends BinaryFilter {
             3, 3, 0, 1, 0, 0, 0, 0, 2, 2, 0, 0, 2, 0, 0, 0
     };
 
+    // The kernels of the two passes, which remove the black pixels whose code
+    // has bit 1 and bit 2 set
+    private final static BitPlane.Kernel[] kernels = {createKernel(1), createKernel(2)};
+
+    private static BitPlane.Kernel createKernel(int pass) {
+        boolean[] table = new boolean[skeletonTable.length];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (skeletonTable[i] & pass) != 0;
+        }
+        return BitPlane.createKernel(table);
+    }
+
     public SkeletonFilter() {
         newColor = 0xffffffff;
     }
 
     protected int[] filterPixels(int width, int height, int[] inPixels, Rectangle transformedSpace) {
-        int[] outPixels = new int[width * height];
+        BitPlane black = BitPlane.create(inPixels, width, height, blackFunction);
 
-        int count = 0;
-        int black = 0xff000000;
-        int white = 0xffffffff;
         for (int i = 0; i < iterations; i++) {
-            count = 0;
+            int color = colormap != null ? colormap.getColor((float) i / iterations) : newColor;
+            boolean removed = false;
             for (int pass = 0; pass < 2; pass++) {
-                for (int y = 1; y < height - 1; y++) {
-                    int offset = y * width + 1;
-                    for (int x = 1; x < width - 1; x++) {
-                        int pixel = inPixels[offset];
-                        if (pixel == black) {
-                            int tableIndex = 0;
-
-                            if (inPixels[offset - width - 1] == black) {
-                                tableIndex |= 1;
-                            }
-                            if (inPixels[offset - width] == black) {
-                                tableIndex |= 2;
-                            }
-                            if (inPixels[offset - width + 1] == black) {
-                                tableIndex |= 4;
-                            }
-                            if (inPixels[offset + 1] == black) {
-                                tableIndex |= 8;
-                            }
-                            if (inPixels[offset + width + 1] == black) {
-                                tableIndex |= 16;
-                            }
-                            if (inPixels[offset + width] == black) {
-                                tableIndex |= 32;
-                            }
-                            if (inPixels[offset + width - 1] == black) {
-                                tableIndex |= 64;
-                            }
-                            if (inPixels[offset - 1] == black) {
-                                tableIndex |= 128;
-                            }
-                            int code = skeletonTable[tableIndex];
-                            if (pass == 1) {
-                                if (code == 2 || code == 3) {
-                                    if (colormap != null) {
-                                        pixel = colormap.getColor((float) i / iterations);
-                                    } else {
-                                        pixel = newColor;
-                                    }
-                                    count++;
-                                }
-                            } else {
-                                if (code == 1 || code == 3) {
-                                    if (colormap != null) {
-                                        pixel = colormap.getColor((float) i / iterations);
-                                    } else {
-                                        pixel = newColor;
-                                    }
-                                    count++;
-                                }
-                            }
-                        }
-                        outPixels[offset++] = pixel;
-                    }
-                }
-                if (pass == 0) {
-                    inPixels = outPixels;
-                    outPixels = new int[width * height];
+                // Each pass removes pixels from the result of the one before,
+                // leaving the edges of the image alone
+                BitPlane changed = black.apply(kernels[pass], false, false);
+                changed.clearBorder();
+                if (!changed.isEmpty()) {
+                    changed.fill(inPixels, color);
+                    black = blackFunction.isBlack(color) ? black.or(changed) : black.andNot(changed);
+                    removed = true;
                 }
             }
-            if (count == 0) {
+            if (!removed) {
                 break;
             }
         }
-        return outPixels;
+        return inPixels;
     }
 
     @Override
@@ -21,7 +21,6 @@ import com.jhlabs.math.Noise;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.Random;
 
 public class SkyFilter extends PointFilter {
 
@@ -39,7 +38,6 @@ public class SkyFilter extends PointFilter {
     private float max;
     private boolean ridged;
     private FBM fBm;
-    protected Random random = new Random();
     private Function2D basis;
     private float cloudCover = 0.5f;
     private float cloudSharpness = 0.5f;
@@ -262,17 +260,12 @@ public class SkyFilter extends PointFilter {
         return windSpeed;
     }
 
-    float mn, mx;
-
     @Override
     public BufferedImage filterRGB32(BufferedImage src, BufferedImage dst) {
-        long start = System.currentTimeMillis();
         sunR = (float) ((sunColor >> 16) & 0xff) * r255;
         sunG = (float) ((sunColor >> 8) & 0xff) * r255;
         sunB = (float) (sunColor & 0xff) * r255;
 
-        mn = 10000;
-        mx = -10000;
         exponents = new float[(int) octaves + 1];
         float frequency = 1.0f;
         for (int i = 0; i <= (int) octaves; i++) {
@@ -305,8 +298,6 @@ public class SkyFilter extends PointFilter {
         BufferedImage clouds = super.filterRGB32(dst, dst);
 //		g.drawRenderedImage( clouds, null );
 //		g.dispose();
-        long finish = System.currentTimeMillis();
-        System.out.println(mn + " " + mx + " " + (finish - start) * 0.001f);
         exponents = null;
         tan = null;
         return dst;
@@ -380,8 +371,6 @@ public class SkyFilter extends PointFilter {
 //cloudAlpha *= amount;
 //if ( cloudAlpha > 1 )
 //	cloudAlpha = 1;
-        mn = Math.min(mn, cloudAlpha);
-        mx = Math.max(mx, cloudAlpha);
 
         // Sun glow
         float centreX = width * sunAzimuth;
@@ -15,7 +15,7 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
-public abstract class TransferFilter extends PointFilter {
+public abstract class TransferFilter extends PointFilter implements ChannelLookup {
 
     protected int[] rTable, gTable, bTable;
 
@@ -49,6 +49,11 @@ public abstract class TransferFilter extends PointFilter {
     //    protected float transferFunction(float v) {
 //        return 0;
 //    }
+    @Override
+    public int[][] getChannelTables() {
+        return new int[][]{rTable, gTable, bTable};
+    }
+
     public int[] getLUT() {
         int[] lut = new int[256];
         for (int i = 0; i < 256; i++) {
@@ -52,6 +52,21 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
      * Use bilinear interpolation.
      */
     public final static int BILINEAR = 1;
+    /**
+     * Use bicubic (Catmull-Rom) interpolation.
+     */
+    public final static int BICUBIC = 2;
+    /**
+     * Use Lanczos interpolation over 3 pixels on each side.
+     */
+    public final static int LANCZOS3 = 3;
+    // The fixed point weights of the BICUBIC and LANCZOS3 taps, for each of
+    // the PHASES positions between two pixels
+    private final static int PHASE_BITS = 8;
+    private final static int PHASES = 1 << PHASE_BITS;
+    private final static int WEIGHT_BITS = 12;
+    private final static int[] BICUBIC_WEIGHTS = createWeights(BICUBIC, 4);
+    private final static int[] LANCZOS3_WEIGHTS = createWeights(LANCZOS3, 6);
     /**
      * The action to take for pixels off the image edge.
      */
@@ -60,6 +75,10 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
      * The type of interpolation to use.
      */
     protected int interpolation = BILINEAR;
+    /**
+     * Whether to sample from a MipMap where the transform shrinks the image.
+     */
+    protected boolean mipmap = false;
     /**
      * The output image rectangle.
      */
@@ -92,7 +111,8 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
     /**
      * Set the type of interpolation to perform.
      *
-     * @param interpolation one of NEAREST_NEIGHBOUR or BILINEAR
+     * @param interpolation one of NEAREST_NEIGHBOUR, BILINEAR, BICUBIC or
+     * LANCZOS3
      * @see #getInterpolation
      */
     public void setInterpolation(int interpolation) {
@@ -102,13 +122,65 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
     /**
      * Get the type of interpolation to perform.
      *
-     * @return one of NEAREST_NEIGHBOUR or BILINEAR
+     * @return one of NEAREST_NEIGHBOUR, BILINEAR, BICUBIC or LANCZOS3
      * @see #setInterpolation
      */
     public int getInterpolation() {
         return interpolation;
     }
 
+    /**
+     * Set whether to sample from reduced copies of the image where the
+     * transform shrinks it. Without this, an image shrunk by more than half
+     * aliases, since each output pixel only reads the few input pixels around
+     * its position. The reduction is estimated for each pixel from the
+     * positions of its neighbours, and the pixel is interpolated between the
+     * two nearest levels of a MipMap.
+     *
+     * @param mipmap true to prefilter where the image is shrunk
+     * @see #isMipmap
+     */
+    public void setMipmap(boolean mipmap) {
+        this.mipmap = mipmap;
+    }
+
+    /**
+     * Get whether to sample from reduced copies of the image where the
+     * transform shrinks it.
+     *
+     * @return true to prefilter where the image is shrunk
+     * @see #setMipmap
+     */
+    public boolean isMipmap() {
+        return mipmap;
+    }
+
+    private static int[] createWeights(int interpolation, int taps) {
+        int[] weights = new int[PHASES * taps];
+        double[] w = new double[taps];
+        for (int p = 0; p < PHASES; p++) {
+            double t = (double) p / PHASES;
+            double sum = 0;
+            for (int i = 0; i < taps; i++) {
+                // The distance from the tap at (i - taps / 2 + 1)
+                double d = Math.abs(t - (i - taps / 2 + 1));
+                if (interpolation == BICUBIC) {
+                    w[i] = d < 1 ? (1.5 * d - 2.5) * d * d + 1 : d < 2 ? ((-0.5 * d + 2.5) * d - 4) * d + 2 : 0;
+                } else {
+                    w[i] = d == 0 ? 1 : d < 3 ? 3 * Math.sin(Math.PI * d) * Math.sin(Math.PI * d / 3) / (Math.PI * Math.PI * d * d) : 0;
+                }
+                sum += w[i];
+            }
+            // Normalize so that flat areas are kept exactly
+            int total = 0;
+            for (int i = 0; i < taps; i++) {
+                total += weights[p * taps + i] = (int) Math.round(w[i] / sum * (1 << WEIGHT_BITS));
+            }
+            weights[p * taps + taps / 2 - 1 + (p >= PHASES / 2 ? 1 : 0)] += (1 << WEIGHT_BITS) - total;
+        }
+        return weights;
+    }
+
     /**
      * Inverse transform a point. This method needs to be overriden by all
      * subclasses.
@@ -128,6 +200,21 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
     protected void transformSpace(Rectangle rect) {
     }
 
+    /**
+     * Get the inverse transform as a projective matrix, for subclasses whose
+     * transformInverse is a linear or projective mapping. When a matrix is
+     * returned, the source positions are stepped along each row instead of
+     * calling transformInverse for every pixel. This is called after
+     * transformSpace.
+     *
+     * @return the matrix {a, b, c, d, e, f, g, h, i}, such that the source of
+     * (x, y) is ((a * x + b * y + c) / w, (d * x + e * y + f) / w) with w = g
+     * * x + h * y + i, or null if the transform is not projective
+     */
+    protected float[] getInverseMatrix() {
+        return null;
+    }
+
     @Override
     public boolean isCmykSupported() {
         return true;
@@ -152,8 +239,17 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
             dst = createCompatibleDestImage(src, transformedSpace.width, transformedSpace.height);
         }
 
-        int threshold = Math.max(ThreadUtils.THRESHOLD, (transformedSpace.width * transformedSpace.height) / (ThreadUtils.getAvailableProcessors() * 10));
-        ThreadUtils.forkJoin(new TransformAction_GRAY8(0, transformedSpace.height, getGRAY(src), width, height, dst, threshold));
+        int threshold = ThreadUtils.getThreshold(transformedSpace.width, transformedSpace.height);
+        float[] matrix = getInverseMatrix();
+        if (mipmap) {
+            int levels = getMipMapLevels(width, height, matrix);
+            if (levels > 1) {
+                MipMap pyramid = MipMap.createGray(getGRAY(src), width, height, levels);
+                ThreadUtils.forkJoin(new MipMapAction(0, transformedSpace.height, pyramid, dst, matrix, threshold));
+                return dst;
+            }
+        }
+        ThreadUtils.forkJoin(new TransformAction_GRAY8(0, transformedSpace.height, getGRAY(src), width, height, dst, matrix, threshold));
         return dst;
     }
 
@@ -162,80 +258,92 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         int srcHeight = height;
         int outWidth = transformedSpace.width;
         int outHeight = transformedSpace.height;
-        int outX, outY, srcX, srcY;
-        byte[] outPixels = new byte[outWidth];
+        int outX, outY;
+        RasterView dstView = getDestView_GRAY8(dst);
+        byte[] outPixels = dstView != null ? dstView.getByteData() : new byte[outWidth];
 
         outX = transformedSpace.x;
         outY = transformedSpace.y;
         float[] out = new float[2];
 
         for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
             for (int x = 0; x < outWidth; x++) {
                 transformInverse(outX + x, outY + y, out);
-                srcX = (int) out[0];
-                srcY = (int) out[1];
-                // int casting rounds towards zero, so we check out[0] < 0, not srcX < 0
-                if (out[0] < 0 || srcX >= srcWidth || out[1] < 0 || srcY >= srcHeight) {
-                    if (edgeAction == ZERO) {
-                        outPixels[x] = 0;
-                    } else if (edgeAction == WRAP) {
-                        outPixels[x] = inPixels[(ImageMath.mod(srcY, srcHeight) * srcWidth) + ImageMath.mod(srcX, srcWidth)];
-                    } else { // CLAMP
-                        outPixels[x] = inPixels[(ImageMath.clamp(srcY, 0, srcHeight - 1) * srcWidth) + ImageMath.clamp(srcX, 0, srcWidth - 1)];
-                    }
-                } else {
-                    outPixels[x] = inPixels[srcWidth * srcY + srcX];
-                }
+                outPixels[offset + x] = getNearest_GRAY8(inPixels, out[0], out[1], srcWidth, srcHeight);
+            }
+            if (dstView == null) {
+                setGRAY(dst, 0, y, outWidth, 1, outPixels);
             }
-            setGRAY(dst, 0, y, transformedSpace.width, 1, outPixels);
         }
         return dst;
     }
 
+    private byte getNearest_GRAY8(byte[] inPixels, float u, float v, int srcWidth, int srcHeight) {
+        int srcX = (int) u;
+        int srcY = (int) v;
+        // int casting rounds towards zero, so we check u < 0, not srcX < 0
+        if (u < 0 || srcX >= srcWidth || v < 0 || srcY >= srcHeight) {
+            if (edgeAction == ZERO) {
+                return 0;
+            } else if (edgeAction == WRAP) {
+                return inPixels[(ImageMath.mod(srcY, srcHeight) * srcWidth) + ImageMath.mod(srcX, srcWidth)];
+            } else { // CLAMP
+                return inPixels[(ImageMath.clamp(srcY, 0, srcHeight - 1) * srcWidth) + ImageMath.clamp(srcX, 0, srcWidth - 1)];
+            }
+        }
+        return inPixels[srcWidth * srcY + srcX];
+    }
+
     protected BufferedImage filterBilinear_GRAY8(int start, int end, BufferedImage dst, int width, int height, byte[] inPixels) {
         int srcWidth = width;
         int srcHeight = height;
-        int srcWidth1 = width - 1;
-        int srcHeight1 = height - 1;
         int outWidth = transformedSpace.width;
         int outHeight = transformedSpace.height;
         int outX, outY;
-        byte[] outPixels = new byte[outWidth];
+        RasterView dstView = getDestView_GRAY8(dst);
+        byte[] outPixels = dstView != null ? dstView.getByteData() : new byte[outWidth];
 
         outX = transformedSpace.x;
         outY = transformedSpace.y;
         float[] out = new float[2];
 
         for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
             for (int x = 0; x < outWidth; x++) {
                 transformInverse(outX + x, outY + y, out);
-                int srcX = (int) Math.floor(out[0]);
-                int srcY = (int) Math.floor(out[1]);
-                float xWeight = out[0] - srcX;
-                float yWeight = out[1] - srcY;
-
-                if (srcX >= 0 && srcX < srcWidth1 && srcY >= 0 && srcY < srcHeight1) {
-                    // Easy case, all corners are in the image
-                    int i = srcWidth * srcY + srcX;
-                    outPixels[x] = ImageMath.bilinearInterpolateGray(
-                            xWeight, yWeight,
-                            inPixels[i], inPixels[i + 1],
-                            inPixels[i + srcWidth], inPixels[i + srcWidth + 1]);
-                } else {
-                    // Some of the corners are off the image
-                    outPixels[x] = ImageMath.bilinearInterpolateGray(xWeight, yWeight,
-                            getPixel_GRAY8(inPixels, srcX, srcY, srcWidth, srcHeight),
-                            getPixel_GRAY8(inPixels, srcX + 1, srcY, srcWidth, srcHeight),
-                            getPixel_GRAY8(inPixels, srcX, srcY + 1, srcWidth, srcHeight),
-                            getPixel_GRAY8(inPixels, srcX + 1, srcY + 1, srcWidth, srcHeight));
-                }
+                outPixels[offset + x] = getBilinear_GRAY8(inPixels, out[0], out[1], srcWidth, srcHeight);
+            }
+            if (dstView == null) {
+                setGRAY(dst, 0, y, outWidth, 1, outPixels);
             }
-            setGRAY(dst, 0, y, transformedSpace.width, 1, outPixels);
         }
 
         return dst;
     }
 
+    private byte getBilinear_GRAY8(byte[] inPixels, float u, float v, int srcWidth, int srcHeight) {
+        int srcX = (int) Math.floor(u);
+        int srcY = (int) Math.floor(v);
+        float xWeight = u - srcX;
+        float yWeight = v - srcY;
+
+        if (srcX >= 0 && srcX < srcWidth - 1 && srcY >= 0 && srcY < srcHeight - 1) {
+            // Easy case, all corners are in the image
+            int i = srcWidth * srcY + srcX;
+            return ImageMath.bilinearInterpolateGray(
+                    xWeight, yWeight,
+                    inPixels[i], inPixels[i + 1],
+                    inPixels[i + srcWidth], inPixels[i + srcWidth + 1]);
+        }
+        // Some of the corners are off the image
+        return ImageMath.bilinearInterpolateGray(xWeight, yWeight,
+                getPixel_GRAY8(inPixels, srcX, srcY, srcWidth, srcHeight),
+                getPixel_GRAY8(inPixels, srcX + 1, srcY, srcWidth, srcHeight),
+                getPixel_GRAY8(inPixels, srcX, srcY + 1, srcWidth, srcHeight),
+                getPixel_GRAY8(inPixels, srcX + 1, srcY + 1, srcWidth, srcHeight));
+    }
+
     protected byte getPixel_GRAY8(byte[] pixels, int x, int y, int width, int height) {
         if (x < 0 || x >= width || y < 0 || y >= height) {
             if (edgeAction == ZERO) {
@@ -249,6 +357,144 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         return pixels[y * width + x];
     }
 
+    protected BufferedImage filterKernel_GRAY8(int start, int end, BufferedImage dst, int width, int height, byte[] inPixels) {
+        int outWidth = transformedSpace.width;
+        int outX = transformedSpace.x;
+        int outY = transformedSpace.y;
+        RasterView dstView = getDestView_GRAY8(dst);
+        byte[] outPixels = dstView != null ? dstView.getByteData() : new byte[outWidth];
+        float[] out = new float[2];
+
+        for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
+            for (int x = 0; x < outWidth; x++) {
+                transformInverse(outX + x, outY + y, out);
+                outPixels[offset + x] = getSample_GRAY8(inPixels, out[0], out[1], width, height);
+            }
+            if (dstView == null) {
+                setGRAY(dst, 0, y, outWidth, 1, outPixels);
+            }
+        }
+        return dst;
+    }
+
+    private byte getSample_GRAY8(byte[] inPixels, float u, float v, int srcWidth, int srcHeight) {
+        switch (interpolation) {
+            case NEAREST_NEIGHBOUR:
+                return getNearest_GRAY8(inPixels, u, v, srcWidth, srcHeight);
+            case BILINEAR:
+                return getBilinear_GRAY8(inPixels, u, v, srcWidth, srcHeight);
+            case BICUBIC:
+                return getKernel_GRAY8(inPixels, u, v, srcWidth, srcHeight, BICUBIC_WEIGHTS, 4);
+            default:
+                return getKernel_GRAY8(inPixels, u, v, srcWidth, srcHeight, LANCZOS3_WEIGHTS, 6);
+        }
+    }
+
+    private byte getKernel_GRAY8(byte[] inPixels, float u, float v, int srcWidth, int srcHeight, int[] weights, int taps) {
+        int srcX = (int) Math.floor(u);
+        int srcY = (int) Math.floor(v);
+        int wx = Math.min((int) ((u - srcX) * PHASES), PHASES - 1) * taps;
+        int wy = Math.min((int) ((v - srcY) * PHASES), PHASES - 1) * taps;
+        int x0 = srcX - taps / 2 + 1;
+        int y0 = srcY - taps / 2 + 1;
+        boolean inside = x0 >= 0 && x0 + taps <= srcWidth && y0 >= 0 && y0 + taps <= srcHeight;
+
+        int sum = 0;
+        for (int j = 0; j < taps; j++) {
+            int row = 0;
+            int i = (y0 + j) * srcWidth + x0;
+            for (int k = 0; k < taps; k++) {
+                int p = inside ? inPixels[i + k] : getPixel_GRAY8(inPixels, x0 + k, y0 + j, srcWidth, srcHeight);
+                row += weights[wx + k] * (p & 0xff);
+            }
+            // Keep 8 bits of fraction so that the vertical sum fits in an int
+            sum += weights[wy + j] * ((row + (1 << (WEIGHT_BITS - 9))) >> (WEIGHT_BITS - 8));
+        }
+        return (byte) PixelUtils.clamp((sum + (1 << (WEIGHT_BITS + 7))) >> (WEIGHT_BITS + 8));
+    }
+
+    // The view of the destination, if its rows can be written in place
+    private RasterView getDestView_GRAY8(BufferedImage dst) {
+        if (dst.getWidth() < transformedSpace.width || getImageType(dst) != GRAY8_TYPE) {
+            return null;
+        }
+        RasterView view = RasterView.of(dst);
+        return view != null && view.getPixelStride() == 1 ? view : null;
+    }
+
+    protected BufferedImage filterMatrix_GRAY8(int start, int end, BufferedImage dst, int width, int height, byte[] inPixels, float[] m) {
+        int outWidth = transformedSpace.width;
+        int outX = transformedSpace.x;
+        int outY = transformedSpace.y;
+        boolean nearest = interpolation == NEAREST_NEIGHBOUR;
+        RasterView dstView = getDestView_GRAY8(dst);
+        byte[] outPixels = dstView != null ? dstView.getByteData() : new byte[outWidth];
+
+        for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
+            if (m[6] == 0 && m[7] == 0) {
+                long u = toFixed((m[0] * (double) outX + m[1] * (double) (outY + y) + m[2]) / m[8]);
+                long v = toFixed((m[3] * (double) outX + m[4] * (double) (outY + y) + m[5]) / m[8]);
+                long du = toFixed(m[0] / (double) m[8]);
+                long dv = toFixed(m[3] / (double) m[8]);
+                int[] span = getInteriorSpan(u, v, du, dv, outWidth, width, height, interpolation);
+                int left = span[0];
+                int right = span[1];
+
+                for (int x = 0; x < outWidth; x++) {
+                    if (x == left) {
+                        x = right;
+                        if (x == outWidth) {
+                            break;
+                        }
+                    }
+                    float fu = toFloat(u + x * du);
+                    float fv = toFloat(v + x * dv);
+                    outPixels[offset + x] = getSample_GRAY8(inPixels, fu, fv, width, height);
+                }
+
+                u += left * du;
+                v += left * dv;
+                if (nearest) {
+                    for (int x = left; x < right; x++) {
+                        outPixels[offset + x] = inPixels[(int) (v >> 32) * width + (int) (u >> 32)];
+                        u += du;
+                        v += dv;
+                    }
+                } else {
+                    for (int x = left; x < right; x++) {
+                        int i = (int) (v >> 32) * width + (int) (u >> 32);
+                        int fx = (int) (u >> 24) & 0xff;
+                        int fy = (int) (v >> 24) & 0xff;
+                        int cx = 256 - fx;
+                        int top = (inPixels[i] & 0xff) * cx + (inPixels[i + 1] & 0xff) * fx;
+                        int bottom = (inPixels[i + width] & 0xff) * cx + (inPixels[i + width + 1] & 0xff) * fx;
+                        outPixels[offset + x] = (byte) ((top * (256 - fy) + bottom * fy + (1 << 15)) >> 16);
+                        u += du;
+                        v += dv;
+                    }
+                }
+            } else {
+                double nu = m[0] * (double) outX + m[1] * (double) (outY + y) + m[2];
+                double nv = m[3] * (double) outX + m[4] * (double) (outY + y) + m[5];
+                double nw = m[6] * (double) outX + m[7] * (double) (outY + y) + m[8];
+                for (int x = 0; x < outWidth; x++) {
+                    float fu = (float) (nu / nw);
+                    float fv = (float) (nv / nw);
+                    outPixels[offset + x] = getSample_GRAY8(inPixels, fu, fv, width, height);
+                    nu += m[0];
+                    nv += m[3];
+                    nw += m[6];
+                }
+            }
+            if (dstView == null) {
+                setGRAY(dst, 0, y, outWidth, 1, outPixels);
+            }
+        }
+        return dst;
+    }
+
     private class TransformAction_GRAY8 extends RecursiveAction {
 
         private final int threshold;
@@ -258,30 +504,36 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         private final BufferedImage dst;
         private final int width;
         private final int height;
+        private final float[] matrix;
 
-        private TransformAction_GRAY8(int start, int end, byte[] srcPixels, int width, int height, BufferedImage dst, int threshold) {
+        private TransformAction_GRAY8(int start, int end, byte[] srcPixels, int width, int height, BufferedImage dst, float[] matrix, int threshold) {
             this.start = start;
             this.end = end;
             this.srcPixels = srcPixels;
             this.width = width;
             this.height = height;
             this.dst = dst;
+            this.matrix = matrix;
             this.threshold = threshold;
         }
 
         @Override
         public void compute() {
             int t = (end - start) * dst.getWidth();
-            if (t < threshold) {
-                if (interpolation == NEAREST_NEIGHBOUR) {
+            if (t < threshold || end - start <= 1) {
+                if (matrix != null) {
+                    filterMatrix_GRAY8(start, end, dst, width, height, srcPixels, matrix);
+                } else if (interpolation == NEAREST_NEIGHBOUR) {
                     filterNearest_GRAY8(start, end, dst, width, height, srcPixels);
-                } else {
+                } else if (interpolation == BILINEAR) {
                     filterBilinear_GRAY8(start, end, dst, width, height, srcPixels);
+                } else {
+                    filterKernel_GRAY8(start, end, dst, width, height, srcPixels);
                 }
             } else {
                 int split = (end - start) / 2;
-                invokeAll(new TransformAction_GRAY8(start, start + split, srcPixels, width, height, dst, threshold),
-                        new TransformAction_GRAY8(start + split, end, srcPixels, width, height, dst, threshold));
+                invokeAll(new TransformAction_GRAY8(start, start + split, srcPixels, width, height, dst, matrix, threshold),
+                        new TransformAction_GRAY8(start + split, end, srcPixels, width, height, dst, matrix, threshold));
             }
         }
     }
@@ -299,8 +551,17 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         if (dst == null) {
             dst = createCompatibleDestImage(src, transformedSpace.width, transformedSpace.height);
         }
-        int threshold = Math.max(ThreadUtils.THRESHOLD, (transformedSpace.width * transformedSpace.height) / (ThreadUtils.getAvailableProcessors() * 10));
-        ThreadUtils.forkJoin(new TransformAction_RGB32(0, transformedSpace.height, getRGB(src), width, height, dst, threshold));
+        int threshold = ThreadUtils.getThreshold(transformedSpace.width, transformedSpace.height);
+        float[] matrix = getInverseMatrix();
+        if (mipmap) {
+            int levels = getMipMapLevels(width, height, matrix);
+            if (levels > 1) {
+                MipMap pyramid = MipMap.createRGB(getRGB(src), width, height, levels);
+                ThreadUtils.forkJoin(new MipMapAction(0, transformedSpace.height, pyramid, dst, matrix, threshold));
+                return dst;
+            }
+        }
+        ThreadUtils.forkJoin(new TransformAction_RGB32(0, transformedSpace.height, getRGB(src), width, height, dst, matrix, threshold));
         return dst;
     }
 
@@ -308,13 +569,12 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
 
         int srcWidth = width;
         int srcHeight = height;
-        int srcWidth1 = width - 1;
-        int srcHeight1 = height - 1;
         int outWidth = transformedSpace.width;
         int outHeight = transformedSpace.height;
         int outX, outY;
         int dstType = getImageType(dst);
-        int[] outPixels = new int[outWidth];
+        RasterView dstView = getDestView_RGB32(dst, dstType);
+        int[] outPixels = dstView != null ? dstView.getIntData() : new int[outWidth];
 
         outX = transformedSpace.x;
         outY = transformedSpace.y;
@@ -322,43 +582,50 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
 
         //for (int y = 0; y < outHeight; y++) {
         for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
             for (int x = 0; x < outWidth; x++) {
                 transformInverse(outX + x, outY + y, out);
-                int srcX = (int) Math.floor(out[0]);
-                int srcY = (int) Math.floor(out[1]);
-                float xWeight = out[0] - srcX;
-                float yWeight = out[1] - srcY;
-
-                if (srcX >= 0 && srcX < srcWidth1 && srcY >= 0 && srcY < srcHeight1) {
-                    // Easy case, all corners are in the image
-                    int i = srcWidth * srcY + srcX;
-                    outPixels[x] = ImageMath.bilinearInterpolate(
-                            xWeight, yWeight,
-                            inPixels[i], inPixels[i + 1],
-                            inPixels[i + srcWidth], inPixels[i + srcWidth + 1]);
-                } else {
-                    // Some of the corners are off the image
-                    outPixels[x] = ImageMath.bilinearInterpolate(xWeight, yWeight,
-                            getPixel_RGB32(inPixels, srcX, srcY, srcWidth, srcHeight),
-                            getPixel_RGB32(inPixels, srcX + 1, srcY, srcWidth, srcHeight),
-                            getPixel_RGB32(inPixels, srcX, srcY + 1, srcWidth, srcHeight),
-                            getPixel_RGB32(inPixels, srcX + 1, srcY + 1, srcWidth, srcHeight));
-                }
+                outPixels[offset + x] = getBilinear_RGB32(inPixels, out[0], out[1], srcWidth, srcHeight);
+            }
+            if (dstView == null) {
+                setRGB0(dst, dstType, 0, y, outWidth, 1, outPixels);
             }
-            setRGB0(dst, dstType, 0, y, transformedSpace.width, 1, outPixels);
         }
 
         return dst;
     }
 
+    private int getBilinear_RGB32(int[] inPixels, float u, float v, int srcWidth, int srcHeight) {
+        int srcX = (int) Math.floor(u);
+        int srcY = (int) Math.floor(v);
+        float xWeight = u - srcX;
+        float yWeight = v - srcY;
+
+        if (srcX >= 0 && srcX < srcWidth - 1 && srcY >= 0 && srcY < srcHeight - 1) {
+            // Easy case, all corners are in the image
+            int i = srcWidth * srcY + srcX;
+            return ImageMath.bilinearInterpolate(
+                    xWeight, yWeight,
+                    inPixels[i], inPixels[i + 1],
+                    inPixels[i + srcWidth], inPixels[i + srcWidth + 1]);
+        }
+        // Some of the corners are off the image
+        return ImageMath.bilinearInterpolate(xWeight, yWeight,
+                getPixel_RGB32(inPixels, srcX, srcY, srcWidth, srcHeight),
+                getPixel_RGB32(inPixels, srcX + 1, srcY, srcWidth, srcHeight),
+                getPixel_RGB32(inPixels, srcX, srcY + 1, srcWidth, srcHeight),
+                getPixel_RGB32(inPixels, srcX + 1, srcY + 1, srcWidth, srcHeight));
+    }
+
     protected BufferedImage filterNearest_RGB32(int start, int end, BufferedImage dst, int width, int height, int[] inPixels) {
         int srcWidth = width;
         int srcHeight = height;
         int outWidth = transformedSpace.width;
         int outHeight = transformedSpace.height;
-        int outX, outY, srcX, srcY;
+        int outX, outY;
         int dstType = getImageType(dst);
-        int[] outPixels = new int[outWidth];
+        RasterView dstView = getDestView_RGB32(dst, dstType);
+        int[] outPixels = dstView != null ? dstView.getIntData() : new int[outWidth];
 
         outX = transformedSpace.x;
         outY = transformedSpace.y;
@@ -366,28 +633,34 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
 
         //for (int y = 0; y < outHeight; y++) {
         for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
             for (int x = 0; x < outWidth; x++) {
                 transformInverse(outX + x, outY + y, out);
-                srcX = (int) out[0];
-                srcY = (int) out[1];
-                // int casting rounds towards zero, so we check out[0] < 0, not srcX < 0
-                if (out[0] < 0 || srcX >= srcWidth || out[1] < 0 || srcY >= srcHeight) {
-                    if (edgeAction == ZERO) {
-                        outPixels[x] = 0;
-                    } else if (edgeAction == WRAP) {
-                        outPixels[x] = inPixels[(ImageMath.mod(srcY, srcHeight) * srcWidth) + ImageMath.mod(srcX, srcWidth)];
-                    } else { // CLAMP
-                        outPixels[x] = inPixels[(ImageMath.clamp(srcY, 0, srcHeight - 1) * srcWidth) + ImageMath.clamp(srcX, 0, srcWidth - 1)];
-                    }
-                } else {
-                    outPixels[x] = inPixels[srcWidth * srcY + srcX];
-                }
+                outPixels[offset + x] = getNearest_RGB32(inPixels, out[0], out[1], srcWidth, srcHeight);
+            }
+            if (dstView == null) {
+                setRGB0(dst, dstType, 0, y, outWidth, 1, outPixels);
             }
-            setRGB0(dst, dstType, 0, y, transformedSpace.width, 1, outPixels);
         }
         return dst;
     }
 
+    private int getNearest_RGB32(int[] inPixels, float u, float v, int srcWidth, int srcHeight) {
+        int srcX = (int) u;
+        int srcY = (int) v;
+        // int casting rounds towards zero, so we check u < 0, not srcX < 0
+        if (u < 0 || srcX >= srcWidth || v < 0 || srcY >= srcHeight) {
+            if (edgeAction == ZERO) {
+                return 0;
+            } else if (edgeAction == WRAP) {
+                return inPixels[(ImageMath.mod(srcY, srcHeight) * srcWidth) + ImageMath.mod(srcX, srcWidth)];
+            } else { // CLAMP
+                return inPixels[(ImageMath.clamp(srcY, 0, srcHeight - 1) * srcWidth) + ImageMath.clamp(srcX, 0, srcWidth - 1)];
+            }
+        }
+        return inPixels[srcWidth * srcY + srcX];
+    }
+
     protected int getPixel_RGB32(int[] pixels, int x, int y, int width, int height) {
         if (x < 0 || x >= width || y < 0 || y >= height) {
             if (edgeAction == ZERO) {
@@ -401,6 +674,200 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         return pixels[y * width + x];
     }
 
+    protected BufferedImage filterKernel_RGB32(int start, int end, BufferedImage dst, int width, int height, int[] inPixels) {
+        int outWidth = transformedSpace.width;
+        int outX = transformedSpace.x;
+        int outY = transformedSpace.y;
+        int dstType = getImageType(dst);
+        RasterView dstView = getDestView_RGB32(dst, dstType);
+        int[] outPixels = dstView != null ? dstView.getIntData() : new int[outWidth];
+        float[] out = new float[2];
+
+        for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
+            for (int x = 0; x < outWidth; x++) {
+                transformInverse(outX + x, outY + y, out);
+                outPixels[offset + x] = getSample_RGB32(inPixels, out[0], out[1], width, height);
+            }
+            if (dstView == null) {
+                setRGB0(dst, dstType, 0, y, outWidth, 1, outPixels);
+            }
+        }
+        return dst;
+    }
+
+    private int getSample_RGB32(int[] inPixels, float u, float v, int srcWidth, int srcHeight) {
+        switch (interpolation) {
+            case NEAREST_NEIGHBOUR:
+                return getNearest_RGB32(inPixels, u, v, srcWidth, srcHeight);
+            case BILINEAR:
+                return getBilinear_RGB32(inPixels, u, v, srcWidth, srcHeight);
+            case BICUBIC:
+                return getKernel_RGB32(inPixels, u, v, srcWidth, srcHeight, BICUBIC_WEIGHTS, 4);
+            default:
+                return getKernel_RGB32(inPixels, u, v, srcWidth, srcHeight, LANCZOS3_WEIGHTS, 6);
+        }
+    }
+
+    private int getKernel_RGB32(int[] inPixels, float u, float v, int srcWidth, int srcHeight, int[] weights, int taps) {
+        int srcX = (int) Math.floor(u);
+        int srcY = (int) Math.floor(v);
+        int wx = Math.min((int) ((u - srcX) * PHASES), PHASES - 1) * taps;
+        int wy = Math.min((int) ((v - srcY) * PHASES), PHASES - 1) * taps;
+        int x0 = srcX - taps / 2 + 1;
+        int y0 = srcY - taps / 2 + 1;
+        boolean inside = x0 >= 0 && x0 + taps <= srcWidth && y0 >= 0 && y0 + taps <= srcHeight;
+
+        int a = 0, r = 0, g = 0, b = 0;
+        for (int j = 0; j < taps; j++) {
+            int ra = 0, rr = 0, rg = 0, rb = 0;
+            int i = (y0 + j) * srcWidth + x0;
+            for (int k = 0; k < taps; k++) {
+                int p = inside ? inPixels[i + k] : getPixel_RGB32(inPixels, x0 + k, y0 + j, srcWidth, srcHeight);
+                int w = weights[wx + k];
+                ra += w * (p >>> 24);
+                rr += w * ((p >> 16) & 0xff);
+                rg += w * ((p >> 8) & 0xff);
+                rb += w * (p & 0xff);
+            }
+            // Keep 8 bits of fraction so that the vertical sums fit in an int
+            int w = weights[wy + j];
+            a += w * ((ra + (1 << (WEIGHT_BITS - 9))) >> (WEIGHT_BITS - 8));
+            r += w * ((rr + (1 << (WEIGHT_BITS - 9))) >> (WEIGHT_BITS - 8));
+            g += w * ((rg + (1 << (WEIGHT_BITS - 9))) >> (WEIGHT_BITS - 8));
+            b += w * ((rb + (1 << (WEIGHT_BITS - 9))) >> (WEIGHT_BITS - 8));
+        }
+        int round = 1 << (WEIGHT_BITS + 7);
+        int shift = WEIGHT_BITS + 8;
+        return PixelUtils.clamp((a + round) >> shift) << 24
+                | PixelUtils.clamp((r + round) >> shift) << 16
+                | PixelUtils.clamp((g + round) >> shift) << 8
+                | PixelUtils.clamp((b + round) >> shift);
+    }
+
+    // The view of the destination, if its rows can be written in place
+    private RasterView getDestView_RGB32(BufferedImage dst, int dstType) {
+        if (dst.getWidth() < transformedSpace.width || dstType != RGB32_TYPE) {
+            return null;
+        }
+        return RasterView.of(dst);
+    }
+
+    protected BufferedImage filterMatrix_RGB32(int start, int end, BufferedImage dst, int width, int height, int[] inPixels, float[] m) {
+        int outWidth = transformedSpace.width;
+        int outX = transformedSpace.x;
+        int outY = transformedSpace.y;
+        int dstType = getImageType(dst);
+        boolean nearest = interpolation == NEAREST_NEIGHBOUR;
+        RasterView dstView = getDestView_RGB32(dst, dstType);
+        int[] outPixels = dstView != null ? dstView.getIntData() : new int[outWidth];
+
+        for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
+            if (m[6] == 0 && m[7] == 0) {
+                long u = toFixed((m[0] * (double) outX + m[1] * (double) (outY + y) + m[2]) / m[8]);
+                long v = toFixed((m[3] * (double) outX + m[4] * (double) (outY + y) + m[5]) / m[8]);
+                long du = toFixed(m[0] / (double) m[8]);
+                long dv = toFixed(m[3] / (double) m[8]);
+                int[] span = getInteriorSpan(u, v, du, dv, outWidth, width, height, interpolation);
+                int left = span[0];
+                int right = span[1];
+
+                for (int x = 0; x < outWidth; x++) {
+                    if (x == left) {
+                        x = right;
+                        if (x == outWidth) {
+                            break;
+                        }
+                    }
+                    float fu = toFloat(u + x * du);
+                    float fv = toFloat(v + x * dv);
+                    outPixels[offset + x] = getSample_RGB32(inPixels, fu, fv, width, height);
+                }
+
+                u += left * du;
+                v += left * dv;
+                if (nearest) {
+                    for (int x = left; x < right; x++) {
+                        outPixels[offset + x] = inPixels[(int) (v >> 32) * width + (int) (u >> 32)];
+                        u += du;
+                        v += dv;
+                    }
+                } else {
+                    for (int x = left; x < right; x++) {
+                        int i = (int) (v >> 32) * width + (int) (u >> 32);
+                        outPixels[offset + x] = interpolate((int) (u >> 24) & 0xff, (int) (v >> 24) & 0xff,
+                                inPixels[i], inPixels[i + 1], inPixels[i + width], inPixels[i + width + 1]);
+                        u += du;
+                        v += dv;
+                    }
+                }
+            } else {
+                double nu = m[0] * (double) outX + m[1] * (double) (outY + y) + m[2];
+                double nv = m[3] * (double) outX + m[4] * (double) (outY + y) + m[5];
+                double nw = m[6] * (double) outX + m[7] * (double) (outY + y) + m[8];
+                for (int x = 0; x < outWidth; x++) {
+                    float fu = (float) (nu / nw);
+                    float fv = (float) (nv / nw);
+                    outPixels[offset + x] = getSample_RGB32(inPixels, fu, fv, width, height);
+                    nu += m[0];
+                    nv += m[3];
+                    nw += m[6];
+                }
+            }
+            if (dstView == null) {
+                setRGB0(dst, dstType, 0, y, outWidth, 1, outPixels);
+            }
+        }
+        return dst;
+    }
+
+    // Bilinear interpolation of ARGB values with 8 bit weights
+    private static int interpolate(int fx, int fy, int nw, int ne, int sw, int se) {
+        int cx = 256 - fx;
+        int cy = 256 - fy;
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int top = ((nw >>> shift) & 0xff) * cx + ((ne >>> shift) & 0xff) * fx;
+            int bottom = ((sw >>> shift) & 0xff) * cx + ((se >>> shift) & 0xff) * fx;
+            result |= ((top * cy + bottom * fy + (1 << 15)) >> 16) << shift;
+        }
+        return result;
+    }
+
+    // Source positions of an affine transform are stepped in 32.32 fixed point.
+    // The steps are exact, so the pixels whose taps all lie inside the image
+    // form a single span of the row, which needs no bounds checks.
+    private static long toFixed(double d) {
+        return Math.round(d * 4294967296.0);
+    }
+
+    private static float toFloat(long f) {
+        return (float) (f / 4294967296.0);
+    }
+
+    private static int[] getInteriorSpan(long u, long v, long du, long dv, int outWidth, int width, int height, int interpolation) {
+        if (interpolation != NEAREST_NEIGHBOUR && interpolation != BILINEAR) {
+            return new int[]{0, 0};
+        }
+        boolean nearest = interpolation == NEAREST_NEIGHBOUR;
+        long umax = (long) (nearest ? width : width - 1) << 32;
+        long vmax = (long) (nearest ? height : height - 1) << 32;
+        int left = 0;
+        while (left < outWidth && !isInside(u + left * du, v + left * dv, umax, vmax)) {
+            left++;
+        }
+        int right = outWidth;
+        while (right > left && !isInside(u + (right - 1) * du, v + (right - 1) * dv, umax, vmax)) {
+            right--;
+        }
+        return new int[]{left, right};
+    }
+
+    private static boolean isInside(long u, long v, long umax, long vmax) {
+        return u >= 0 && u < umax && v >= 0 && v < vmax;
+    }
+
     private class TransformAction_RGB32 extends RecursiveAction {
 
         private final int threshold;
@@ -410,30 +877,255 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
         private final BufferedImage dst;
         private final int width;
         private final int height;
+        private final float[] matrix;
 
-        private TransformAction_RGB32(int start, int end, int[] srcPixels, int width, int height, BufferedImage dst, int threshold) {
+        private TransformAction_RGB32(int start, int end, int[] srcPixels, int width, int height, BufferedImage dst, float[] matrix, int threshold) {
             this.start = start;
             this.end = end;
             this.srcPixels = srcPixels;
             this.width = width;
             this.height = height;
             this.dst = dst;
+            this.matrix = matrix;
             this.threshold = threshold;
         }
 
         @Override
         public void compute() {
             int t = (end - start) * dst.getWidth();
-            if (t < threshold) {
-                if (interpolation == NEAREST_NEIGHBOUR) {
+            if (t < threshold || end - start <= 1) {
+                if (matrix != null) {
+                    filterMatrix_RGB32(start, end, dst, width, height, srcPixels, matrix);
+                } else if (interpolation == NEAREST_NEIGHBOUR) {
                     filterNearest_RGB32(start, end, dst, width, height, srcPixels);
-                } else {
+                } else if (interpolation == BILINEAR) {
                     filterBilinear_RGB32(start, end, dst, width, height, srcPixels);
+                } else {
+                    filterKernel_RGB32(start, end, dst, width, height, srcPixels);
+                }
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new TransformAction_RGB32(start, start + split, srcPixels, width, height, dst, matrix, threshold),
+                        new TransformAction_RGB32(start + split, end, srcPixels, width, height, dst, matrix, threshold));
+            }
+        }
+    }
+
+    // MipMap
+    private final static double HALF_INV_LOG2 = 0.5 / Math.log(2);
+    // The squared reduction below which the image is sampled directly, a
+    // little over 1 so that rounding errors do not count as a reduction
+    private final static float MIN_REDUCTION2 = 1.001f;
+
+    // Estimate how much the transform shrinks the image from a grid of
+    // samples, to know how many levels to build
+    private int getMipMapLevels(int width, int height, float[] m) {
+        int outWidth = transformedSpace.width;
+        int outHeight = transformedSpace.height;
+        int step = Math.max(1, Math.max(outWidth, outHeight) / 32);
+        float[] p = new float[2];
+        float[] px = new float[2];
+        float[] py = new float[2];
+        float scale2 = MIN_REDUCTION2;
+
+        for (int y = 0; y < outHeight; y += step) {
+            for (int x = 0; x < outWidth; x += step) {
+                int ox = transformedSpace.x + x;
+                int oy = transformedSpace.y + y;
+                transformPoint(ox, oy, m, p);
+                transformPoint(ox + 1, oy, m, px);
+                transformPoint(ox, oy + 1, m, py);
+                float d2 = Math.max(distance2(p[0], p[1], px[0], px[1]), distance2(p[0], p[1], py[0], py[1]));
+                if (d2 > scale2) {
+                    scale2 = d2;
+                }
+            }
+        }
+        if (scale2 <= MIN_REDUCTION2) {
+            return 1;
+        }
+        // The level of the largest reduction and the one above it
+        return (int) Math.min(2 + Math.log(scale2) * HALF_INV_LOG2, MipMap.getMaxLevels(width, height));
+    }
+
+    private void transformPoint(int x, int y, float[] m, float[] out) {
+        if (m == null) {
+            transformInverse(x, y, out);
+        } else {
+            double w = m[6] * (double) x + m[7] * (double) y + m[8];
+            out[0] = (float) ((m[0] * (double) x + m[1] * (double) y + m[2]) / w);
+            out[1] = (float) ((m[3] * (double) x + m[4] * (double) y + m[5]) / w);
+        }
+    }
+
+    // The source positions of row y, from x = -1 to the output width
+    private void transformRow(int y, float[] m, float[] us, float[] vs, float[] out) {
+        for (int i = 0; i < us.length; i++) {
+            transformPoint(transformedSpace.x + i - 1, transformedSpace.y + y, m, out);
+            us[i] = out[0];
+            vs[i] = out[1];
+        }
+    }
+
+    private static float distance2(float u0, float v0, float u1, float v1) {
+        return (u1 - u0) * (u1 - u0) + (v1 - v0) * (v1 - v0);
+    }
+
+    // The squared reduction at column i of the current row. The smaller of
+    // the steps on either side is used, so that the discontinuities of
+    // transforms such as the kaleidoscope do not blur their neighbours.
+    private static float getReduction2(int i, float[] prevU, float[] prevV, float[] curU, float[] curV, float[] nextU, float[] nextV) {
+        float dx2 = Math.min(distance2(curU[i - 1], curV[i - 1], curU[i], curV[i]), distance2(curU[i], curV[i], curU[i + 1], curV[i + 1]));
+        float dy2 = Math.min(distance2(prevU[i], prevV[i], curU[i], curV[i]), distance2(curU[i], curV[i], nextU[i], nextV[i]));
+        return Math.max(dx2, dy2);
+    }
+
+    protected BufferedImage filterMipMap_RGB32(int start, int end, BufferedImage dst, MipMap pyramid, float[] m) {
+        int outWidth = transformedSpace.width;
+        int dstType = getImageType(dst);
+        RasterView dstView = getDestView_RGB32(dst, dstType);
+        int[] outPixels = dstView != null ? dstView.getIntData() : new int[outWidth];
+        int levels = pyramid.getLevels();
+        float[] prevU = new float[outWidth + 2];
+        float[] prevV = new float[outWidth + 2];
+        float[] curU = new float[outWidth + 2];
+        float[] curV = new float[outWidth + 2];
+        float[] nextU = new float[outWidth + 2];
+        float[] nextV = new float[outWidth + 2];
+        float[] out = new float[2];
+
+        transformRow(start - 1, m, prevU, prevV, out);
+        transformRow(start, m, curU, curV, out);
+        for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
+            transformRow(y + 1, m, nextU, nextV, out);
+            for (int x = 0; x < outWidth; x++) {
+                float u = curU[x + 1];
+                float v = curV[x + 1];
+                float reduction2 = getReduction2(x + 1, prevU, prevV, curU, curV, nextU, nextV);
+                if (reduction2 > MIN_REDUCTION2) {
+                    float lod = Math.min((float) (Math.log(reduction2) * HALF_INV_LOG2), levels - 1);
+                    int k = (int) lod;
+                    int rgb = getLevel_RGB32(pyramid, k, u, v);
+                    if (k + 1 < levels) {
+                        rgb = ImageMath.mixColors(lod - k, rgb, getLevel_RGB32(pyramid, k + 1, u, v));
+                    }
+                    outPixels[offset + x] = rgb;
+                } else {
+                    outPixels[offset + x] = getLevel_RGB32(pyramid, 0, u, v);
+                }
+            }
+            if (dstView == null) {
+                setRGB0(dst, dstType, 0, y, outWidth, 1, outPixels);
+            }
+            float[] t = prevU;
+            prevU = curU;
+            curU = nextU;
+            nextU = t;
+            t = prevV;
+            prevV = curV;
+            curV = nextV;
+            nextV = t;
+        }
+        return dst;
+    }
+
+    private int getLevel_RGB32(MipMap pyramid, int level, float u, float v) {
+        if (level == 0) {
+            return getSample_RGB32(pyramid.getRGB(0), u, v, pyramid.getWidth(0), pyramid.getHeight(0));
+        }
+        float scale = 1f / (1 << level);
+        return getBilinear_RGB32(pyramid.getRGB(level), (u + 0.5f) * scale - 0.5f, (v + 0.5f) * scale - 0.5f, pyramid.getWidth(level), pyramid.getHeight(level));
+    }
+
+    protected BufferedImage filterMipMap_GRAY8(int start, int end, BufferedImage dst, MipMap pyramid, float[] m) {
+        int outWidth = transformedSpace.width;
+        RasterView dstView = getDestView_GRAY8(dst);
+        byte[] outPixels = dstView != null ? dstView.getByteData() : new byte[outWidth];
+        int levels = pyramid.getLevels();
+        float[] prevU = new float[outWidth + 2];
+        float[] prevV = new float[outWidth + 2];
+        float[] curU = new float[outWidth + 2];
+        float[] curV = new float[outWidth + 2];
+        float[] nextU = new float[outWidth + 2];
+        float[] nextV = new float[outWidth + 2];
+        float[] out = new float[2];
+
+        transformRow(start - 1, m, prevU, prevV, out);
+        transformRow(start, m, curU, curV, out);
+        for (int y = start; y < end; y++) {
+            int offset = dstView != null ? dstView.getIndex(0, y) : 0;
+            transformRow(y + 1, m, nextU, nextV, out);
+            for (int x = 0; x < outWidth; x++) {
+                float u = curU[x + 1];
+                float v = curV[x + 1];
+                float reduction2 = getReduction2(x + 1, prevU, prevV, curU, curV, nextU, nextV);
+                if (reduction2 > MIN_REDUCTION2) {
+                    float lod = Math.min((float) (Math.log(reduction2) * HALF_INV_LOG2), levels - 1);
+                    int k = (int) lod;
+                    int gray = getLevel_GRAY8(pyramid, k, u, v) & 0xff;
+                    if (k + 1 < levels) {
+                        gray = ImageMath.lerp(lod - k, gray, getLevel_GRAY8(pyramid, k + 1, u, v) & 0xff);
+                    }
+                    outPixels[offset + x] = (byte) gray;
+                } else {
+                    outPixels[offset + x] = getLevel_GRAY8(pyramid, 0, u, v);
+                }
+            }
+            if (dstView == null) {
+                setGRAY(dst, 0, y, outWidth, 1, outPixels);
+            }
+            float[] t = prevU;
+            prevU = curU;
+            curU = nextU;
+            nextU = t;
+            t = prevV;
+            prevV = curV;
+            curV = nextV;
+            nextV = t;
+        }
+        return dst;
+    }
+
+    private byte getLevel_GRAY8(MipMap pyramid, int level, float u, float v) {
+        if (level == 0) {
+            return getSample_GRAY8(pyramid.getGray(0), u, v, pyramid.getWidth(0), pyramid.getHeight(0));
+        }
+        float scale = 1f / (1 << level);
+        return getBilinear_GRAY8(pyramid.getGray(level), (u + 0.5f) * scale - 0.5f, (v + 0.5f) * scale - 0.5f, pyramid.getWidth(level), pyramid.getHeight(level));
+    }
+
+    private class MipMapAction extends RecursiveAction {
+
+        private final int threshold;
+        private final int start;
+        private final int end;
+        private final MipMap pyramid;
+        private final BufferedImage dst;
+        private final float[] matrix;
+
+        private MipMapAction(int start, int end, MipMap pyramid, BufferedImage dst, float[] matrix, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.pyramid = pyramid;
+            this.dst = dst;
+            this.matrix = matrix;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * dst.getWidth();
+            if (t < threshold || end - start <= 1) {
+                if (pyramid.isGray()) {
+                    filterMipMap_GRAY8(start, end, dst, pyramid, matrix);
+                } else {
+                    filterMipMap_RGB32(start, end, dst, pyramid, matrix);
                 }
             } else {
                 int split = (end - start) / 2;
-                invokeAll(new TransformAction_RGB32(start, start + split, srcPixels, width, height, dst, threshold),
-                        new TransformAction_RGB32(start + split, end, srcPixels, width, height, dst, threshold));
+                invokeAll(new MipMapAction(start, start + split, pyramid, dst, matrix, threshold),
+                        new MipMapAction(start + split, end, pyramid, dst, matrix, threshold));
             }
         }
     }
@@ -85,27 +85,57 @@ public class UnsharpFilter extends GaussianFilter {
             dst = createCompatibleDestImage(src);
         }
 
-        int[] inPixels = new int[width * height];
-        int[] outPixels = new int[width * height];
-
-        getRGB(src, 0, 0, width, height, inPixels);
+        // The source is read again after the blur, so the destination is
+        // written in place only if it is not the source
+        int[] inPixels = getRGB(src);
+        int[] dstPixels = getDestRGB(dst, width, height);
+        if (dstPixels == inPixels) {
+            dstPixels = null;
+        }
+        int[] outPixels = dstPixels != null ? dstPixels : new int[width * height];
 
         if (radius > 0) {
             boolean pre = (premultiplyAlpha && src.getColorModel().hasAlpha() && !src.isAlphaPremultiplied());
-            convolve(kernel, inPixels, outPixels, width, height, alpha, pre, false, CLAMP_EDGES);
+            blur(inPixels, outPixels, width, height, pre, CLAMP_EDGES);
+        } else {
+            System.arraycopy(inPixels, 0, outPixels, 0, inPixels.length);
         }
 
-        long tt = System.nanoTime();
-        int tresh = Math.max(ThreadUtils.THRESHOLD, (width * height) / (ThreadUtils.getAvailableProcessors() * 10));
+        int tresh = ThreadUtils.getThreshold(width, height);
         ThreadUtils.forkJoin(new UnsharpAction(0, height, inPixels, outPixels, width, height, tresh));
-        //unsharp(0, height, inPixels, outPixels, width, height) ;
-        System.err.println("time3: " + (System.nanoTime() - tt) / 1000000);
 
-        setRGB(dst, 0, 0, width, height, outPixels);
+        if (dstPixels == null) {
+            setRGB(dst, 0, 0, width, height, outPixels);
+        }
 
         return dst;
     }
 
+    @Override
+    protected void filterBands(byte[] inPixels, byte[] outPixels, int width, int height, int bands) {
+        if (radius > 0) {
+            blur(inPixels, outPixels, width, height, bands, CLAMP_EDGES);
+        } else {
+            System.arraycopy(inPixels, 0, outPixels, 0, inPixels.length);
+        }
+
+        int tresh = ThreadUtils.getThreshold(width, height);
+        ThreadUtils.forkJoin(new UnsharpBandsAction(0, height, inPixels, outPixels, width * bands, tresh));
+    }
+
+    // Unsharp rows of samples, the blurred samples being replaced
+    private void unsharp(int start, int end, byte[] inPixels, byte[] outPixels, int rowLength) {
+        float a = 4 * amount;
+        for (int index = start * rowLength, last = end * rowLength; index < last; index++) {
+            int v1 = inPixels[index] & 0xff;
+            int v2 = outPixels[index] & 0xff;
+            if (Math.abs(v1 - v2) >= threshold) {
+                v1 = PixelUtils.clamp((int) ((a + 1) * (v1 - v2) + v2));
+            }
+            outPixels[index] = (byte) v1;
+        }
+    }
+
     private void unsharp(int start, int end, int[] inPixels, int[] outPixels, int width, int height) {
         float a = 4 * amount;
         int index = start * width;
@@ -161,7 +191,7 @@ public class UnsharpFilter extends GaussianFilter {
         @Override
         public void compute() {
             int t = (end - start) * width;
-            if (t < thresh) {
+            if (t < thresh || end - start <= 1) {
                 unsharp(start, end, inPixels, outPixels, width, height);
             } else {
                 int split = (end - start) / 2;
@@ -171,6 +201,37 @@ public class UnsharpFilter extends GaussianFilter {
         }
     }
 
+    private class UnsharpBandsAction extends RecursiveAction {
+
+        private final int thresh;
+        private final int start;
+        private final int end;
+        private final byte[] inPixels;
+        private final byte[] outPixels;
+        private final int rowLength;
+
+        private UnsharpBandsAction(int start, int end, byte[] inPixels, byte[] outPixels, int rowLength, int thresh) {
+            this.start = start;
+            this.end = end;
+            this.inPixels = inPixels;
+            this.outPixels = outPixels;
+            this.rowLength = rowLength;
+            this.thresh = thresh;
+        }
+
+        @Override
+        public void compute() {
+            int t = (end - start) * rowLength;
+            if (t < thresh || end - start <= 1) {
+                unsharp(start, end, inPixels, outPixels, rowLength);
+            } else {
+                int split = (end - start) / 2;
+                invokeAll(new UnsharpBandsAction(start, start + split, inPixels, outPixels, rowLength, thresh),
+                        new UnsharpBandsAction(start + split, end, inPixels, outPixels, rowLength, thresh));
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "Blur/Unsharp Mask...";
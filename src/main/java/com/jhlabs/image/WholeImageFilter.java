@@ -15,8 +15,12 @@ limitations under the License.
  */
 package com.jhlabs.image;
 
+import com.jhlabs.utils.ThreadUtils;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A filter which acts as a superclass for filters which need to have the whole
@@ -48,18 +52,89 @@ public abstract class WholeImageFilter extends AbstractBufferedImageOp {
         transformedSpace = new Rectangle(0, 0, width, height);
         transformSpace(transformedSpace);
 
-        if (dst == null) {
-            dst = createCompatibleDestImage(src, transformedSpace.width, transformedSpace.height);
+        // The strips read rows of the source which other strips may have
+        // written already if it is also the destination
+        int radius = getNeighbourhoodRadius();
+        boolean inPlace = dst != null && dst.getRaster().getDataBuffer() == src.getRaster().getDataBuffer();
+        if (radius >= 0 && !inPlace && transformedSpace.equals(originalSpace)) {
+            if (dst == null) {
+                dst = createCompatibleDestImage(src, transformedSpace.width, transformedSpace.height);
+            }
+            int threshold = ThreadUtils.getThreshold(width, height);
+            ThreadUtils.forkJoin(new StripAction(0, height, src, dst, radius, threshold));
+            return dst;
         }
 
-        // Get a copy of the internal array
+        // Get a copy of the internal array, as filterPixels may write to it
         int[] inPixels = getRGB(src, 0, 0, width, height, null);
         inPixels = filterPixels(width, height, inPixels, transformedSpace);
+
+        // A new destination is built around the filtered pixels rather than
+        // copying them
+        if (dst == null && getImageType(src) == RGB32_TYPE && inPixels.length == transformedSpace.width * transformedSpace.height) {
+            return createBufferedImage(src.getColorModel(), transformedSpace.width, transformedSpace.height, inPixels);
+        }
+        if (dst == null) {
+            dst = createCompatibleDestImage(src, transformedSpace.width, transformedSpace.height);
+        }
         setRGB(dst, 0, 0, transformedSpace.width, transformedSpace.height, inPixels);
 
         return dst;
     }
 
+    private class StripAction extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final BufferedImage src;
+        private final BufferedImage dst;
+        private final int radius;
+        private final int threshold;
+
+        private StripAction(int start, int end, BufferedImage src, BufferedImage dst, int radius, int threshold) {
+            this.start = start;
+            this.end = end;
+            this.src = src;
+            this.dst = dst;
+            this.radius = radius;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void compute() {
+            int width = src.getWidth();
+            int split = (end - start) / 2;
+            if ((end - start) * width < threshold || split <= 2 * radius) {
+                // Filter the strip with its overlapping rows, then keep the rows it owns
+                int y0 = Math.max(0, start - radius);
+                int y1 = Math.min(src.getHeight(), end + radius);
+                int[] inPixels = getRGB(src, 0, y0, width, y1 - y0, null);
+                int[] outPixels = filterPixels(width, y1 - y0, inPixels, new Rectangle(0, 0, width, y1 - y0));
+                if (y0 < start || y1 > end) {
+                    outPixels = Arrays.copyOfRange(outPixels, (start - y0) * width, (end - y0) * width);
+                }
+                setRGB(dst, 0, start, width, end - start, outPixels);
+            } else {
+                invokeAll(new StripAction(start, start + split, src, dst, radius, threshold),
+                        new StripAction(start + split, end, src, dst, radius, threshold));
+            }
+        }
+    }
+
+    /**
+     * Return the radius of the neighbourhood read around each pixel by
+     * filterPixels. Filters which return a radius &gt;= 0 are run in parallel
+     * on overlapping horizontal strips: each strip is filtered with radius
+     * extra rows above and below, which are then discarded, so the result is
+     * the same as filtering the whole image at once. The default of -1 means
+     * that the filter needs the whole image.
+     *
+     * @return the neighbourhood radius, or -1
+     */
+    protected int getNeighbourhoodRadius() {
+        return -1;
+    }
+
     /**
      * Calculate output bounds for given input bounds.
      *
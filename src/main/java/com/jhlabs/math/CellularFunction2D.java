@@ -15,22 +15,16 @@ limitations under the License.
  */
 package com.jhlabs.math;
 
-import java.util.Random;
-
 public class CellularFunction2D implements Function2D {
 
     public float distancePower = 2;
     public boolean cells = false;
     public boolean angular = false;
     private final float[] coefficients = {1, 0, 0, 0};
-    private final Random random = new Random();
-    private Point[] results = null;
+    // The nearest points found by evaluate, for each thread
+    private final ThreadLocal<Point[]> results = ThreadLocal.withInitial(() -> new Point[]{new Point(), new Point()});
 
     public CellularFunction2D() {
-        results = new Point[2];
-        for (int j = 0; j < results.length; j++) {
-            results[j] = new Point();
-        }
     }
 
     public void setCoefficient(int c, float v) {
@@ -49,13 +43,15 @@ public class CellularFunction2D implements Function2D {
     }
 
     private float checkCube(float x, float y, int cubeX, int cubeY, Point[] results) {
-        random.setSeed(571L * cubeX + 23L * cubeY);
-        int numPoints = 3 + random.nextInt() % 4;
-        numPoints = 4;
+        // The same points as java.util.Random seeded with the cube coordinates
+        long random = HashRandom.next(HashRandom.seed(571L * cubeX + 23L * cubeY));
+        int numPoints = 4;
 
         for (int i = 0; i < numPoints; i++) {
-            float px = random.nextFloat();
-            float py = random.nextFloat();
+            random = HashRandom.next(random);
+            float px = HashRandom.floatValue(random);
+            random = HashRandom.next(random);
+            float py = HashRandom.floatValue(random);
             float dx = Math.abs(x - px);
             float dy = Math.abs(y - py);
             float d;
@@ -93,6 +89,7 @@ public class CellularFunction2D implements Function2D {
     }
 
     public float evaluate(float x, float y) {
+        Point[] results = this.results.get();
         for (int j = 0; j < results.length; j++) {
             results[j].distance = Float.POSITIVE_INFINITY;
         }
@@ -15,108 +15,129 @@ limitations under the License.
  */
 package com.jhlabs.math;
 
+/**
+ * A radix 2 complex FFT. The twiddle factors and the bit reversal table are
+ * computed once for the largest size, and shared by the transforms of all
+ * the smaller power of 2 sizes, so that an FFT can be reused as a plan. An
+ * FFT holds no working state and may be used by several threads at once.
+ */
 public class FFT {
 
-    // Weighting factors
-    protected float[] w1;
-    protected float[] w2;
-    protected float[] w3;
+    private final int logN;
+    // cos and sin of 2*PI*k/N, for k < N/2
+    private final float[] cos;
+    private final float[] sin;
+    // The bit reversal of each index on logN bits
+    private final int[] reverse;
 
     public FFT(int logN) {
-        // Prepare the weighting factors
-        w1 = new float[logN];
-        w2 = new float[logN];
-        w3 = new float[logN];
-        int N = 1;
-        for (int k = 0; k < logN; k++) {
-            N <<= 1;
-            double angle = -2.0 * Math.PI / N;
-            w1[k] = (float) Math.sin(0.5 * angle);
-            w2[k] = -2.0f * w1[k] * w1[k];
-            w3[k] = (float) Math.sin(angle);
+        this.logN = logN;
+        int n = 1 << logN;
+        cos = new float[Math.max(n / 2, 1)];
+        sin = new float[cos.length];
+        for (int k = 0; k < n / 2; k++) {
+            double angle = 2.0 * Math.PI * k / n;
+            cos[k] = (float) Math.cos(angle);
+            sin[k] = (float) Math.sin(angle);
+        }
+        reverse = new int[n];
+        for (int i = 1; i < n; i++) {
+            reverse[i] = (reverse[i >> 1] >> 1) | ((i & 1) << (logN - 1));
         }
     }
 
-    private void scramble(int n, float[] real, float[] imag) {
-        int j = 0;
+    /**
+     * Get the log2 of the largest size this FFT can transform.
+     *
+     * @return the log2 of the size
+     */
+    public int getLogN() {
+        return logN;
+    }
 
+    private void scramble(int offset, int logn, int n, float[] real, float[] imag) {
+        int shift = logN - logn;
         for (int i = 0; i < n; i++) {
+            int j = reverse[i] >> shift;
             if (i > j) {
                 float t;
-                t = real[j];
-                real[j] = real[i];
-                real[i] = t;
-                t = imag[j];
-                imag[j] = imag[i];
-                imag[i] = t;
+                t = real[offset + j];
+                real[offset + j] = real[offset + i];
+                real[offset + i] = t;
+                t = imag[offset + j];
+                imag[offset + j] = imag[offset + i];
+                imag[offset + i] = t;
             }
-            int m = n >> 1;
-            while (j >= m && m >= 2) {
-                j -= m;
-                m >>= 1;
-            }
-            j += m;
         }
     }
 
-    private void butterflies(int n, int logN, int direction, float[] real, float[] imag) {
-        int N = 1;
-
-        for (int k = 0; k < logN; k++) {
-            float w_re, w_im, wp_re, wp_im, temp_re, temp_im, wt;
-            int half_N = N;
-            N <<= 1;
-            wt = direction * w1[k];
-            wp_re = w2[k];
-            wp_im = direction * w3[k];
-            w_re = 1.0f;
-            w_im = 0.0f;
-            for (int offset = 0; offset < half_N; offset++) {
-                for (int i = offset; i < n; i += N) {
+    private void butterflies(int offset, int logn, int n, int direction, float[] real, float[] imag) {
+        for (int k = 0; k < logn; k++) {
+            int half_N = 1 << k;
+            int N = half_N << 1;
+            // The step in the twiddle table for this stage
+            int step = 1 << (logN - k - 1);
+            for (int t = 0; t < half_N; t++) {
+                float w_re = cos[t * step];
+                float w_im = -direction * sin[t * step];
+                for (int i = offset + t, last = offset + n; i < last; i += N) {
                     int j = i + half_N;
                     float re = real[j];
                     float im = imag[j];
-                    temp_re = (w_re * re) - (w_im * im);
-                    temp_im = (w_im * re) + (w_re * im);
+                    float temp_re = (w_re * re) - (w_im * im);
+                    float temp_im = (w_im * re) + (w_re * im);
                     real[j] = real[i] - temp_re;
                     real[i] += temp_re;
                     imag[j] = imag[i] - temp_im;
                     imag[i] += temp_im;
                 }
-                wt = w_re;
-                w_re = wt * wp_re - w_im * wp_im + w_re;
-                w_im = w_im * wp_re + wt * wp_im + w_im;
             }
         }
         if (direction == -1) {
             float nr = 1.0f / n;
-            for (int i = 0; i < n; i++) {
+            for (int i = offset, last = offset + n; i < last; i++) {
                 real[i] *= nr;
                 imag[i] *= nr;
             }
         }
     }
 
+    private void transform(float[] real, float[] imag, int offset, int logn, int n, boolean forward) {
+        if (logn > logN) {
+            throw new IllegalArgumentException("FFT size " + n + " larger than " + (1 << logN));
+        }
+        scramble(offset, logn, n, real, imag);
+        butterflies(offset, logn, n, forward ? 1 : -1, real, imag);
+    }
+
     public void transform1D(float[] real, float[] imag, int logN, int n, boolean forward) {
-        scramble(n, real, imag);
-        butterflies(n, logN, forward ? 1 : -1, real, imag);
+        transform(real, imag, 0, logN, n, forward);
     }
 
     public void transform2D(float[] real, float[] imag, int cols, int rows, boolean forward) {
+        int n = Math.max(rows, cols);
+        transform2D(real, imag, cols, rows, forward, new float[n], new float[n]);
+    }
+
+    /**
+     * Transform a 2D array, with scratch arrays provided by the caller so that
+     * nothing is allocated.
+     *
+     * @param real the real parts, row by row
+     * @param imag the imaginary parts, row by row
+     * @param cols the number of columns, a power of 2
+     * @param rows the number of rows, a power of 2
+     * @param forward true for the forward transform
+     * @param rtemp a scratch array of at least rows elements
+     * @param itemp a scratch array of at least rows elements
+     */
+    public void transform2D(float[] real, float[] imag, int cols, int rows, boolean forward, float[] rtemp, float[] itemp) {
         int log2cols = log2(cols);
         int log2rows = log2(rows);
-        int n = Math.max(rows, cols);
-        float[] rtemp = new float[n];
-        float[] itemp = new float[n];
 
-        // FFT the rows
+        // FFT the rows, in place
         for (int y = 0; y < rows; y++) {
-            int offset = y * cols;
-            System.arraycopy(real, offset, rtemp, 0, cols);
-            System.arraycopy(imag, offset, itemp, 0, cols);
-            transform1D(rtemp, itemp, log2cols, cols, forward);
-            System.arraycopy(rtemp, 0, real, offset, cols);
-            System.arraycopy(itemp, 0, imag, offset, cols);
+            transform(real, imag, y * cols, log2cols, cols, forward);
         }
 
         // FFT the columns
@@ -127,7 +148,7 @@ public class FFT {
                 itemp[y] = imag[index];
                 index += cols;
             }
-            transform1D(rtemp, itemp, log2rows, rows, forward);
+            transform(rtemp, itemp, 0, log2rows, rows, forward);
             index = x;
             for (int y = 0; y < rows; y++) {
                 real[index] = rtemp[y];
@@ -0,0 +1,102 @@
+/*
+Copyright 2006 Jerry Huxtable
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.jhlabs.math;
+
+/**
+ * Random numbers without shared state, for textures rendered by several
+ * threads at once. A value is either a hash of integer coordinates, or is
+ * taken from a sequence whose state is a long held by the caller. The
+ * sequences are those of java.util.Random for the same seed.
+ */
+public class HashRandom {
+
+    private final static long MULTIPLIER = 0x5DEECE66DL;
+    private final static long ADDEND = 0xBL;
+    private final static long MASK = (1L << 48) - 1;
+
+    private HashRandom() {
+    }
+
+    /**
+     * Get the state of a sequence starting with a seed.
+     *
+     * @param seed the seed
+     * @return the state
+     */
+    public static long seed(long seed) {
+        return (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Advance a sequence to its next value.
+     *
+     * @param state the state of the sequence
+     * @return the next state, read with intValue or floatValue
+     */
+    public static long next(long state) {
+        return (state * MULTIPLIER + ADDEND) & MASK;
+    }
+
+    /**
+     * Get the value of a state as java.util.Random.nextInt() would.
+     *
+     * @param state the state
+     * @return the value
+     */
+    public static int intValue(long state) {
+        return (int) (state >>> 16);
+    }
+
+    /**
+     * Get the value of a state as java.util.Random.nextFloat() would.
+     *
+     * @param state the state
+     * @return the value, from 0 inclusive to 1 exclusive
+     */
+    public static float floatValue(long state) {
+        return (int) (state >>> 24) / (float) (1 << 24);
+    }
+
+    /**
+     * Hash integer coordinates and a seed.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate, or the number of the value at (x, y)
+     * @param seed the seed
+     * @return the hash
+     */
+    public static long hash(int x, int y, int z, long seed) {
+        // The finalizer of SplitMix64, on the coordinates packed with the seed
+        long h = seed + 0x9E3779B97F4A7C15L * (1 + (x & 0xffffffffL)) + 0xC2B2AE3D27D4EB4FL * (1 + (y & 0xffffffffL)) + 0x165667B19E3779F9L * (1 + (z & 0xffffffffL));
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Get a random float for integer coordinates and a seed.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate, or the number of the value at (x, y)
+     * @param seed the seed
+     * @return the value, from 0 inclusive to 1 exclusive
+     */
+    public static float random(int x, int y, int z, long seed) {
+        return (int) (hash(x, y, z, seed) >>> 40) / (float) (1 << 24);
+    }
+}
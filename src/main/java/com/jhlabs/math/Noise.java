@@ -22,7 +22,8 @@ import java.util.Random;
  */
 public class Noise implements Function1D, Function2D, Function3D {
 
-    private static final Random randomGenerator = new Random();
+    // Seeded so that the noise is the same from one run to the next
+    private static final Random randomGenerator = new Random(0);
 
     public float evaluate(float x) {
         return noise1(x);
@@ -78,7 +79,11 @@ public class Noise implements Function1D, Function2D, Function3D {
     static float[][] g3 = new float[B + B + 2][3];
     static float[][] g2 = new float[B + B + 2][2];
     static float[] g1 = new float[B + B + 2];
-    static boolean start = true;
+
+    // Filled before any use, so that threads never see partial tables
+    static {
+        init();
+    }
 
     private static float sCurve(float t) {
         return t * t * (3.0f - 2.0f * t);
@@ -94,11 +99,6 @@ public class Noise implements Function1D, Function2D, Function3D {
         int bx0, bx1;
         float rx0, rx1, sx, t, u, v;
 
-        if (start) {
-            start = false;
-            init();
-        }
-
         t = x + N;
         bx0 = ((int) t) & BM;
         bx1 = (bx0 + 1) & BM;
@@ -135,11 +135,6 @@ public class Noise implements Function1D, Function2D, Function3D {
         float v;
         int i, j;
 
-        if (start) {
-            start = false;
-            init();
-        }
-
         t = x + N;
         bx0 = ((int) t) & BM;
         bx1 = (bx0 + 1) & BM;
@@ -206,11 +201,6 @@ public class Noise implements Function1D, Function2D, Function3D {
         float v;
         int i, j;
 
-        if (start) {
-            start = false;
-            init();
-        }
-
         t = x + N;
         bx0 = ((int) t) & BM;
         bx1 = (bx0 + 1) & BM;
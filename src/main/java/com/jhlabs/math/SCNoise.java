@@ -23,8 +23,6 @@ import java.util.Random;
  */
 public class SCNoise implements Function1D, Function2D, Function3D {
 
-    private static Random randomGenerator = new Random();
-
     public float evaluate(float x) {
         return evaluate(x, .1f);
     }
@@ -35,10 +33,6 @@ public class SCNoise implements Function1D, Function2D, Function3D {
         float sum = 0;
         float fx, fy, dx, dy, distsq;
 
-        if (impulseTab == null) {
-            impulseTab = impulseTabInit(665);
-        }
-
         ix = floor(x);
         fx = x - ix;
         iy = floor(y);
@@ -71,10 +65,6 @@ public class SCNoise implements Function1D, Function2D, Function3D {
         float sum = 0;
         float fx, fy, fz, dx, dy, dz, distsq;
 
-        if (impulseTab == null) {
-            impulseTab = impulseTabInit(665);
-        }
-
         ix = floor(x);
         fx = x - ix;
         iy = floor(y);
@@ -129,7 +119,8 @@ public class SCNoise implements Function1D, Function2D, Function3D {
     private final static int TABMASK = (TABSIZE - 1);
     private final static int NIMPULSES = 3;
 
-    private static float[] impulseTab;
+    // Built before any use, so that threads never see partial tables
+    private final static float[] impulseTab = impulseTabInit(665);
 
     public static int floor(float x) {
         int ix = (int) x;
@@ -142,29 +133,29 @@ public class SCNoise implements Function1D, Function2D, Function3D {
     private final static int SAMPRATE = 100;
     /* table entries per unit distance */
     private final static int NENTRIES = (4 * SAMPRATE + 1);
-    private static float[] table;
+    private final static float[] table = catromTableInit();
+
+    private static float[] catromTableInit() {
+        float[] table = new float[NENTRIES];
+        for (int i = 0; i < NENTRIES; i++) {
+            float x = i / (float) SAMPRATE;
+            x = (float) Math.sqrt(x);
+            if (x < 1) {
+                table[i] = 0.5f * (2 + x * x * (-5 + x * 3));
+            } else {
+                table[i] = 0.5f * (4 + x * (-8 + x * (5 - x)));
+            }
+        }
+        return table;
+    }
 
     public float catrom2(float d) {
-        float x;
         int i;
 
         if (d >= 4) {
             return 0;
         }
 
-        if (table == null) {
-            table = new float[NENTRIES];
-            for (i = 0; i < NENTRIES; i++) {
-                x = i / (float) SAMPRATE;
-                x = (float) Math.sqrt(x);
-                if (x < 1) {
-                    table[i] = 0.5f * (2 + x * x * (-5 + x * 3));
-                } else {
-                    table[i] = 0.5f * (4 + x * (-8 + x * (5 - x)));
-                }
-            }
-        }
-
         d = d * SAMPRATE + 0.5f;
         i = floor(d);
         if (i >= NENTRIES) {
@@ -176,7 +167,7 @@ public class SCNoise implements Function1D, Function2D, Function3D {
     static float[] impulseTabInit(int seed) {
         float[] impulseTab = new float[TABSIZE * 4];
 
-        randomGenerator = new Random(seed);
+        Random randomGenerator = new Random(seed);
         /* Set random number generator seed. */
         for (int i = 0; i < TABSIZE; i++) {
             impulseTab[i++] = randomGenerator.nextFloat();
@@ -0,0 +1,134 @@
+package com.jhlabs.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Controls how the filters split their work: the fork-join pool the tasks run
+ * on, the parallelism the work is divided for and the minimum number of pixels
+ * per task. A context can be installed globally, for the current thread, or
+ * for the calls of a single filter. A context which creates its own pool
+ * should be closed when it is no longer used, to stop the pool's threads.
+ *
+ * @see ThreadUtils#setDefaultExecutionContext
+ * @see ThreadUtils#setExecutionContext
+ * @see com.jhlabs.image.AbstractBufferedImageOp#setExecutionContext
+ */
+public class ExecutionContext implements AutoCloseable {
+
+    /**
+     * A context which runs all the work in the calling thread.
+     */
+    public static final ExecutionContext SERIAL = new ExecutionContext(null, 1, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int threshold;
+    private final boolean ownsPool;
+    private volatile boolean cancelled;
+
+    /**
+     * Construct a context running on a new pool, which is shut down when the
+     * context is closed.
+     *
+     * @param parallelism the number of worker threads
+     */
+    public ExecutionContext(int parallelism) {
+        this(new ForkJoinPool(parallelism), parallelism, ThreadUtils.THRESHOLD, true);
+    }
+
+    /**
+     * Construct a context running on an existing pool, for example a pool
+     * shared with the rest of the application.
+     *
+     * @param pool the pool
+     */
+    public ExecutionContext(ForkJoinPool pool) {
+        this(pool, pool.getParallelism(), ThreadUtils.THRESHOLD);
+    }
+
+    /**
+     * Construct a context.
+     *
+     * @param pool        the pool, or null to run in the calling thread
+     * @param parallelism the number of parts the work is divided for. It only
+     *                    sets how finely the work is split: the tasks still
+     *                    run on all the workers of the pool. To leave workers
+     *                    to other requests, use a smaller pool.
+     * @param threshold   the minimum number of pixels processed by a task. A
+     *                    task of a single row is not split, whatever its
+     *                    size.
+     */
+    public ExecutionContext(ForkJoinPool pool, int parallelism, int threshold) {
+        this(pool, parallelism, threshold, false);
+    }
+
+    private ExecutionContext(ForkJoinPool pool, int parallelism, int threshold, boolean ownsPool) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be >= 1");
+        }
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+        this.ownsPool = ownsPool;
+    }
+
+    /**
+     * Shut down the pool if it was created by this context. A pool passed to
+     * the constructor is left running.
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Cancel the work running in this context. ThreadUtils.forkJoin then throws
+     * a CancellationException instead of running a task, so a filter stops at
+     * its next pass. Only cancel a context created for the work to cancel: a
+     * cancelled context stays cancelled.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Return the number of pixels under which a task is no more split, for an
+     * image of the given size.
+     *
+     * @param width  the image width
+     * @param height the image height
+     * @return the split threshold
+     */
+    public int getThreshold(int width, int height) {
+        if (pool == null || parallelism == 1) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(threshold, ((long) width * height) / (parallelism * 10L));
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionContext[parallelism=" + parallelism + ", threshold=" + threshold + "]";
+    }
+}
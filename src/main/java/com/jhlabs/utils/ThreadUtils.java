@@ -4,25 +4,98 @@
  */
 package com.jhlabs.utils;
 
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 
 public class ThreadUtils {
 
     public static final int THRESHOLD = 200000;
-    private static final ForkJoinPool FORK_JOIN_POOL = new ForkJoinPool();
     private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static final ThreadLocal<ExecutionContext> THREAD_CONTEXT = new ThreadLocal<>();
+    private static volatile ExecutionContext defaultContext = new ExecutionContext(new ForkJoinPool(), PROCESSORS, THRESHOLD);
 
+    /**
+     * Set the context used by the threads which have no context of their own.
+     *
+     * @param context the context
+     */
+    public static void setDefaultExecutionContext(ExecutionContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("context must not be null");
+        }
+        defaultContext = context;
+    }
+
+    public static ExecutionContext getDefaultExecutionContext() {
+        return defaultContext;
+    }
+
+    /**
+     * Set the context used by the current thread. The context is not seen by
+     * the worker threads of the pool: a task calling getExecutionContext,
+     * getThreshold or forkJoin gets the default context. The filters therefore
+     * read the context before starting their tasks, and pass the threshold to
+     * them.
+     *
+     * @param context the context, or null to use the default context
+     * @return the previous context of the current thread, or null
+     */
+    public static ExecutionContext setExecutionContext(ExecutionContext context) {
+        ExecutionContext previous = THREAD_CONTEXT.get();
+        if (context == null) {
+            THREAD_CONTEXT.remove();
+        } else {
+            THREAD_CONTEXT.set(context);
+        }
+        return previous;
+    }
+
+    /**
+     * Return the context used by the current thread.
+     *
+     * @return the context
+     */
+    public static ExecutionContext getExecutionContext() {
+        ExecutionContext context = THREAD_CONTEXT.get();
+        return (context == null) ? defaultContext : context;
+    }
+
+    /**
+     * Run a task in the pool of the current context and wait for its result.
+     *
+     * @param task the task
+     * @return the result of the task
+     * @throws CancellationException if the current context is cancelled
+     * @see ExecutionContext#cancel
+     */
     public static <T> T forkJoin(ForkJoinTask<T> task) {
-        return FORK_JOIN_POOL.invoke(task);
+        ExecutionContext context = getExecutionContext();
+        if (context.isCancelled()) {
+            throw new CancellationException("Cancelled");
+        }
+        ForkJoinPool pool = context.getPool();
+        return (pool == null) ? task.invoke() : pool.invoke(task);
+    }
+
+    /**
+     * Return the number of pixels under which a task is no more split, for an
+     * image of the given size, in the current context.
+     *
+     * @param width  the image width
+     * @param height the image height
+     * @return the split threshold
+     */
+    public static int getThreshold(int width, int height) {
+        return getExecutionContext().getThreshold(width, height);
     }
 
     public static int getAvailableProcessors() {
-        return PROCESSORS;
+        return getExecutionContext().getParallelism();
     }
 
     public static int getThreadNumber(int width, int height, int step) {
-        int max = PROCESSORS;
+        int max = getAvailableProcessors();
         int num = (int) (((long) width * (long) height) / ((long) step * (long) step));
         return (num < 1) ? 1 : Math.min(num, max);
     }